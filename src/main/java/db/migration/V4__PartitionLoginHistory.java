@@ -0,0 +1,66 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import vn.hub.mailservice.util.LoginHistoryPartitions;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chia bảng login_history thành các partition theo tháng của login_time.
+ * Partition được tạo từ tháng của phiên cũ nhất tới {@link #MONTHS_AHEAD} tháng sau tháng hiện tại,
+ * các tháng tiếp theo do LoginHistoryArchiveService tạo dần.
+ * <p>
+ * MySQL không cho phép khóa ngoại trên bảng có partition và yêu cầu khóa chính chứa cột phân vùng,
+ * nên khóa ngoại tới users bị bỏ và khóa chính đổi thành (id, login_time).
+ */
+public class V4__PartitionLoginHistory extends BaseJavaMigration {
+
+    private static final int MONTHS_AHEAD = 3;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            YearMonth current = YearMonth.now();
+            YearMonth first = current;
+            try (ResultSet rs = statement.executeQuery("SELECT MIN(login_time) FROM login_history")) {
+                if (rs.next()) {
+                    Timestamp oldest = rs.getTimestamp(1);
+                    if (oldest != null) {
+                        first = YearMonth.from(oldest.toLocalDateTime());
+                    }
+                }
+            }
+
+            List<String> foreignKeys = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT CONSTRAINT_NAME " +
+                    "FROM information_schema.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = DATABASE() " +
+                    "AND TABLE_NAME = 'login_history' AND CONSTRAINT_TYPE = 'FOREIGN KEY'")) {
+                while (rs.next()) {
+                    foreignKeys.add(rs.getString(1));
+                }
+            }
+            for (String foreignKey : foreignKeys) {
+                statement.execute("ALTER TABLE login_history DROP FOREIGN KEY " + foreignKey);
+            }
+
+            statement.execute("ALTER TABLE login_history DROP PRIMARY KEY, ADD PRIMARY KEY (id, login_time)");
+
+            List<String> partitions = new ArrayList<>();
+            YearMonth last = current.plusMonths(MONTHS_AHEAD);
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                partitions.add(LoginHistoryPartitions.definition(month));
+            }
+            partitions.add(LoginHistoryPartitions.futureDefinition());
+            statement.execute("ALTER TABLE login_history PARTITION BY RANGE COLUMNS (login_time) ("
+                    + String.join(", ", partitions) + ")");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình kho file đính kèm dùng chung giữa nhiều email
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.attachments")
+public class AttachmentStoreProperties {
+
+    /**
+     * Thư mục chứa file đính kèm đã mã hóa base64, đặt tên theo SHA-256 của nội dung
+     */
+    private String directory = "data/attachments";
+
+    /**
+     * Kích thước tối đa một file đính kèm (trước khi mã hóa)
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(50);
+
+    /**
+     * Tổng dung lượng base64 tối đa của các file đang được memory-map, vượt quá thì bỏ map file ít dùng nhất
+     */
+    private DataSize maxMappedSize = DataSize.ofMegabytes(512);
+
+    /**
+     * File không có email chờ gửi nào tham chiếu và không được upload lại trong khoảng này thì bị xóa khỏi đĩa
+     */
+    private Duration retention = Duration.ofDays(7);
+}
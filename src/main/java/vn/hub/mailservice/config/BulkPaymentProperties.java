@@ -0,0 +1,56 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình gửi yêu cầu thanh toán hàng loạt
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.bulk-payment")
+public class BulkPaymentProperties {
+
+    /**
+     * Số luồng render template, tạo QR và dựng MIME (công việc dùng CPU) dùng chung cho mọi đợt gửi,
+     * mặc định bằng số nhân CPU
+     */
+    private int cpuWorkers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Số virtual thread lưu email đã chuẩn bị vào hàng đợi gửi của mỗi đợt. Việc gửi SMTP do hàng đợi gửi đảm
+     * nhận nên không chiếm kết nối SMTP
+     */
+    private int enqueueConcurrency = 2;
+
+    /**
+     * Thời gian tối đa chờ hàng đợi gửi có chỗ trống cho một email, hết thời gian thì hóa đơn bị tính là lỗi
+     */
+    private Duration enqueueTimeout = Duration.ofMinutes(5);
+
+    /**
+     * Số hóa đơn tối đa của một đợt đang chuẩn bị hoặc chờ vào hàng đợi gửi, đủ thì đợt đó phải chờ bớt
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * Số hóa đơn tối đa trong một request
+     */
+    private int maxInvoices = 50000;
+
+    /**
+     * Số lỗi tối đa giữ lại để trả về trong tiến độ
+     */
+    private int maxReportedFailures = 100;
+
+    /**
+     * Số đợt gửi chạy cùng lúc, vượt quá sẽ trả 429
+     */
+    private int maxConcurrentRuns = 2;
+
+    /**
+     * Thời gian giữ tiến độ của đợt gửi đã kết thúc trong bộ nhớ, sau đó GET tiến độ trả 404
+     */
+    private Duration progressRetention = Duration.ofHours(24);
+}
@@ -0,0 +1,44 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình mặc định cho chiến dịch gửi email hàng loạt
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.campaign")
+public class CampaignProperties {
+
+    /**
+     * Số luồng render và đưa email vào hàng đợi song song cho mỗi chiến dịch
+     */
+    private int concurrency = 4;
+
+    /**
+     * Số luồng tối đa một chiến dịch được yêu cầu, lớn hơn sẽ trả 400
+     */
+    private int maxConcurrency = 16;
+
+    /**
+     * Số email tối đa đưa vào hàng đợi mỗi giây, 0 để không giới hạn
+     */
+    private double ratePerSecond = 50;
+
+    /**
+     * Tốc độ tối đa một chiến dịch được yêu cầu, lớn hơn sẽ trả 400
+     */
+    private double maxRatePerSecond = 500;
+
+    /**
+     * Thời gian tối đa chờ hàng đợi gửi có chỗ trống cho một email
+     */
+    private Duration enqueueTimeout = Duration.ofMinutes(5);
+
+    /**
+     * Thời gian giữ tiến độ của chiến dịch đã kết thúc trong bộ nhớ, sau đó GET tiến độ trả 404
+     */
+    private Duration progressRetention = Duration.ofHours(24);
+}
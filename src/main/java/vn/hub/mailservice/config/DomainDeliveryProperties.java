@@ -0,0 +1,70 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình gửi email theo domain người nhận: mỗi domain có hàng đợi, số luồng gửi và thời gian tạm dừng riêng
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.domain-delivery")
+public class DomainDeliveryProperties {
+
+    /**
+     * Số luồng gửi (app.mail.queue.workers) chỉ dành cho domain chưa có luồng nào đang gửi: domain đã có luồng chỉ
+     * được thêm luồng khi còn nhiều hơn số này luồng trống, nên vài domain chậm không chiếm hết luồng gửi
+     */
+    private int reservedWorkers = 1;
+
+    /**
+     * Cấu hình mặc định khi không có cấu hình riêng cho domain
+     */
+    private Domain defaults = new Domain();
+
+    /**
+     * Cấu hình riêng, key là domain người nhận (vd "[gmail.com]")
+     */
+    private Map<String, Domain> domains = new HashMap<>();
+
+    /**
+     * Lấy cấu hình cho domain người nhận
+     */
+    public Domain resolve(String domain) {
+        return domains.getOrDefault(domain, defaults);
+    }
+
+    @Data
+    public static class Domain {
+
+        /**
+         * Số luồng gửi tối đa cho domain cùng lúc; luồng thứ hai trở đi chỉ được giao khi còn hơn reserved-workers
+         * luồng trống
+         */
+        private int concurrency = 2;
+
+        /**
+         * Số email tối đa của domain gửi liên tiếp trên cùng một kết nối SMTP
+         */
+        private int batchSize = 20;
+
+        /**
+         * Thời gian tạm dừng domain sau lần lỗi tạm thời đầu tiên; chỉ giữ email chưa gửi lần nào,
+         * email gửi lại chỉ chờ theo app.mail.queue.retry
+         */
+        private Duration initialBackoff = Duration.ofSeconds(10);
+
+        /**
+         * Hệ số nhân thời gian tạm dừng sau mỗi lần lỗi liên tiếp
+         */
+        private double multiplier = 2.0;
+
+        /**
+         * Thời gian tạm dừng tối đa
+         */
+        private Duration maxBackoff = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,17 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cấu hình các API đưa nhiều email vào hàng đợi trong một request
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.batch")
+public class EmailBatchProperties {
+
+    /**
+     * Số email tối đa trong một request gửi theo lô
+     */
+    private int maxSize = 1000;
+}
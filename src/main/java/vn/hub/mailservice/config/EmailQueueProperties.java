@@ -0,0 +1,36 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình hàng đợi gửi email bất đồng bộ
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.queue")
+public class EmailQueueProperties {
+
+    /**
+     * Số email tối đa đang chờ gửi, vượt quá sẽ trả 429
+     */
+    private int capacity = 1000;
+
+    /**
+     * Số luồng gửi email song song
+     */
+    private int workers = 4;
+
+    /**
+     * Thời gian tối đa các job nội bộ (job 21h...) chờ hàng đợi có chỗ trống
+     */
+    private Duration enqueueTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Kích thước tối đa file đính kèm được lưu vào hàng đợi (cột LONGBLOB, nằm trong heap khi gửi).
+     * File lớn hơn gửi qua /api/emails/send-with-pdf/direct, đọc thẳng từ file upload
+     */
+    private DataSize maxAttachmentSize = DataSize.ofMegabytes(10);
+}
@@ -0,0 +1,39 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình gửi lại email khi gặp lỗi tạm thời
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.retry")
+public class EmailRetryProperties {
+
+    /**
+     * Số lần gửi tối đa (tính cả lần đầu) trước khi chuyển vào dead-letter
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Thời gian chờ trước lần gửi lại đầu tiên
+     */
+    private Duration initialBackoff = Duration.ofSeconds(30);
+
+    /**
+     * Hệ số nhân thời gian chờ sau mỗi lần gửi lại
+     */
+    private double multiplier = 2.0;
+
+    /**
+     * Thời gian chờ tối đa giữa hai lần gửi
+     */
+    private Duration maxBackoff = Duration.ofMinutes(30);
+
+    /**
+     * Độ lệch ngẫu nhiên (0-1) cộng/trừ vào thời gian chờ để các email lỗi cùng lúc không gửi lại cùng lúc
+     */
+    private double jitter = 0.2;
+}
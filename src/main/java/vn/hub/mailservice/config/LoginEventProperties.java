@@ -0,0 +1,46 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Cấu hình ghi sự kiện login/logout xuống login_history
+ */
+@Data
+@ConfigurationProperties(prefix = "app.login-events")
+public class LoginEventProperties {
+
+    /**
+     * Bật chế độ ghi sau (write-behind): sự kiện được ghi vào journal trên đĩa rồi trả kết quả ngay,
+     * một luồng nền gom lại và ghi xuống DB theo lô. Tắt thì mỗi login/logout ghi DB trực tiếp
+     */
+    private boolean writeBehind = false;
+
+    /**
+     * Thư mục chứa file journal của các sự kiện chưa ghi xuống DB
+     */
+    private Path journalDir = Path.of("data", "login-events");
+
+    /**
+     * Số sự kiện tối đa đang chờ (trong bộ đệm và chưa ghi xuống DB), đầy thì login/logout phải chờ
+     */
+    private int capacity = 10000;
+
+    /**
+     * Số sự kiện tối đa trong một lô ghi DB
+     */
+    private int batchSize = 500;
+
+    /**
+     * Thời gian tối đa một sự kiện nằm trong bộ đệm trước khi được ghi DB
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * Thời gian chờ trước khi thử lại khi ghi DB lỗi
+     */
+    private Duration retryBackoff = Duration.ofSeconds(5);
+}
@@ -0,0 +1,22 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cấu hình partition theo tháng và lưu trữ dữ liệu cũ của bảng login_history
+ */
+@Data
+@ConfigurationProperties(prefix = "app.login-history.archive")
+public class LoginHistoryArchiveProperties {
+
+    /**
+     * Số tháng tới luôn có sẵn partition
+     */
+    private int partitionsAhead = 3;
+
+    /**
+     * Số tháng giữ lại trong login_history, các tháng cũ hơn được chuyển sang login_history_archive
+     */
+    private int retentionMonths = 13;
+}
@@ -0,0 +1,62 @@
+package vn.hub.mailservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.hub.mailservice.mail.DomainDeliveryScheduler;
+import vn.hub.mailservice.mail.PooledJavaMailSender;
+import vn.hub.mailservice.mail.SmtpRateLimiter;
+
+import java.util.Properties;
+
+/**
+ * Cấu hình JavaMailSender dùng pool kết nối SMTP.
+ * Thay thế JavaMailSenderImpl mặc định của Spring Boot (vốn mở kết nối mới cho mỗi email).
+ */
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailSenderConfig {
+
+    @Bean
+    public PooledJavaMailSender mailSender(MailProperties mailProperties, SmtpPoolProperties poolProperties,
+            SmtpRateLimitProperties rateLimitProperties, MeterRegistry meterRegistry) {
+        PooledJavaMailSender sender = new PooledJavaMailSender(poolProperties, meterRegistry);
+        sender.setHost(mailProperties.getHost());
+        if (mailProperties.getPort() != null) {
+            sender.setPort(mailProperties.getPort());
+        }
+        sender.setUsername(mailProperties.getUsername());
+        sender.setPassword(mailProperties.getPassword());
+        sender.setProtocol(mailProperties.getProtocol());
+        if (mailProperties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+        }
+        if (!mailProperties.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(mailProperties.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+        }
+        if (rateLimitProperties.isEnabled()) {
+            // Mỗi SMTP server/tài khoản có giới hạn riêng, vd Gmail giới hạn số email mỗi phút và mỗi ngày
+            String provider = mailProperties.getUsername() != null
+                    ? mailProperties.getUsername() + "@" + mailProperties.getHost()
+                    : mailProperties.getHost();
+            sender.setRateLimiter(new SmtpRateLimiter(provider,
+                    rateLimitProperties.resolve(mailProperties.getHost(), mailProperties.getUsername()),
+                    meterRegistry));
+        }
+        return sender;
+    }
+
+    /**
+     * Luồng gửi của hàng đợi email, chia theo domain người nhận; mỗi lô email cùng domain dùng chung một kết nối
+     */
+    @Bean
+    public DomainDeliveryScheduler domainDeliveryScheduler(DomainDeliveryProperties properties,
+            EmailQueueProperties queueProperties, PooledJavaMailSender mailSender, MeterRegistry meterRegistry) {
+        return new DomainDeliveryScheduler(properties, queueProperties.getWorkers(), mailSender::withConnection,
+                meterRegistry);
+    }
+}
@@ -0,0 +1,22 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cấu hình poller chuyển email từ outbox sang hàng đợi gửi
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.outbox")
+public class OutboxProperties {
+
+    /**
+     * Số bản ghi outbox xử lý mỗi lần poll
+     */
+    private int batchSize = 100;
+
+    /**
+     * Khoảng thời gian giữa hai lần poll (ms)
+     */
+    private long pollInterval = 1000;
+}
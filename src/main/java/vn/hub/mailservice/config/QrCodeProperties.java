@@ -0,0 +1,34 @@
+package vn.hub.mailservice.config;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Cấu hình ảnh QR code đính kèm email
+ */
+@Data
+@ConfigurationProperties(prefix = "app.qrcode")
+public class QrCodeProperties {
+
+    /**
+     * Kích thước ảnh (pixel), ảnh vuông
+     */
+    private int size = 250;
+
+    /**
+     * Mức sửa lỗi L/M/Q/H, mức cao đọc được khi ảnh bị mờ/che một phần nhưng mã dày hơn
+     */
+    private ErrorCorrectionLevel errorCorrection = ErrorCorrectionLevel.L;
+
+    /**
+     * Số module trắng quanh mã
+     */
+    private int margin = 4;
+
+    /**
+     * Tổng dung lượng tối đa của các ảnh PNG giữ trong cache
+     */
+    private DataSize cacheMaxSize = DataSize.ofMegabytes(8);
+}
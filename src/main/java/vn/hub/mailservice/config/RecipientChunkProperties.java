@@ -0,0 +1,38 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình chia danh sách CC/BCC lớn thành nhiều email theo giới hạn số người nhận của SMTP server
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.recipient-chunks")
+public class RecipientChunkProperties {
+
+    /**
+     * Số người nhận tối đa trong một email (RCPT TO) khi không có cấu hình riêng cho server
+     */
+    private int maxRecipients = 100;
+
+    /**
+     * Giới hạn riêng theo host SMTP (vd "[smtp.gmail.com]")
+     */
+    private Map<String, Integer> providers = new HashMap<>();
+
+    /**
+     * Số phần được gửi đồng thời, mỗi phần gửi trên một kết nối lấy từ pool SMTP
+     */
+    private int concurrency = 4;
+
+    /**
+     * Số người nhận tối đa mỗi email cho host
+     */
+    public int resolve(String host) {
+        Integer limit = host != null ? providers.get(host) : null;
+        return Math.max(1, limit != null ? limit : maxRecipients);
+    }
+}
@@ -0,0 +1,40 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * Cấu hình chạy job định kỳ khi triển khai nhiều instance
+ */
+@Data
+@ConfigurationProperties(prefix = "app.scheduling")
+public class SchedulingProperties {
+
+    /**
+     * Tên instance ghi vào bảng khóa, mặc định là pid@hostname
+     */
+    private String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    /**
+     * Số phần chia tập user cho job hằng đêm (theo user_id % partitions), các instance nhận từng phần
+     */
+    private int partitions = 8;
+
+    /**
+     * Thời gian giữ khóa tối đa, khóa tự hết hạn sau thời gian này nếu instance chết giữa chừng
+     */
+    private Duration lockAtMostFor = Duration.ofMinutes(30);
+
+    /**
+     * Thời gian giữ khóa tối thiểu kể từ lúc khóa, kể cả khi job chạy xong sớm
+     */
+    private Duration lockAtLeastFor = Duration.ofMinutes(5);
+
+    /**
+     * Số user xử lý trong một lô khi job hằng đêm ghi thông báo vào outbox
+     */
+    private int chunkSize = 500;
+}
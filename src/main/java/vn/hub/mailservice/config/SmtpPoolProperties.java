@@ -0,0 +1,44 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình pool kết nối SMTP dùng lại giữa các lần gửi
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.pool")
+public class SmtpPoolProperties {
+
+    /**
+     * Số kết nối SMTP tối đa mở đồng thời
+     */
+    private int maxTotal = 8;
+
+    /**
+     * Số kết nối rảnh tối đa được giữ lại trong pool
+     */
+    private int maxIdle = 4;
+
+    /**
+     * Số email tối đa gửi trên một kết nối trước khi đóng và mở kết nối mới
+     */
+    private int maxMessagesPerConnection = 100;
+
+    /**
+     * Thời gian tối đa chờ lấy kết nối khi pool đã dùng hết
+     */
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    /**
+     * Kết nối rảnh lâu hơn thời gian này sẽ bị đóng
+     */
+    private Duration idleTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Kết nối rảnh lâu hơn thời gian này sẽ được kiểm tra bằng lệnh NOOP trước khi dùng lại
+     */
+    private Duration validationInterval = Duration.ofSeconds(10);
+}
@@ -0,0 +1,69 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình giới hạn tốc độ gửi email theo từng SMTP server/tài khoản
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail.rate-limit")
+public class SmtpRateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Giới hạn mặc định khi không có cấu hình riêng cho server/tài khoản
+     */
+    private Limit defaults = new Limit();
+
+    /**
+     * Giới hạn riêng, key là username SMTP hoặc host (vd "[smtp.gmail.com]")
+     */
+    private Map<String, Limit> providers = new HashMap<>();
+
+    /**
+     * Lấy giới hạn cho tài khoản trên host, ưu tiên cấu hình theo username rồi tới host
+     */
+    public Limit resolve(String host, String username) {
+        if (username != null && providers.containsKey(username)) {
+            return providers.get(username);
+        }
+        if (host != null && providers.containsKey(host)) {
+            return providers.get(host);
+        }
+        return defaults;
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Số email tối đa mỗi phút
+         */
+        private double ratePerMinute = 60;
+
+        /**
+         * Số email được gửi dồn ngay lập tức khi đã rảnh một lúc
+         */
+        private int burst = 10;
+
+        /**
+         * Tốc độ thấp nhất khi bị server yêu cầu giảm tốc
+         */
+        private double minRatePerMinute = 5;
+
+        /**
+         * Hệ số nhân tốc độ mỗi khi server trả lỗi tạm thời 4xx
+         */
+        private double backoffFactor = 0.5;
+
+        /**
+         * Số email/phút được cộng lại sau mỗi email gửi thành công, cho tới khi về lại ratePerMinute
+         */
+        private double recoveryPerSuccess = 1;
+    }
+}
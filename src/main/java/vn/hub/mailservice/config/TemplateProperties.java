@@ -0,0 +1,19 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình cache template email
+ */
+@Data
+@ConfigurationProperties(prefix = "app.template")
+public class TemplateProperties {
+
+    /**
+     * Khoảng thời gian giữa hai lần kiểm tra file template có thay đổi hay không, 0 để tắt kiểm tra
+     */
+    private Duration checkInterval = Duration.ofSeconds(5);
+}
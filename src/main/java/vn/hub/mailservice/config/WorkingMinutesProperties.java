@@ -0,0 +1,17 @@
+package vn.hub.mailservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Cấu hình bảng tổng hợp phút làm việc theo ngày
+ */
+@Data
+@ConfigurationProperties(prefix = "app.working-minutes")
+public class WorkingMinutesProperties {
+
+    /**
+     * Số ngày gần nhất (không tính hôm nay) được dựng lại từ login_history mỗi lần đối soát
+     */
+    private int reconcileDays = 7;
+}
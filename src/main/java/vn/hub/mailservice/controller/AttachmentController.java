@@ -0,0 +1,59 @@
+package vn.hub.mailservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.dto.ApiResponse;
+import vn.hub.mailservice.dto.AttachmentResponse;
+import vn.hub.mailservice.mail.AttachmentStore;
+import vn.hub.mailservice.mail.StoredAttachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Controller upload file đính kèm một lần để dùng lại cho nhiều email
+ */
+@RestController
+@RequestMapping("/api/attachments")
+@RequiredArgsConstructor
+public class AttachmentController {
+
+    private final AttachmentStore attachmentStore;
+
+    /**
+     * API upload file đính kèm, cùng nội dung upload lại trả về cùng ID
+     *
+     * @param file File đính kèm
+     * @return ID file (SHA-256 của nội dung), dùng trong /api/emails/send-with-attachment
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<AttachmentResponse>> upload(@RequestParam("file") MultipartFile file)
+            throws IOException {
+        String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
+        String fileName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "attachment";
+        try (InputStream content = file.getInputStream()) {
+            StoredAttachment stored = attachmentStore.store(content, fileName, contentType);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.success("File đính kèm đã được lưu", new AttachmentResponse(stored)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * API xem thông tin file đính kèm
+     *
+     * @param id ID file đính kèm
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiResponse<AttachmentResponse>> get(@PathVariable String id) {
+        return attachmentStore.get(id)
+                .map(stored -> ResponseEntity.ok(ApiResponse.success("File đính kèm",
+                        new AttachmentResponse(stored))))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Không tìm thấy file đính kèm")));
+    }
+}
@@ -0,0 +1,64 @@
+package vn.hub.mailservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.dto.ApiResponse;
+import vn.hub.mailservice.dto.CampaignProgressResponse;
+import vn.hub.mailservice.service.CampaignService;
+
+import java.io.IOException;
+
+/**
+ * Controller cho chiến dịch gửi email hàng loạt theo template (mail-merge)
+ */
+@RestController
+@RequestMapping("/api/campaigns")
+@RequiredArgsConstructor
+public class CampaignController {
+
+    private final CampaignService campaignService;
+
+    /**
+     * API tạo chiến dịch gửi email
+     *
+     * @param template      Tên template (vd: notification-email)
+     * @param subject       Tiêu đề email, có thể chứa biến ${...}
+     * @param recipients    File CSV (có dòng tiêu đề) hoặc NDJSON (.ndjson/.jsonl), bắt buộc có cột email
+     * @param concurrency   Số luồng xử lý song song (tùy chọn, tối đa app.mail.campaign.max-concurrency)
+     * @param ratePerSecond Số email mỗi giây (tùy chọn, tối đa app.mail.campaign.max-rate-per-second)
+     * @return Tiến độ ban đầu kèm ID chiến dịch
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<CampaignProgressResponse>> startCampaign(
+            @RequestParam("template") String template,
+            @RequestParam("subject") String subject,
+            @RequestParam("recipients") MultipartFile recipients,
+            @RequestParam(value = "concurrency", required = false) Integer concurrency,
+            @RequestParam(value = "ratePerSecond", required = false) Double ratePerSecond) throws IOException {
+        try {
+            CampaignProgressResponse progress = campaignService.start(template, subject, recipients, concurrency,
+                    ratePerSecond);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Chiến dịch đã được tạo", progress));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * API xem tiến độ chiến dịch
+     *
+     * @param id ID chiến dịch
+     * @return Số dòng đã đọc, đã đưa vào hàng đợi, đã gửi, thất bại
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiResponse<CampaignProgressResponse>> getProgress(@PathVariable String id) {
+        return campaignService.getProgress(id)
+                .map(progress -> ResponseEntity.ok(ApiResponse.success("Tiến độ chiến dịch", progress)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Không tìm thấy chiến dịch")));
+    }
+}
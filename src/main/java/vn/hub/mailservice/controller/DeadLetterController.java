@@ -0,0 +1,48 @@
+package vn.hub.mailservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import vn.hub.mailservice.dto.ApiResponse;
+import vn.hub.mailservice.dto.DeadLetterResponse;
+import vn.hub.mailservice.dto.ReplayRequest;
+import vn.hub.mailservice.service.DeadLetterService;
+
+/**
+ * Controller tra cứu và gửi lại các email đã thất bại hết số lần gửi lại
+ */
+@RestController
+@RequestMapping("/api/dead-letters")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    /**
+     * API lấy danh sách email thất bại chưa gửi lại
+     *
+     * @param page Trang (bắt đầu từ 0)
+     * @param size Số bản ghi mỗi trang
+     * @return Danh sách email thất bại kèm lý do
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<Page<DeadLetterResponse>>> getDeadLetters(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(ApiResponse.success("Danh sách email gửi thất bại",
+                deadLetterService.findPending(page, Math.min(size, 500))));
+    }
+
+    /**
+     * API gửi lại email thất bại theo danh sách ID, hoặc tất cả nếu không truyền ID
+     *
+     * @param request Danh sách ID dead-letter
+     * @return Số email đã đưa lại vào hàng đợi
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ApiResponse<Integer>> replay(@RequestBody(required = false) ReplayRequest request) {
+        int replayed = deadLetterService.replay(request != null ? request.getIds() : null);
+        return ResponseEntity.ok(ApiResponse.success("Đã đưa lại email vào hàng đợi", replayed));
+    }
+}
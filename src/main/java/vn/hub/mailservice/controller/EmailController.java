@@ -2,69 +2,160 @@ package vn.hub.mailservice.controller;
 
 import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.config.EmailBatchProperties;
+import vn.hub.mailservice.config.EmailQueueProperties;
+import vn.hub.mailservice.dto.BatchEmailRequest;
 import vn.hub.mailservice.dto.EmailRequest;
+import vn.hub.mailservice.dto.EmailStatusResponse;
 import vn.hub.mailservice.dto.MultipleRecipientsEmailRequest;
 import vn.hub.mailservice.dto.QRCodeEmailRequest;
+import vn.hub.mailservice.dto.SendToEachRequest;
+import vn.hub.mailservice.dto.StoredAttachmentEmailRequest;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.mail.AttachmentStore;
+import vn.hub.mailservice.service.EmailQueueService;
 import vn.hub.mailservice.service.EmailService;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
+/**
+ * Controller nhận yêu cầu gửi email.
+ * Email được đưa vào hàng đợi và trả 202 kèm ID ngay lập tức,
+ * trạng thái gửi được tra cứu qua GET /api/emails/{id}.
+ */
 @RestController
 @RequestMapping("/api/emails")
 @RequiredArgsConstructor
 public class EmailController {
 
+    private final EmailQueueService emailQueueService;
     private final EmailService emailService;
+    private final EmailBatchProperties batchProperties;
+    private final EmailQueueProperties queueProperties;
+    private final AttachmentStore attachmentStore;
 
     @PostMapping("/send-html")
-    public ResponseEntity<Map<String, String>> sendHtmlEmail(@RequestBody EmailRequest request) {
-        emailService.sendHtmlEmail(request.getTo(), request.getSubject(), request.getHtmlContent());
+    public ResponseEntity<Map<String, Object>> sendHtmlEmail(@RequestBody EmailRequest request) {
+        OutboundEmail email = new OutboundEmail(EmailType.HTML, request.getTo(), request.getSubject(),
+                request.getHtmlContent());
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Email HTML đã được gửi thành công");
-        return ResponseEntity.ok(response);
+        return accepted(emailQueueService.enqueue(email), "Email HTML đã được đưa vào hàng đợi gửi");
     }
 
     @PostMapping("/send-with-cc")
-    public ResponseEntity<Map<String, String>> sendHtmlEmailWithCC(
+    public ResponseEntity<Map<String, Object>> sendHtmlEmailWithCC(
             @RequestBody MultipleRecipientsEmailRequest request) {
-        emailService.sendHtmlEmailWithCC(request.getTo(), request.getCcList(), request.getSubject(),
+        OutboundEmail email = new OutboundEmail(EmailType.CC, request.getTo(), request.getSubject(),
                 request.getHtmlContent());
+        email.setCcList(request.getCcList());
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Email với CC đã được gửi thành công");
-        return ResponseEntity.ok(response);
+        return accepted(emailQueueService.enqueue(email), "Email với CC đã được đưa vào hàng đợi gửi");
     }
 
     @PostMapping("/send-with-bcc")
-    public ResponseEntity<Map<String, String>> sendHtmlEmailWithBCC(
+    public ResponseEntity<Map<String, Object>> sendHtmlEmailWithBCC(
             @RequestBody MultipleRecipientsEmailRequest request) {
-        emailService.sendHtmlEmailWithBCC(request.getTo(), request.getBccList(), request.getSubject(),
+        OutboundEmail email = new OutboundEmail(EmailType.BCC, request.getTo(), request.getSubject(),
                 request.getHtmlContent());
+        email.setBccList(request.getBccList());
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Email với BCC đã được gửi thành công");
-        return ResponseEntity.ok(response);
+        return accepted(emailQueueService.enqueue(email), "Email với BCC đã được đưa vào hàng đợi gửi");
+    }
+
+    /**
+     * API gửi email với danh sách CC/BCC lớn qua hàng đợi.
+     * Khi gửi, danh sách được bỏ trùng và chia thành nhiều email theo giới hạn người nhận của SMTP server
+     *
+     * @param request Người nhận chính, ccList hoặc bccList (chỉ dùng một trong hai), tiêu đề, nội dung
+     * @return ID email trong hàng đợi
+     */
+    @PostMapping("/send-to-list")
+    public ResponseEntity<Map<String, Object>> sendToList(@RequestBody MultipleRecipientsEmailRequest request) {
+        boolean hasCc = request.getCcList() != null && !request.getCcList().isEmpty();
+        boolean hasBcc = request.getBccList() != null && !request.getBccList().isEmpty();
+        if (hasCc == hasBcc) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Cần đúng một trong hai danh sách ccList hoặc bccList");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        OutboundEmail email = new OutboundEmail(hasCc ? EmailType.CC : EmailType.BCC, request.getTo(),
+                request.getSubject(), request.getHtmlContent());
+        email.setCcList(request.getCcList());
+        email.setBccList(request.getBccList());
+        return accepted(emailQueueService.enqueue(email),
+                "Email với danh sách người nhận đã được đưa vào hàng đợi gửi");
     }
 
     @PostMapping("/send-with-qrcode")
-    public ResponseEntity<Map<String, String>> sendEmailWithQRCode(@RequestBody QRCodeEmailRequest request)
-            throws MessagingException {
-        emailService.sendEmailWithQRCode(request.getTo(), request.getSubject(), request.getHtmlContent(),
-                request.getQrCodeContent());
+    public ResponseEntity<Map<String, Object>> sendEmailWithQRCode(@RequestBody QRCodeEmailRequest request) {
+        OutboundEmail email = new OutboundEmail(EmailType.QRCODE, request.getTo(), request.getSubject(),
+                request.getHtmlContent());
+        email.setQrCodeContent(request.getQrCodeContent());
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Email với QR code đã được gửi thành công");
-        return ResponseEntity.ok(response);
+        return accepted(emailQueueService.enqueue(email), "Email với QR code đã được đưa vào hàng đợi gửi");
     }
 
     @PostMapping("/send-with-pdf")
-    public ResponseEntity<Map<String, String>> sendEmailWithPdf(
+    public ResponseEntity<Map<String, Object>> sendEmailWithPdf(
+            @RequestParam("to") String to,
+            @RequestParam("subject") String subject,
+            @RequestParam("htmlContent") String htmlContent,
+            @RequestParam("pdfFile") MultipartFile pdfFile) throws IOException {
+
+        if (pdfFile.getSize() > queueProperties.getMaxAttachmentSize().toBytes()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "File đính kèm vượt quá " + queueProperties.getMaxAttachmentSize().toMegabytes()
+                    + "MB, dùng /api/emails/send-with-pdf/direct");
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+        }
+
+        OutboundEmail email = new OutboundEmail(EmailType.PDF, to, subject, htmlContent);
+        email.setAttachmentName(pdfFile.getOriginalFilename());
+        email.setAttachment(pdfFile.getBytes());
+
+        return accepted(emailQueueService.enqueue(email), "Email với file PDF đã được đưa vào hàng đợi gửi");
+    }
+
+    /**
+     * API gửi email kèm file đã upload qua /api/attachments, email chỉ lưu ID file trong hàng đợi
+     */
+    @PostMapping("/send-with-attachment")
+    public ResponseEntity<Map<String, Object>> sendEmailWithStoredAttachment(
+            @RequestBody StoredAttachmentEmailRequest request) {
+        if (attachmentStore.get(request.getAttachmentId()).isEmpty()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Không tìm thấy file đính kèm " + request.getAttachmentId());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        OutboundEmail email = new OutboundEmail(EmailType.PDF, request.getTo(), request.getSubject(),
+                request.getHtmlContent());
+        email.setAttachmentId(request.getAttachmentId());
+        email.setAttachmentName(request.getAttachmentName());
+
+        return accepted(emailQueueService.enqueue(email), "Email với file đính kèm đã được đưa vào hàng đợi gửi");
+    }
+
+    /**
+     * API gửi email kèm file PDF lớn ngay trong request, không qua hàng đợi.
+     * File được đọc thẳng từ file upload vào email khi gửi, không nạp cả file vào heap
+     *
+     * @param pdfFile File PDF, tối đa spring.servlet.multipart.max-file-size
+     * @return 200 khi SMTP server đã nhận email
+     */
+    @PostMapping("/send-with-pdf/direct")
+    public ResponseEntity<Map<String, Object>> sendEmailWithPdfDirect(
             @RequestParam("to") String to,
             @RequestParam("subject") String subject,
             @RequestParam("htmlContent") String htmlContent,
@@ -72,8 +163,106 @@ public class EmailController {
 
         emailService.sendEmailWithPdfAttachment(to, subject, htmlContent, pdfFile);
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Email với file PDF đã được gửi thành công");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Email với file PDF đã được gửi");
+        response.put("size", pdfFile.getSize());
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * API đưa nhiều email vào hàng đợi trong một request, cả lô được nhận hoặc không email nào được nhận
+     *
+     * @param request Danh sách email cần gửi
+     * @return ID trong hàng đợi của từng email theo đúng thứ tự đầu vào
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> sendBatch(@RequestBody BatchEmailRequest request) {
+        List<EmailRequest> messages = request.getMessages() != null ? request.getMessages() : List.of();
+        if (messages.size() > batchProperties.getMaxSize()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Số email trong lô vượt quá giới hạn " + batchProperties.getMaxSize());
+            return ResponseEntity.badRequest().body(response);
+        }
+        List<String> recipients = messages.stream().map(EmailRequest::getTo).toList();
+        ResponseEntity<Map<String, Object>> invalid = checkRecipients(recipients);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        List<OutboundEmail> emails = messages.stream()
+                .map(message -> new OutboundEmail(EmailType.HTML, message.getTo(), message.getSubject(),
+                        message.getHtmlContent()))
+                .toList();
+        return acceptedAll(emailQueueService.enqueueAll(emails));
+    }
+
+    /**
+     * API gửi cùng một email cho từng người nhận riêng qua hàng đợi, mỗi người nhận là một email
+     *
+     * @param request Danh sách người nhận, tiêu đề và nội dung chung
+     * @return ID trong hàng đợi của email gửi cho từng người nhận theo đúng thứ tự đầu vào
+     */
+    @PostMapping("/send-to-each")
+    public ResponseEntity<Map<String, Object>> sendToEach(@RequestBody SendToEachRequest request) {
+        List<String> recipients = request.getRecipients() != null ? request.getRecipients() : List.of();
+        if (recipients.size() > batchProperties.getMaxSize()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Số người nhận vượt quá giới hạn " + batchProperties.getMaxSize());
+            return ResponseEntity.badRequest().body(response);
+        }
+        ResponseEntity<Map<String, Object>> invalid = checkRecipients(recipients);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        List<OutboundEmail> emails = recipients.stream()
+                .map(to -> new OutboundEmail(EmailType.HTML, to, request.getSubject(), request.getHtmlContent()))
+                .toList();
+        return acceptedAll(emailQueueService.enqueueAll(emails));
+    }
+
+    /**
+     * API tra cứu trạng thái email trong hàng đợi
+     *
+     * @param id ID email trả về khi gửi
+     * @return Trạng thái QUEUED/SENDING/SENT/FAILED
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<EmailStatusResponse> getEmailStatus(@PathVariable Long id) {
+        return emailQueueService.findById(id)
+                .map(email -> ResponseEntity.ok(new EmailStatusResponse(email)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<Map<String, Object>> accepted(OutboundEmail email, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", message);
+        response.put("id", email.getId());
+        response.put("status", email.getStatus());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> acceptedAll(List<OutboundEmail> emails) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Đã đưa " + emails.size() + " email vào hàng đợi gửi");
+        response.put("ids", emails.stream().map(OutboundEmail::getId).toList());
+        response.put("status", EmailStatus.QUEUED);
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Lô có người nhận trống thì trả 400 kèm vị trí, không đưa email nào vào hàng đợi
+     */
+    private ResponseEntity<Map<String, Object>> checkRecipients(List<String> recipients) {
+        List<Integer> missing = IntStream.range(0, recipients.size())
+                .filter(i -> recipients.get(i) == null || recipients.get(i).isBlank())
+                .boxed()
+                .toList();
+        if (missing.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Thiếu người nhận ở các vị trí " + missing);
+        return ResponseEntity.badRequest().body(response);
+    }
+}
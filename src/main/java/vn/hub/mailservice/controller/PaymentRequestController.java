@@ -0,0 +1,52 @@
+package vn.hub.mailservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import vn.hub.mailservice.dto.ApiResponse;
+import vn.hub.mailservice.dto.BulkPaymentProgressResponse;
+import vn.hub.mailservice.dto.BulkPaymentRequest;
+import vn.hub.mailservice.service.BulkPaymentService;
+
+/**
+ * Controller gửi yêu cầu thanh toán kèm QR cho cả đợt hóa đơn
+ */
+@RestController
+@RequestMapping("/api/payment-requests")
+@RequiredArgsConstructor
+public class PaymentRequestController {
+
+    private final BulkPaymentService bulkPaymentService;
+
+    /**
+     * API gửi yêu cầu thanh toán hàng loạt
+     *
+     * @param request Danh sách hóa đơn
+     * @return Tiến độ ban đầu kèm ID đợt gửi
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<ApiResponse<BulkPaymentProgressResponse>> sendBulk(@RequestBody BulkPaymentRequest request) {
+        try {
+            BulkPaymentProgressResponse progress = bulkPaymentService.start(request.getInvoices());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Đợt gửi yêu cầu thanh toán đã được tạo", progress));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * API xem tiến độ đợt gửi
+     *
+     * @param id ID đợt gửi
+     * @return Số hóa đơn đã chuẩn bị, đã gửi, thất bại và số liệu từng công đoạn
+     */
+    @GetMapping("/bulk/{id}")
+    public ResponseEntity<ApiResponse<BulkPaymentProgressResponse>> getProgress(@PathVariable String id) {
+        return bulkPaymentService.getProgress(id)
+                .map(progress -> ResponseEntity.ok(ApiResponse.success("Tiến độ đợt gửi", progress)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Không tìm thấy đợt gửi")));
+    }
+}
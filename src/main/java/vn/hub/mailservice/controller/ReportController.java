@@ -0,0 +1,94 @@
+package vn.hub.mailservice.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import vn.hub.mailservice.dto.ApiResponse;
+import vn.hub.mailservice.entity.ReportPeriod;
+import vn.hub.mailservice.service.WorkingHoursReportService;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Controller báo cáo thời gian làm việc theo tuần/tháng cho quản lý
+ */
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final WorkingHoursReportService reportService;
+
+    /**
+     * API báo cáo thời gian làm việc
+     *
+     * @param period  WEEK hoặc MONTH
+     * @param date    Ngày bất kỳ trong kỳ cần xem, mặc định hôm nay
+     * @param groupBy USER (theo từng người) hoặc TEAM (theo nhóm)
+     * @param team    Chỉ lấy user thuộc team này (khi groupBy=USER)
+     * @param page    Trang (bắt đầu từ 0)
+     * @param size    Số dòng mỗi trang
+     * @return Tổng phút/giờ làm việc trong kỳ
+     */
+    @GetMapping("/working-hours")
+    public ResponseEntity<ApiResponse<Page<?>>> getWorkingHours(
+            @RequestParam(defaultValue = "WEEK") ReportPeriod period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "USER") GroupBy groupBy,
+            @RequestParam(required = false) String team,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        LocalDate day = date != null ? date : LocalDate.now();
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        Page<?> report = groupBy == GroupBy.TEAM
+                ? reportService.findTeamReport(period, day, page, pageSize)
+                : reportService.findUserReport(period, day, team, page, pageSize);
+        return ResponseEntity.ok(ApiResponse.success(
+                "Báo cáo thời gian làm việc từ " + period.startOf(day), report));
+    }
+
+    /**
+     * API xuất báo cáo theo user ra file CSV, file được ghi dần ra response khi đọc từ DB
+     *
+     * @param period WEEK hoặc MONTH
+     * @param date   Ngày bất kỳ trong kỳ cần xuất, mặc định hôm nay
+     * @param team   Chỉ lấy user thuộc team này
+     * @return File CSV (UTF-8)
+     */
+    @GetMapping("/working-hours/export")
+    public ResponseEntity<StreamingResponseBody> exportWorkingHours(
+            @RequestParam(defaultValue = "WEEK") ReportPeriod period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String team) {
+        LocalDate day = date != null ? date : LocalDate.now();
+        String fileName = "working-hours-" + period.name().toLowerCase() + "-" + period.startOf(day) + ".csv";
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            // BOM để Excel đọc đúng tiếng Việt
+            writer.write('\uFEFF');
+            reportService.exportUserReportCsv(period, day, team, writer);
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    public enum GroupBy {
+        USER, TEAM
+    }
+}
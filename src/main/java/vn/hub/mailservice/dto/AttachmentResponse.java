@@ -0,0 +1,25 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.hub.mailservice.mail.StoredAttachment;
+
+/**
+ * Thông tin file đính kèm đã lưu, id dùng để tham chiếu khi gửi email
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentResponse {
+    private String id;
+    private String fileName;
+    private String contentType;
+    private long size;
+    private long encodedSize;
+
+    public AttachmentResponse(StoredAttachment attachment) {
+        this(attachment.id(), attachment.fileName(), attachment.contentType(), attachment.size(),
+                attachment.encodedSize());
+    }
+}
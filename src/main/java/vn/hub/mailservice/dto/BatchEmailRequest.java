@@ -0,0 +1,14 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchEmailRequest {
+    private List<EmailRequest> messages;
+}
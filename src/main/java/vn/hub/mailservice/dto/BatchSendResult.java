@@ -0,0 +1,33 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kết quả gửi của một email trong lô
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSendResult {
+
+    public enum Status {
+        ACCEPTED,
+        REJECTED
+    }
+
+    private int index;
+    private String to;
+    private Status status;
+    private Integer smtpCode;
+    private String smtpReply;
+
+    public static BatchSendResult accepted(int index, String to) {
+        return new BatchSendResult(index, to, Status.ACCEPTED, null, null);
+    }
+
+    public static BatchSendResult rejected(int index, String to, Integer smtpCode, String smtpReply) {
+        return new BatchSendResult(index, to, Status.REJECTED, smtpCode, smtpReply);
+    }
+}
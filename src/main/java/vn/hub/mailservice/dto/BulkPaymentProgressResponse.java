@@ -0,0 +1,67 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tiến độ một đợt gửi yêu cầu thanh toán, kèm số liệu từng công đoạn để tìm chỗ nghẽn
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentProgressResponse {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String id;
+    private Status status;
+    private int total;
+    private long prepared;
+    /**
+     * Số email đã vào hàng đợi gửi
+     */
+    private long queued;
+    private long sent;
+    /**
+     * Số hóa đơn lỗi khi chuẩn bị hoặc chuyển vào hàng đợi gửi cộng số email gửi lỗi hết số lần thử
+     */
+    private long failed;
+    /**
+     * Số hóa đơn đang chờ hoặc đang ở công đoạn chuẩn bị (render, QR, MIME)
+     */
+    private int prepareQueueSize;
+    /**
+     * Số email đã chuẩn bị xong đang chờ vào hàng đợi gửi, thường xuyên đầy nghĩa là hàng đợi gửi (SMTP) là
+     * chỗ nghẽn
+     */
+    private int sendQueueSize;
+    private Map<String, StageStats> stages;
+    /**
+     * Các hóa đơn lỗi đầu tiên khi chuẩn bị hoặc chuyển vào hàng đợi gửi (mã đơn: lỗi); email gửi lỗi nằm trong
+     * dead-letter
+     */
+    private List<String> failures;
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    /**
+     * Số liệu một công đoạn
+     *
+     * @param count               số lần đã xử lý
+     * @param throughputPerSecond số lần xử lý mỗi giây tính từ lúc bắt đầu
+     * @param averageMillis       thời gian trung bình mỗi lần
+     * @param maxMillis           thời gian lâu nhất
+     */
+    public record StageStats(long count, double throughputPerSecond, double averageMillis, double maxMillis) {
+    }
+}
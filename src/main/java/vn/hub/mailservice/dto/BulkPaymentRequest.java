@@ -0,0 +1,13 @@
+package vn.hub.mailservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Danh sách hóa đơn của một đợt gửi yêu cầu thanh toán
+ */
+@Data
+public class BulkPaymentRequest {
+    private List<PaymentInvoiceRequest> invoices;
+}
@@ -0,0 +1,41 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tiến độ của một chiến dịch gửi email hàng loạt
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CampaignProgressResponse {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String id;
+    private String template;
+    private Status status;
+    private long rowsRead;
+    private long queued;
+    /**
+     * Số dòng thiếu hoặc sai địa chỉ email
+     */
+    private long invalid;
+    /**
+     * Số email không đưa được vào hàng đợi (hàng đợi đầy quá thời gian chờ, bị ngắt...)
+     */
+    private long rejected;
+    private long sent;
+    private long failed;
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
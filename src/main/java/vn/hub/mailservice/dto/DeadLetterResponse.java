@@ -0,0 +1,36 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.hub.mailservice.entity.DeadLetterEmail;
+import vn.hub.mailservice.mail.SendFailureType;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterResponse {
+    private Long id;
+    private Long emailId;
+    private String to;
+    private String subject;
+    private SendFailureType failureType;
+    private Integer smtpCode;
+    private String lastError;
+    private int attempts;
+    private LocalDateTime failedAt;
+
+    public DeadLetterResponse(DeadLetterEmail deadLetter) {
+        this.id = deadLetter.getId();
+        this.emailId = deadLetter.getOutboundEmailId();
+        this.to = deadLetter.getTo();
+        this.subject = deadLetter.getSubject();
+        this.failureType = deadLetter.getFailureType();
+        this.smtpCode = deadLetter.getSmtpCode();
+        this.lastError = deadLetter.getLastError();
+        this.attempts = deadLetter.getAttempts();
+        this.failedAt = deadLetter.getFailedAt();
+    }
+}
@@ -0,0 +1,36 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.OutboundEmail;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailStatusResponse {
+    private Long id;
+    private String to;
+    private String subject;
+    private EmailStatus status;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+
+    public EmailStatusResponse(OutboundEmail email) {
+        this.id = email.getId();
+        this.to = email.getTo();
+        this.subject = email.getSubject();
+        this.status = email.getStatus();
+        this.attempts = email.getAttempts();
+        this.lastError = email.getLastError();
+        this.nextAttemptAt = email.getNextAttemptAt();
+        this.createdAt = email.getCreatedAt();
+        this.sentAt = email.getSentAt();
+    }
+}
@@ -0,0 +1,24 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Một hóa đơn cần gửi yêu cầu thanh toán kèm mã QR
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentInvoiceRequest {
+    private String email;
+    private String customerName;
+    private String orderId;
+    private String serviceName;
+    private double amount;
+    private LocalDate dueDate;
+    private String paymentUrl;
+    private String qrCodeContent;
+}
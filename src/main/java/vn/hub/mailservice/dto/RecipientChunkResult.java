@@ -0,0 +1,21 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả gửi một phần của danh sách người nhận (một email)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipientChunkResult {
+    private int index;
+    private List<String> recipients;
+    private BatchSendResult.Status status;
+    private Integer smtpCode;
+    private String smtpReply;
+}
@@ -0,0 +1,34 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả gửi email cho danh sách CC/BCC đã được chia thành nhiều phần
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipientFanOutResult {
+    /**
+     * Số người nhận sau khi bỏ trùng, kể cả người nhận chính
+     */
+    private int recipients;
+    private int duplicatesRemoved;
+    /**
+     * Địa chỉ không hợp lệ, không được gửi
+     */
+    private List<String> invalidRecipients;
+    private List<RecipientChunkResult> chunks;
+
+    public long getAcceptedChunks() {
+        return chunks.stream().filter(c -> c.getStatus() == BatchSendResult.Status.ACCEPTED).count();
+    }
+
+    public long getRejectedChunks() {
+        return chunks.size() - getAcceptedChunks();
+    }
+}
@@ -0,0 +1,17 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayRequest {
+    /**
+     * Danh sách ID dead-letter cần gửi lại, bỏ trống để gửi lại tất cả
+     */
+    private List<Long> ids;
+}
@@ -0,0 +1,19 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cùng một email gửi riêng cho từng người nhận
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendToEachRequest {
+    private List<String> recipients;
+    private String subject;
+    private String htmlContent;
+}
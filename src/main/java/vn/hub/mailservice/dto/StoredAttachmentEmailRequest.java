@@ -0,0 +1,22 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredAttachmentEmailRequest {
+    private String to;
+    private String subject;
+    private String htmlContent;
+    /**
+     * ID trả về khi upload qua /api/attachments
+     */
+    private String attachmentId;
+    /**
+     * Tên file hiển thị trong email, bỏ trống thì dùng tên lúc upload
+     */
+    private String attachmentName;
+}
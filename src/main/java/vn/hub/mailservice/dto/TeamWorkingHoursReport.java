@@ -0,0 +1,25 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng báo cáo thời gian làm việc của nhóm trong kỳ
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TeamWorkingHoursReport {
+    private String team;
+    private Long members;
+    private Long totalMinutes;
+
+    public double getTotalHours() {
+        return Math.round(totalMinutes / 60.0 * 100) / 100.0;
+    }
+
+    public double getAverageHours() {
+        return members == 0 ? 0 : Math.round(totalMinutes / 60.0 / members * 100) / 100.0;
+    }
+}
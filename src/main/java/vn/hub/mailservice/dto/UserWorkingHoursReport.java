@@ -0,0 +1,23 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng báo cáo thời gian làm việc của user trong kỳ
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserWorkingHoursReport {
+    private Long userId;
+    private String username;
+    private String fullName;
+    private String team;
+    private Integer minutes;
+
+    public double getHours() {
+        return Math.round(minutes / 60.0 * 100) / 100.0;
+    }
+}
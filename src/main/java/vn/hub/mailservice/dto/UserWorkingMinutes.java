@@ -0,0 +1,20 @@
+package vn.hub.mailservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tổng số phút làm việc trong ngày của một user, kết quả của truy vấn gộp theo user
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserWorkingMinutes {
+
+    private Long userId;
+    private String username;
+    private String email;
+    private String fullName;
+    private Long totalMinutes;
+}
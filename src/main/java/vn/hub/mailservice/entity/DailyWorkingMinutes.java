@@ -0,0 +1,29 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng số phút làm việc của một user trong một ngày (theo ngày đăng nhập) từ các phiên đã đăng xuất.
+ * Được cộng dồn mỗi lần logout và dựng lại định kỳ từ login_history.
+ */
+@Entity
+@Table(name = "daily_working_minutes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyWorkingMinutes {
+
+    @EmbeddedId
+    private DailyWorkingMinutesId id;
+
+    @Column(nullable = false)
+    private int minutes;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,64 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.hub.mailservice.mail.SendFailureType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email đã gửi lại hết số lần cho phép hoặc gặp lỗi vĩnh viễn.
+ * Nội dung email vẫn nằm ở bảng outbound_email, bảng này chỉ lưu lý do thất bại để tra cứu và gửi lại.
+ */
+@Entity
+@Table(name = "dead_letter_email")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "outbound_email_id", nullable = false)
+    private Long outboundEmailId;
+
+    @Column(name = "recipient", nullable = false)
+    private String to;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "failure_type", nullable = false)
+    private SendFailureType failureType;
+
+    @Column(name = "smtp_code")
+    private Integer smtpCode;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+
+    @Column(name = "replayed_at")
+    private LocalDateTime replayedAt;
+
+    public DeadLetterEmail(OutboundEmail email, SendFailureType failureType, Integer smtpCode) {
+        this.outboundEmailId = email.getId();
+        this.to = email.getTo();
+        this.subject = email.getSubject();
+        this.failureType = failureType;
+        this.smtpCode = smtpCode;
+        this.lastError = email.getLastError();
+        this.attempts = email.getAttempts();
+        this.failedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,11 @@
+package vn.hub.mailservice.entity;
+
+/**
+ * Trạng thái của một email trong hàng đợi gửi
+ */
+public enum EmailStatus {
+    QUEUED,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,16 @@
+package vn.hub.mailservice.entity;
+
+/**
+ * Loại email trong hàng đợi, quyết định phương thức gửi tương ứng của EmailService
+ */
+public enum EmailType {
+    HTML,
+    CC,
+    BCC,
+    QRCODE,
+    PDF,
+    /**
+     * Email đã dựng sẵn dạng MIME (yêu cầu thanh toán hàng loạt), gửi nguyên văn
+     */
+    PREPARED
+}
@@ -0,0 +1,44 @@
+package vn.hub.mailservice.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Map;
+
+/**
+ * Lưu map biến của template thành một cột JSON dạng TEXT
+ */
+@Converter
+public class JsonMapConverter implements AttributeConverter<Map<String, String>, String> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Override
+    public String convertToDatabaseColumn(Map<String, String> values) {
+        if (values == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không thể chuyển biến template sang JSON", e);
+        }
+    }
+
+    @Override
+    public Map<String, String> convertToEntityAttribute(String column) {
+        if (column == null || column.isBlank()) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readValue(column, MAP_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không thể đọc biến template từ JSON", e);
+        }
+    }
+}
@@ -13,8 +13,16 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class LoginHistory {
+    /**
+     * Số ID lấy mỗi lần từ login_history_seq, phải khớp với bước tăng khi khởi tạo bảng (V6)
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // ID pooled thay cho IDENTITY để INSERT không phải chờ DB trả ID từng dòng và gom được thành lô
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "login_history_seq")
+    @SequenceGenerator(name = "login_history_seq", sequenceName = "login_history_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,38 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Phiên đăng nhập đang mở của một user, dùng chung cho mọi instance.
+ * Khóa chính user_id bảo đảm mỗi user chỉ có một phiên đang mở; login_history có partition theo login_time
+ * nên không đặt được unique index chỉ theo user trên bảng đó.
+ */
+@Entity
+@Table(name = "open_session")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenSession {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    /**
+     * ID phiên trong login_history, được cấp trước nên phiên có thể chưa được ghi (write-behind hoặc login bị dừng
+     * giữa chừng; logout vẫn bỏ được chỗ giữ đó)
+     */
+    @Column(name = "login_history_id")
+    private Long loginHistoryId;
+
+    @Column(name = "login_time", nullable = false)
+    private LocalDateTime loginTime;
+}
@@ -0,0 +1,112 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email nằm trong hàng đợi gửi đi.
+ * Được lưu xuống DB trước khi trả 202 cho client để không bị mất khi service khởi động lại.
+ */
+@Entity
+@Table(name = "outbound_email")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboundEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailStatus status;
+
+    @Column(name = "recipient", nullable = false)
+    private String to;
+
+    @Convert(converter = StringListConverter.class)
+    @Column(name = "cc_list", columnDefinition = "TEXT")
+    private List<String> ccList;
+
+    @Convert(converter = StringListConverter.class)
+    @Column(name = "bcc_list", columnDefinition = "TEXT")
+    private List<String> bccList;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Lob
+    @Column(name = "html_content", columnDefinition = "LONGTEXT")
+    private String htmlContent;
+
+    /**
+     * Template dùng để render nội dung lúc gửi, khi có thì htmlContent được bỏ qua
+     */
+    @Column(name = "template_path")
+    private String templatePath;
+
+    @Convert(converter = JsonMapConverter.class)
+    @Column(name = "template_variables", columnDefinition = "TEXT")
+    private Map<String, String> templateVariables;
+
+    @Column(name = "qr_code_content", columnDefinition = "TEXT")
+    private String qrCodeContent;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Lob
+    @Column(name = "attachment", columnDefinition = "LONGBLOB")
+    private byte[] attachment;
+
+    /**
+     * ID file đính kèm trong kho file đính kèm, dùng thay cho attachment
+     */
+    @Column(name = "attachment_id", length = 64)
+    private String attachmentId;
+
+    /**
+     * Email dạng MIME đã dựng sẵn của loại PREPARED
+     */
+    @Lob
+    @Column(name = "raw_message", columnDefinition = "LONGBLOB")
+    private byte[] rawMessage;
+
+    @Column(name = "campaign_id", length = 36)
+    private String campaignId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public OutboundEmail(EmailType type, String to, String subject, String htmlContent) {
+        this.type = type;
+        this.to = to;
+        this.subject = subject;
+        this.htmlContent = htmlContent;
+        this.status = EmailStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,88 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email phát sinh từ nghiệp vụ (thông báo giờ làm việc, yêu cầu thanh toán...).
+ * Được ghi trong cùng giao dịch DB với nghiệp vụ, sau đó poller mới chuyển sang hàng đợi gửi,
+ * nhờ vậy email không bị mất nếu service khởi động lại giữa chừng.
+ */
+@Entity
+@Table(name = "outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EmailType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status;
+
+    @Column(name = "recipient", nullable = false)
+    private String to;
+
+    @Convert(converter = StringListConverter.class)
+    @Column(name = "cc_list", columnDefinition = "TEXT")
+    private List<String> ccList;
+
+    @Convert(converter = StringListConverter.class)
+    @Column(name = "bcc_list", columnDefinition = "TEXT")
+    private List<String> bccList;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(name = "template_path", nullable = false)
+    private String templatePath;
+
+    @Convert(converter = JsonMapConverter.class)
+    @Column(name = "template_variables", columnDefinition = "TEXT")
+    private Map<String, String> templateVariables;
+
+    @Column(name = "qr_code_content", columnDefinition = "TEXT")
+    private String qrCodeContent;
+
+    /**
+     * ID file đính kèm trong kho file đính kèm
+     */
+    @Column(name = "attachment_id", length = 64)
+    private String attachmentId;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Column(name = "outbound_email_id")
+    private Long outboundEmailId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    public OutboxMessage(EmailType type, String to, String subject, String templatePath,
+            Map<String, String> templateVariables) {
+        this.type = type;
+        this.to = to;
+        this.subject = subject;
+        this.templatePath = templatePath;
+        this.templateVariables = templateVariables;
+        this.status = OutboxStatus.PENDING;
+        this.createdAt = LocalDateTime.now();
+    }
+}
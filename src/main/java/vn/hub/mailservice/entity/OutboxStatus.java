@@ -0,0 +1,15 @@
+package vn.hub.mailservice.entity;
+
+/**
+ * Trạng thái của một bản ghi outbox
+ */
+public enum OutboxStatus {
+    /**
+     * Đã ghi cùng giao dịch nghiệp vụ, chờ được chuyển vào hàng đợi gửi
+     */
+    PENDING,
+    /**
+     * Đã chuyển vào hàng đợi gửi (outbound_email)
+     */
+    PUBLISHED
+}
@@ -0,0 +1,26 @@
+package vn.hub.mailservice.entity;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Kỳ tổng hợp thời gian làm việc
+ */
+public enum ReportPeriod {
+    /**
+     * Tuần bắt đầu từ thứ Hai
+     */
+    WEEK,
+    MONTH;
+
+    /**
+     * Ngày bắt đầu của kỳ chứa ngày truyền vào
+     */
+    public LocalDate startOf(LocalDate date) {
+        return switch (this) {
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+}
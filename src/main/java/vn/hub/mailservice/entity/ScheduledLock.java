@@ -0,0 +1,36 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Khóa dùng chung giữa các instance cho job chạy định kỳ.
+ * Instance nào cập nhật được lock_until thì được chạy job, các instance khác bỏ qua cho tới khi khóa hết hạn.
+ */
+@Entity
+@Table(name = "scheduled_lock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledLock {
+
+    @Id
+    @Column(length = 128)
+    private String name;
+
+    @Column(name = "lock_until", nullable = false)
+    private LocalDateTime lockUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+}
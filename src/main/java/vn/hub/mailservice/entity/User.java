@@ -28,6 +28,9 @@ public class User {
     @Column(name = "full_name")
     private String fullName;
 
+    @Column(name = "team")
+    private String team;
+
     @Column(name = "is_active")
     private boolean active = true;
 }
\ No newline at end of file
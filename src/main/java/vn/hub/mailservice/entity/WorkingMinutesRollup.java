@@ -0,0 +1,29 @@
+package vn.hub.mailservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng số phút làm việc của một user trong một tuần hoặc một tháng.
+ * Được job tổng hợp tính lại từ daily_working_minutes cho các kỳ có ngày thay đổi.
+ */
+@Entity
+@Table(name = "working_minutes_rollup")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkingMinutesRollup {
+
+    @EmbeddedId
+    private WorkingMinutesRollupId id;
+
+    @Column(nullable = false)
+    private int minutes;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,15 @@
+package vn.hub.mailservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Hàng đợi gửi email đã đầy, client cần gửi lại sau
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class EmailQueueFullException extends RuntimeException {
+
+    public EmailQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,281 @@
+package vn.hub.mailservice.mail;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.hub.mailservice.config.AttachmentStoreProperties;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Kho file đính kèm theo nội dung: ID là SHA-256 của file, cùng một file upload nhiều lần chỉ lưu một bản.
+ * File được lưu ở dạng đã mã hóa base64 (đúng như khi nằm trong email) và được memory-map khi dùng,
+ * nên gửi cùng một file cho hàng nghìn người nhận không phải đọc và mã hóa lại file cho từng email.
+ * Tổng dung lượng file đang được map bị giới hạn bởi maxMappedSize, file không còn được dùng bị xóa
+ * bởi {@link #deleteUnreferenced}.
+ */
+@Component
+@Slf4j
+public class AttachmentStore {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String DATA_SUFFIX = ".b64";
+    private static final String META_SUFFIX = ".properties";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_FILE_IDS = 10_000;
+
+    private final Path directory;
+    private final long maxSize;
+    /**
+     * File đang được memory-map theo ID; file bị bỏ khỏi cache được bỏ map khi GC thu hồi ByteBuffer
+     */
+    private final Cache<String, StoredAttachment> mapped;
+    /**
+     * ID của các file trên đĩa đã lưu, để gửi lại cùng file không phải tính lại SHA-256
+     */
+    private final Cache<FileKey, String> fileIds = Caffeine.newBuilder()
+            .maximumSize(MAX_FILE_IDS)
+            .build();
+
+    public AttachmentStore(AttachmentStoreProperties properties) throws IOException {
+        this.directory = Path.of(properties.getDirectory()).toAbsolutePath();
+        this.maxSize = properties.getMaxSize().toBytes();
+        this.mapped = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxMappedSize().toBytes())
+                .weigher((String id, StoredAttachment stored) -> (int) Math.min(Integer.MAX_VALUE,
+                        stored.encodedSize()))
+                .build();
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Lưu file đính kèm, trả về bản đã có nếu cùng nội dung
+     *
+     * @param content     nội dung file, được đọc hết nhưng không bị đóng
+     * @param fileName    tên file mặc định khi gửi
+     * @param contentType content type của file
+     * @return file đã lưu
+     * @throws IllegalArgumentException nếu file vượt quá kích thước cho phép
+     */
+    public StoredAttachment store(InputStream content, String fileName, String contentType) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(directory, "upload", TEMP_SUFFIX);
+        try {
+            long size;
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp));
+                 OutputStream encoder = MimeUtility.encode(file, "base64")) {
+                size = copy(new DigestInputStream(content, digest), encoder);
+            } catch (MessagingException e) {
+                throw new IOException("Không thể mã hóa file đính kèm", e);
+            }
+
+            String id = HexFormat.of().formatHex(digest.digest());
+            Path data = directory.resolve(id + DATA_SUFFIX);
+            if (!Files.exists(data)) {
+                // Ghi metadata trước, file nội dung xuất hiện sau cùng nên có nội dung là có metadata
+                Properties meta = new Properties();
+                meta.setProperty("fileName", fileName);
+                meta.setProperty("contentType", contentType);
+                meta.setProperty("size", Long.toString(size));
+                Path metaTemp = Files.createTempFile(directory, "meta", TEMP_SUFFIX);
+                try (OutputStream out = Files.newOutputStream(metaTemp)) {
+                    meta.store(out, null);
+                }
+                Files.move(metaTemp, directory.resolve(id + META_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                Files.move(temp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Đã lưu file đính kèm {} ({} byte) với ID {}", fileName, size, id);
+            } else {
+                touch(id);
+            }
+            return get(id).orElseThrow(() -> new IOException("Không đọc được file đính kèm vừa lưu " + id));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Lưu file trên đĩa, file chưa thay đổi từ lần lưu trước thì dùng lại ID cũ mà không đọc lại file
+     */
+    public StoredAttachment store(Path file, String contentType) throws IOException {
+        FileKey key = new FileKey(file.toAbsolutePath(), Files.size(file), Files.getLastModifiedTime(file));
+        String id = fileIds.getIfPresent(key);
+        if (id != null) {
+            Optional<StoredAttachment> stored = get(id);
+            if (stored.isPresent()) {
+                touch(id);
+                return stored.get();
+            }
+        }
+        StoredAttachment stored;
+        try (InputStream content = Files.newInputStream(file)) {
+            stored = store(content, file.getFileName().toString(), contentType);
+        }
+        fileIds.put(key, stored.id());
+        return stored;
+    }
+
+    /**
+     * Tìm file đính kèm theo ID, nội dung được memory-map ở lần dùng đầu tiên
+     */
+    public Optional<StoredAttachment> get(String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        StoredAttachment stored = mapped.getIfPresent(id);
+        if (stored != null) {
+            return Optional.of(stored);
+        }
+        if (!Files.exists(directory.resolve(id + DATA_SUFFIX))) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(mapped.get(id, this::load));
+        } catch (UncheckedIOException e) {
+            log.error("Không đọc được file đính kèm {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Tạo phần MIME đính kèm từ file đã lưu, nội dung base64 được chép nguyên khi gửi
+     *
+     * @param id       ID file đính kèm
+     * @param fileName tên file hiển thị trong email, null thì dùng tên lúc upload
+     * @throws IllegalArgumentException nếu không tìm thấy file
+     */
+    public MimeBodyPart createBodyPart(String id, String fileName) throws MessagingException {
+        StoredAttachment stored = get(id)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy file đính kèm " + id));
+        return new PreEncodedBodyPart(stored.encoded(), stored.contentType(),
+                fileName != null ? fileName : stored.fileName());
+    }
+
+    /**
+     * Xóa các file đính kèm lâu hơn retention không được upload lại và không còn được tham chiếu,
+     * cùng file metadata/file tạm còn sót lại khi ứng dụng dừng giữa chừng lúc lưu
+     *
+     * @param retention  thời gian giữ file tính từ lần upload gần nhất
+     * @param referenced true nếu còn email cần gửi file có ID này
+     * @return số file đính kèm đã xóa
+     */
+    public int deleteUnreferenced(Duration retention, Predicate<String> referenced) throws IOException {
+        Instant cutoff = Instant.now().minus(retention);
+        List<Path> expired;
+        try (Stream<Path> files = Files.list(directory)) {
+            expired = files.filter(file -> isOlderThan(file, cutoff)).toList();
+        }
+        int deleted = 0;
+        for (Path file : expired) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+            } else if (name.endsWith(META_SUFFIX)) {
+                String id = name.substring(0, name.length() - META_SUFFIX.length());
+                if (!Files.exists(directory.resolve(id + DATA_SUFFIX))) {
+                    Files.deleteIfExists(file);
+                }
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                String id = name.substring(0, name.length() - DATA_SUFFIX.length());
+                // Kiểm tra lại thời gian sửa vì file có thể vừa được upload lại trong lúc kiểm tra tham chiếu
+                if (ID_PATTERN.matcher(id).matches() && !referenced.test(id) && isOlderThan(file, cutoff)) {
+                    // Xóa file nội dung trước để không còn file nội dung thiếu metadata
+                    Files.deleteIfExists(file);
+                    Files.deleteIfExists(directory.resolve(id + META_SUFFIX));
+                    mapped.invalidate(id);
+                    deleted++;
+                    log.info("Đã xóa file đính kèm {} không còn được dùng", id);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Đánh dấu file vừa được dùng lại để không bị xóa khi hết hạn giữ file
+     */
+    private void touch(String id) {
+        try {
+            Files.setLastModifiedTime(directory.resolve(id + DATA_SUFFIX), FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Không cập nhật được thời gian dùng file đính kèm {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private StoredAttachment load(String id) {
+        try {
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(directory.resolve(id + META_SUFFIX))) {
+                meta.load(in);
+            }
+            ByteBuffer encoded;
+            try (FileChannel channel = FileChannel.open(directory.resolve(id + DATA_SUFFIX))) {
+                // Vùng nhớ vẫn dùng được sau khi đóng channel
+                encoded = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            return new StoredAttachment(id, meta.getProperty("fileName"), meta.getProperty("contentType"),
+                    Long.parseLong(meta.getProperty("size")), encoded.asReadOnlyBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxSize) {
+                throw new IllegalArgumentException("File đính kèm vượt quá " + maxSize + " byte");
+            }
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record FileKey(Path path, long size, FileTime lastModified) {
+    }
+}
@@ -0,0 +1,387 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import vn.hub.mailservice.config.DomainDeliveryProperties;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Điều phối gửi email theo domain người nhận.
+ * Mỗi domain có hàng đợi riêng với số luồng gửi tối đa và thời gian tạm dừng riêng, nên một domain chậm hoặc
+ * đang lỗi chỉ giữ các luồng của domain đó, email tới domain khác vẫn được gửi.
+ * Mỗi lượt một luồng lấy một lô email cùng domain và gửi liên tiếp trong {@link BatchRunner} (giữ một kết nối SMTP).
+ * Domain trả lỗi tạm thời bị tạm dừng với thời gian tăng dần, hết thời gian thì chỉ gửi thử bằng một luồng
+ * cho tới khi gửi thành công.
+ * Email gửi lại ({@link #submitRetry}) đã chờ theo thời gian gửi lại riêng của email đó nên không chờ thêm thời gian
+ * tạm dừng của domain: thời gian chờ của một email lỗi chỉ là thời gian gửi lại của hàng đợi, còn thời gian tạm dừng
+ * chỉ giữ các email chưa gửi lần nào, tới khi hết thời gian hoặc có email gửi lại thành công.
+ * Các domain dùng chung một số luồng gửi cố định; luồng thứ hai trở đi của một domain chỉ được giao khi còn nhiều hơn
+ * {@link DomainDeliveryProperties#getReservedWorkers()} luồng trống, số luồng chừa lại này chỉ dành cho domain chưa
+ * có luồng nào, nên vài domain chậm không chiếm hết luồng gửi. Luồng gửi xong ưu tiên giao cho domain đang chờ
+ * mà chưa có luồng nào.
+ */
+@Slf4j
+public class DomainDeliveryScheduler implements AutoCloseable {
+
+    /**
+     * Một lần gửi email
+     */
+    @FunctionalInterface
+    public interface Delivery {
+
+        /**
+         * @return loại lỗi nếu gửi thất bại, null nếu gửi thành công
+         */
+        @Nullable
+        SendFailureType deliver();
+    }
+
+    /**
+     * Cách chạy một lô email cùng domain, vd {@link PooledJavaMailSender#withConnection}
+     */
+    @FunctionalInterface
+    public interface BatchRunner {
+        void run(Runnable batch);
+    }
+
+    private final DomainDeliveryProperties properties;
+    private final BatchRunner batchRunner;
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final int reservedWorkers;
+    private final ScheduledExecutorService timer;
+    private final Counter pausedCounter;
+    /**
+     * Hàng đợi theo domain, chỉ truy cập khi giữ khóa this; domain không còn email chờ thì bị xóa
+     */
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    /**
+     * Số luồng đang được giao cho các domain, chỉ truy cập khi giữ khóa this
+     */
+    private int busy;
+    private boolean closed;
+
+    /**
+     * @param workers tổng số luồng gửi dùng chung cho mọi domain
+     */
+    public DomainDeliveryScheduler(DomainDeliveryProperties properties, int workers, BatchRunner batchRunner,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.batchRunner = batchRunner;
+        this.workers = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("mail-worker-", 0).factory());
+        this.workerCount = workers;
+        this.reservedWorkers = Math.max(0, Math.min(properties.getReservedWorkers(), workers - 1));
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("mail-domain-timer").daemon().factory());
+        this.pausedCounter = Counter.builder("mail.domain.paused")
+                .description("Số lần một domain người nhận bị tạm dừng gửi do lỗi tạm thời")
+                .register(meterRegistry);
+        Gauge.builder("mail.domain.pending", this, DomainDeliveryScheduler::getPendingCount)
+                .description("Số email đang chờ trong hàng đợi theo domain")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Domain của địa chỉ email, chữ thường; rỗng nếu địa chỉ không có domain
+     */
+    public static String domainOf(@Nullable String address) {
+        if (address == null) {
+            return "";
+        }
+        int at = address.lastIndexOf('@');
+        if (at < 0) {
+            return "";
+        }
+        String domain = address.substring(at + 1).trim();
+        if (domain.endsWith(">")) {
+            domain = domain.substring(0, domain.length() - 1);
+        }
+        return domain.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Đưa email vào hàng đợi của domain
+     *
+     * @throws RejectedExecutionException nếu bộ điều phối đã dừng
+     */
+    public synchronized void submit(String domain, Delivery delivery) {
+        if (closed) {
+            throw new RejectedExecutionException("Bộ điều phối gửi email đã dừng");
+        }
+        Lane lane = lanes.computeIfAbsent(domain, d -> new Lane(d, properties.resolve(d)));
+        lane.pending.addLast(delivery);
+        startWorkers(lane);
+    }
+
+    /**
+     * Đưa email gửi lại vào hàng đợi của domain, email được gửi cả khi domain đang tạm dừng
+     *
+     * @throws RejectedExecutionException nếu bộ điều phối đã dừng
+     */
+    public synchronized void submitRetry(String domain, Delivery delivery) {
+        if (closed) {
+            throw new RejectedExecutionException("Bộ điều phối gửi email đã dừng");
+        }
+        Lane lane = lanes.computeIfAbsent(domain, d -> new Lane(d, properties.resolve(d)));
+        lane.retries.addLast(delivery);
+        startWorkers(lane);
+    }
+
+    /**
+     * Tổng số email đang chờ, chưa được luồng nào lấy
+     */
+    public synchronized int getPendingCount() {
+        int pending = 0;
+        for (Lane lane : lanes.values()) {
+            pending += lane.pending.size() + lane.retries.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Domain đang bị tạm dừng gửi
+     */
+    public synchronized boolean isPaused(String domain) {
+        Lane lane = lanes.get(domain);
+        return lane != null && lane.isPaused();
+    }
+
+    /**
+     * Giao thêm lượt gửi cho domain tới khi đủ số luồng cho phép hoặc hết luồng trống; phải giữ khóa this
+     */
+    private void startWorkers(Lane lane) {
+        // Domain vừa lỗi chỉ gửi thử bằng một luồng, tránh dồn nhiều email vào domain còn đang lỗi
+        int concurrency = lane.failures > 0 ? 1 : lane.settings.getConcurrency();
+        while (lane.active < concurrency && lane.hasReady() && hasFreeWorker(lane)) {
+            lane.active++;
+            busy++;
+            try {
+                workers.execute(() -> runBatch(lane));
+            } catch (RejectedExecutionException e) {
+                lane.active--;
+                busy--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Luồng đầu tiên của domain dùng được mọi luồng trống, luồng thêm phải chừa lại reservedWorkers luồng
+     */
+    private boolean hasFreeWorker(Lane lane) {
+        return busy < (lane.active == 0 ? workerCount : workerCount - reservedWorkers);
+    }
+
+    /**
+     * Giao luồng vừa trống, ưu tiên domain chưa có luồng nào (trừ domain vừa gửi xong) rồi mới tới các domain còn lại;
+     * phải giữ khóa this
+     */
+    private void startWaitingWorkers(Lane finished) {
+        for (Lane lane : lanes.values()) {
+            if (lane != finished && lane.active == 0) {
+                startWorkers(lane);
+            }
+        }
+        for (Lane lane : lanes.values()) {
+            startWorkers(lane);
+        }
+    }
+
+    private void runBatch(Lane lane) {
+        try {
+            List<Delivery> retries = takeRetries(lane);
+            if (!retries.isEmpty()) {
+                batchRunner.run(() -> deliverRetries(lane, retries));
+                return;
+            }
+            List<Delivery> batch = takeBatch(lane);
+            if (!batch.isEmpty()) {
+                batchRunner.run(() -> deliver(lane, batch));
+            }
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi gửi lô email tới domain {}: {}", lane.domain, e.getMessage());
+        } finally {
+            synchronized (this) {
+                lane.active--;
+                busy--;
+                startWaitingWorkers(lane);
+                removeIfIdle(lane);
+            }
+        }
+    }
+
+    private synchronized List<Delivery> takeBatch(Lane lane) {
+        List<Delivery> batch = new ArrayList<>();
+        while (!lane.isPaused() && batch.size() < lane.settings.getBatchSize() && !lane.pending.isEmpty()) {
+            batch.add(lane.pending.pollFirst());
+        }
+        return batch;
+    }
+
+    private synchronized List<Delivery> takeRetries(Lane lane) {
+        List<Delivery> batch = new ArrayList<>();
+        while (batch.size() < lane.settings.getBatchSize() && !lane.retries.isEmpty()) {
+            batch.add(lane.retries.pollFirst());
+        }
+        return batch;
+    }
+
+    /**
+     * Mỗi email gửi lại chỉ gửi một lần theo lịch gửi lại riêng, lỗi thì kéo dài thời gian tạm dừng của domain
+     * nhưng vẫn gửi tiếp các email gửi lại khác trong lô
+     */
+    private void deliverRetries(Lane lane, List<Delivery> batch) {
+        for (Delivery delivery : batch) {
+            SendFailureType failure;
+            try {
+                failure = delivery.deliver();
+            } catch (RuntimeException e) {
+                log.error("Lỗi khi gửi lại email tới domain {}: {}", lane.domain, e.getMessage());
+                continue;
+            }
+            if (failure != null && failure.isRetryable()) {
+                pause(lane, List.of());
+            } else if (failure == null) {
+                onSuccess(lane);
+            }
+        }
+    }
+
+    private void deliver(Lane lane, List<Delivery> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            // Luồng khác của cùng domain vừa gặp lỗi, không gửi tiếp phần còn lại của lô
+            if (i > 0 && returnIfPaused(lane, batch.subList(i, batch.size()))) {
+                return;
+            }
+            SendFailureType failure;
+            try {
+                failure = batch.get(i).deliver();
+            } catch (RuntimeException e) {
+                log.error("Lỗi khi gửi email tới domain {}: {}", lane.domain, e.getMessage());
+                continue;
+            }
+            if (failure != null && failure.isRetryable()) {
+                pause(lane, batch.subList(i + 1, batch.size()));
+                return;
+            }
+            if (failure == null) {
+                onSuccess(lane);
+            }
+        }
+    }
+
+    private synchronized boolean returnIfPaused(Lane lane, List<Delivery> remaining) {
+        if (!lane.isPaused()) {
+            return false;
+        }
+        returnToQueue(lane, remaining);
+        return true;
+    }
+
+    private synchronized void onSuccess(Lane lane) {
+        if (lane.failures > 0) {
+            log.info("Domain {} gửi lại được sau {} lần lỗi tạm thời", lane.domain, lane.failures);
+            lane.failures = 0;
+            startWorkers(lane);
+        }
+    }
+
+    /**
+     * Tạm dừng domain, các email còn lại trong lô được trả về đầu hàng đợi để gửi lại đúng thứ tự
+     */
+    private synchronized void pause(Lane lane, List<Delivery> remaining) {
+        returnToQueue(lane, remaining);
+        lane.failures++;
+        Duration delay = backoff(lane.settings, lane.failures);
+        lane.pausedUntil = System.nanoTime() + delay.toNanos();
+        pausedCounter.increment();
+        log.warn("Domain {} lỗi tạm thời {} lần liên tiếp, tạm dừng gửi {}ms ({} email đang chờ)", lane.domain,
+                lane.failures, delay.toMillis(), lane.pending.size());
+        try {
+            timer.schedule(() -> resume(lane), delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Đang dừng ứng dụng, email còn chờ được nạp lại khi khởi động
+        }
+    }
+
+    private void returnToQueue(Lane lane, List<Delivery> remaining) {
+        for (int i = remaining.size() - 1; i >= 0; i--) {
+            lane.pending.addFirst(remaining.get(i));
+        }
+    }
+
+    private synchronized void resume(Lane lane) {
+        startWorkers(lane);
+        removeIfIdle(lane);
+    }
+
+    private void removeIfIdle(Lane lane) {
+        if (lane.pending.isEmpty() && lane.retries.isEmpty() && lane.active == 0 && !lane.isPaused()) {
+            lanes.remove(lane.domain, lane);
+        }
+    }
+
+    private static Duration backoff(DomainDeliveryProperties.Domain settings, int failures) {
+        double delay = settings.getInitialBackoff().toMillis() * Math.pow(settings.getMultiplier(), failures - 1);
+        return Duration.ofMillis(Math.round(Math.min(delay, settings.getMaxBackoff().toMillis())));
+    }
+
+    /**
+     * Dừng nhận email mới và chờ các lô đang gửi xong; email còn trong hàng đợi vẫn ở trạng thái QUEUED
+     * và được nạp lại khi khởi động
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        timer.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    private static class Lane {
+
+        private final String domain;
+        private final DomainDeliveryProperties.Domain settings;
+        private final Deque<Delivery> pending = new ArrayDeque<>();
+        private final Deque<Delivery> retries = new ArrayDeque<>();
+        private int active;
+        private int failures;
+        private long pausedUntil;
+
+        Lane(String domain, DomainDeliveryProperties.Domain settings) {
+            this.domain = domain;
+            this.settings = settings;
+        }
+
+        boolean isPaused() {
+            return failures > 0 && pausedUntil - System.nanoTime() > 0;
+        }
+
+        /**
+         * Còn email gửi được ngay: email gửi lại, hoặc email chưa gửi lần nào khi domain không tạm dừng
+         */
+        boolean hasReady() {
+            return !retries.isEmpty() || (!pending.isEmpty() && !isPaused());
+        }
+    }
+}
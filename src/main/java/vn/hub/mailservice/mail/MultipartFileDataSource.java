@@ -0,0 +1,81 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * DataSource đọc thẳng file upload khi email được ghi ra kết nối SMTP.
+ * File upload đã được servlet container giữ trong bộ nhớ (file nhỏ) hoặc ghi ra đĩa (vượt
+ * spring.servlet.multipart.file-size-threshold), nên không cần chép thêm ra file tạm hay đọc cả file vào heap.
+ * Mỗi lần ghi email mở một luồng đọc mới, nên gửi lại cùng MimeMessage vẫn đọc được từ đầu.
+ * File upload chỉ tồn tại trong request, email phải được gửi trước khi request kết thúc.
+ */
+public class MultipartFileDataSource implements DataSource {
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final String TRANSFER_ENCODING = "base64";
+
+    private final MultipartFile file;
+    private final String contentType;
+
+    public MultipartFileDataSource(MultipartFile file, String defaultContentType) {
+        this.file = file;
+        this.contentType = file.getContentType() != null && !file.getContentType().isBlank()
+                ? file.getContentType()
+                : defaultContentType;
+    }
+
+    /**
+     * Tạo phần MIME đính kèm đọc nội dung trực tiếp từ file upload
+     *
+     * @param file               file upload
+     * @param fileName           tên file hiển thị trong email
+     * @param defaultContentType content type dùng khi client không gửi kèm
+     * @return phần MIME sẵn sàng thêm vào multipart
+     */
+    public static MimeBodyPart createAttachment(MultipartFile file, String fileName, String defaultContentType)
+            throws MessagingException {
+        MimeBodyPart bodyPart = new MimeBodyPart();
+        bodyPart.setDisposition(Part.ATTACHMENT);
+        try {
+            bodyPart.setFileName(MimeUtility.encodeText(fileName, "UTF-8", null));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Không thể mã hóa tên file đính kèm", e);
+        }
+        bodyPart.setDataHandler(new DataHandler(new MultipartFileDataSource(file,
+                defaultContentType != null ? defaultContentType : DEFAULT_CONTENT_TYPE)));
+        // Đặt sẵn encoding để JavaMail không phải đọc thử file để chọn encoding
+        bodyPart.setHeader("Content-Transfer-Encoding", TRANSFER_ENCODING);
+        return bodyPart;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return file.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("File upload chỉ đọc");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return file.getOriginalFilename();
+    }
+}
@@ -0,0 +1,185 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import vn.hub.mailservice.config.SmtpPoolProperties;
+import vn.hub.mailservice.mail.SmtpTransportPool.PooledTransport;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JavaMailSender gửi email qua các kết nối SMTP lấy từ {@link SmtpTransportPool}
+ * thay vì mở rồi đóng một kết nối mới cho mỗi lần gọi send().
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final SmtpTransportPool pool;
+    /**
+     * Kết nối đang được giữ cho luồng hiện tại trong {@link #withConnection}
+     */
+    private final ThreadLocal<ConnectionScope> connectionScope = new ThreadLocal<>();
+    @Nullable
+    private SmtpRateLimiter rateLimiter;
+
+    public PooledJavaMailSender(SmtpPoolProperties poolProperties, MeterRegistry meterRegistry) {
+        this.pool = new SmtpTransportPool(this::connectTransport, poolProperties, meterRegistry);
+    }
+
+    public SmtpTransportPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Đặt bộ giới hạn tốc độ gửi, null để không giới hạn
+     */
+    public void setRateLimiter(@Nullable SmtpRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Chạy action, mọi lần gọi send() trong action trên luồng hiện tại dùng chung một kết nối SMTP
+     * thay vì lấy và trả kết nối cho từng lần gọi. Kết nối được trả về pool khi action kết thúc.
+     */
+    public void withConnection(Runnable action) {
+        if (connectionScope.get() != null) {
+            action.run();
+            return;
+        }
+        ConnectionScope scope = new ConnectionScope();
+        connectionScope.set(scope);
+        try {
+            action.run();
+        } finally {
+            connectionScope.remove();
+            if (scope.transport != null) {
+                pool.release(scope.transport, false);
+            }
+        }
+    }
+
+    /**
+     * Luồng hiện tại đang chạy trong {@link #withConnection}, mọi lần gửi trên luồng này dùng kết nối đã giữ
+     */
+    public boolean isConnectionPinned() {
+        return connectionScope.get() != null;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        ConnectionScope scope = connectionScope.get();
+        PooledTransport transport = scope != null ? scope.transport : null;
+
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                // Chờ lượt gửi trước khi lấy kết nối để không giữ kết nối của pool trong lúc chờ giới hạn tốc độ
+                if (rateLimiter != null) {
+                    try {
+                        rateLimiter.acquire();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(original(mimeMessages, originalMessages, j), ex);
+                        }
+                        throw new MailSendException("Interrupted while waiting for send rate limit", ex,
+                                failedMessages);
+                    }
+                }
+
+                // Lấy kết nối mới nếu chưa có hoặc kết nối hiện tại đã gửi đủ số email cho phép
+                if (transport == null || pool.isExhausted(transport)) {
+                    if (transport != null) {
+                        pool.release(transport, false);
+                        transport = null;
+                    }
+                    try {
+                        transport = pool.borrow();
+                    } catch (AuthenticationFailedException ex) {
+                        throw new MailAuthenticationException(ex);
+                    } catch (MessagingException ex) {
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(original(mimeMessages, originalMessages, j), ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // Giữ Message-ID đã đặt trước đó
+                        mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+                    if (rateLimiter != null) {
+                        rateLimiter.onResult(0);
+                    }
+                } catch (Exception ex) {
+                    failedMessages.put(original(mimeMessages, originalMessages, i), ex);
+                    if (rateLimiter != null) {
+                        rateLimiter.onResult(SmtpErrors.returnCode(ex));
+                    }
+                    if (!transport.getTransport().isConnected()) {
+                        // Kết nối bị đứt giữa chừng, bỏ kết nối này và lấy kết nối khác cho các email còn lại
+                        pool.release(transport, true);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            if (scope != null) {
+                scope.transport = transport;
+            } else if (transport != null) {
+                pool.release(transport, false);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Định kỳ đóng các kết nối SMTP rảnh quá lâu
+     */
+    @Scheduled(fixedDelayString = "${app.mail.pool.eviction-interval:30000}")
+    public void evictIdleConnections() {
+        pool.evictIdle();
+    }
+
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+
+    private static class ConnectionScope {
+        @Nullable
+        PooledTransport transport;
+    }
+
+    private static Object original(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages, int index) {
+        return originalMessages != null ? originalMessages[index] : mimeMessages[index];
+    }
+}
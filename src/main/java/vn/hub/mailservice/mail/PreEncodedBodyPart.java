@@ -0,0 +1,92 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.SharedInputStream;
+
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Phần MIME đính kèm có nội dung đã mã hóa base64 sẵn.
+ * JavaMail coi nội dung như phần MIME đọc từ email có sẵn: khi gửi chép nguyên các byte ra kết nối SMTP,
+ * không đọc file gốc và không mã hóa lại. Nhiều email dùng chung một vùng nhớ nội dung (thường là file
+ * memory-mapped), mỗi email chỉ tạo header riêng.
+ */
+public class PreEncodedBodyPart extends MimeBodyPart {
+
+    private static final String TRANSFER_ENCODING = "base64";
+
+    /**
+     * @param encoded     nội dung đã mã hóa base64 (kèm xuống dòng CRLF mỗi 76 ký tự), không bị thay đổi
+     * @param contentType content type của file gốc
+     * @param fileName    tên file hiển thị trong email
+     */
+    public PreEncodedBodyPart(ByteBuffer encoded, String contentType, String fileName) throws MessagingException {
+        this.contentStream = new ByteBufferInputStream(encoded.slice());
+        setHeader("Content-Type", contentType);
+        setDisposition(Part.ATTACHMENT);
+        try {
+            setFileName(MimeUtility.encodeText(fileName, "UTF-8", null));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Không thể mã hóa tên file đính kèm", e);
+        }
+        setHeader("Content-Transfer-Encoding", TRANSFER_ENCODING);
+    }
+
+    /**
+     * Luồng đọc trên ByteBuffer, newStream() tạo luồng mới dùng chung vùng nhớ để mỗi lần ghi email đọc từ đầu
+     */
+    private static class ByteBufferInputStream extends InputStream implements SharedInputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long getPosition() {
+            return buffer.position();
+        }
+
+        @Override
+        public InputStream newStream(long start, long end) {
+            int to = end < 0 ? buffer.limit() : (int) end;
+            return new ByteBufferInputStream(buffer.slice((int) start, to - (int) start));
+        }
+    }
+}
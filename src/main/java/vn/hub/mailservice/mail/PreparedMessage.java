@@ -0,0 +1,147 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Email có nội dung giống nhau cho mọi người nhận, được dựng và ghi ra byte một lần.
+ * Mỗi người nhận có một bản sao chỉ gồm header To, Cc, Message-ID riêng; khi gửi, các header này được ghi trước
+ * rồi chép nguyên phần header chung và nội dung đã mã hóa, không dựng lại multipart hay mã hóa lại HTML.
+ */
+public class PreparedMessage {
+
+    private static final String[] PER_RECIPIENT_HEADERS = {"To", "Cc", "Bcc", "Message-ID"};
+    private static final String MESSAGE_ID = "Message-ID";
+
+    private final byte[] shared;
+    private final Address[] from;
+    private final String messageIdDomain;
+
+    private PreparedMessage(byte[] shared, Address[] from, String messageIdDomain) {
+        this.shared = shared;
+        this.from = from;
+        this.messageIdDomain = messageIdDomain;
+    }
+
+    /**
+     * Ghi email mẫu ra byte, bỏ qua các header người nhận và Message-ID
+     *
+     * @param template email mẫu đã có tiêu đề, nội dung, file đính kèm, không cần người nhận
+     */
+    public static PreparedMessage prepare(MimeMessage template) throws MessagingException, IOException {
+        if (template.getSentDate() == null) {
+            template.setSentDate(new Date());
+        }
+        template.saveChanges();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        template.writeTo(buffer, PER_RECIPIENT_HEADERS);
+
+        Address[] from = template.getFrom();
+        String domain = "localhost";
+        if (from != null && from.length > 0 && from[0] instanceof InternetAddress address
+                && address.getAddress() != null && address.getAddress().contains("@")) {
+            domain = address.getAddress().substring(address.getAddress().indexOf('@') + 1);
+        }
+        return new PreparedMessage(buffer.toByteArray(), from, domain);
+    }
+
+    /**
+     * Tạo bản sao cho một người nhận
+     *
+     * @param session phiên JavaMail của JavaMailSender dùng để gửi
+     * @param to      địa chỉ người nhận
+     */
+    public MimeMessage forRecipient(Session session, String to) throws MessagingException {
+        InternetAddress[] recipient = {new InternetAddress(to, true)};
+        return new RecipientMessage(session, this, recipient, null, recipient);
+    }
+
+    /**
+     * Tạo bản sao gửi tới một nhóm người nhận
+     *
+     * @param session  phiên JavaMail của JavaMailSender dùng để gửi
+     * @param to       header To
+     * @param cc       header Cc, null nếu không hiển thị
+     * @param envelope người nhận thực sự của bản sao này (RCPT TO), có thể khác các header
+     */
+    public MimeMessage forEnvelope(Session session, InternetAddress[] to, InternetAddress[] cc,
+            InternetAddress[] envelope) throws MessagingException {
+        return new RecipientMessage(session, this, to, cc, envelope);
+    }
+
+    /**
+     * Kích thước phần dùng chung (header chung và nội dung đã mã hóa)
+     */
+    public int getSharedSize() {
+        return shared.length;
+    }
+
+    /**
+     * Bản sao của email cho một người nhận, chỉ giữ header riêng trong bộ nhớ
+     */
+    private static class RecipientMessage extends MimeMessage {
+
+        private final PreparedMessage prepared;
+        private final Address[] envelope;
+
+        RecipientMessage(Session session, PreparedMessage prepared, InternetAddress[] to, InternetAddress[] cc,
+                InternetAddress[] envelope) throws MessagingException {
+            super(session);
+            this.prepared = prepared;
+            this.envelope = envelope;
+            setRecipients(Message.RecipientType.TO, to);
+            if (cc != null && cc.length > 0) {
+                setRecipients(Message.RecipientType.CC, cc);
+            }
+            // From chỉ dùng cho MAIL FROM của SMTP, header From đã nằm trong phần dùng chung
+            if (prepared.from != null) {
+                addFrom(prepared.from);
+            }
+            setHeader(MESSAGE_ID, "<" + UUID.randomUUID() + "@" + prepared.messageIdDomain + ">");
+        }
+
+        /**
+         * Header chung và nội dung đã cố định khi prepare, không cập nhật lại khi saveChanges()
+         */
+        @Override
+        protected void updateHeaders() {
+        }
+
+        /**
+         * Người nhận thực sự, JavaMailSender dùng làm danh sách RCPT TO
+         */
+        @Override
+        public Address[] getAllRecipients() {
+            return envelope;
+        }
+
+        @Override
+        public void writeTo(OutputStream os, String[] ignoreList) throws IOException, MessagingException {
+            writeHeader(os, "To", getHeader("To", ","));
+            writeHeader(os, "Cc", getHeader("Cc", ","));
+            writeHeader(os, MESSAGE_ID, getHeader(MESSAGE_ID, null));
+            os.write(prepared.shared);
+            os.flush();
+        }
+
+        private static void writeHeader(OutputStream os, String name, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String line = MimeUtility.fold(name.length() + 2, value);
+            os.write((name + ": " + line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package vn.hub.mailservice.mail;
+
+/**
+ * Phân loại lỗi khi gửi email để quyết định có gửi lại hay không
+ */
+public enum SendFailureType {
+    /**
+     * Server trả lỗi tạm thời 4xx (421, 450, 451, 452, 454...), nên gửi lại sau
+     */
+    TRANSIENT,
+    /**
+     * Không kết nối được hoặc mất kết nối tới server, nên gửi lại sau
+     */
+    CONNECTION,
+    /**
+     * Lỗi vĩnh viễn 5xx, địa chỉ không hợp lệ, sai tài khoản..., gửi lại cũng không thành công
+     */
+    PERMANENT;
+
+    public boolean isRetryable() {
+        return this != PERMANENT;
+    }
+}
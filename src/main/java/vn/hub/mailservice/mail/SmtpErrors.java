@@ -0,0 +1,133 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.ParseException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Tiện ích đọc mã phản hồi SMTP và phân loại lỗi từ chuỗi exception của JavaMail/Spring
+ */
+public final class SmtpErrors {
+
+    private SmtpErrors() {
+    }
+
+    /**
+     * Lấy mã phản hồi SMTP (vd 421, 550) từ exception
+     *
+     * @param error exception khi gửi email
+     * @return mã phản hồi SMTP, -1 nếu không có
+     */
+    public static int returnCode(Throwable error) {
+        Throwable smtpError = findSmtpError(error);
+        if (smtpError instanceof SMTPSendFailedException e) {
+            return e.getReturnCode();
+        }
+        if (smtpError instanceof SMTPAddressFailedException e) {
+            return e.getReturnCode();
+        }
+        if (smtpError instanceof SMTPSenderFailedException e) {
+            return e.getReturnCode();
+        }
+        return -1;
+    }
+
+    /**
+     * Phân loại lỗi gửi email: lỗi tạm thời, lỗi kết nối hay lỗi vĩnh viễn
+     *
+     * @param error exception khi gửi email
+     * @return loại lỗi
+     */
+    public static SendFailureType classify(Throwable error) {
+        int code = returnCode(error);
+        if (code >= 400 && code < 500) {
+            return SendFailureType.TRANSIENT;
+        }
+        if (code >= 500) {
+            return SendFailureType.PERMANENT;
+        }
+        if (find(error, e -> e instanceof AuthenticationFailedException
+                || e instanceof MailAuthenticationException
+                || e instanceof AddressException
+                || e instanceof ParseException) != null) {
+            return SendFailureType.PERMANENT;
+        }
+        if (find(error, e -> e instanceof IOException || e instanceof MailConnectException) != null) {
+            return SendFailureType.CONNECTION;
+        }
+        if (find(error, e -> e instanceof MessagingException) != null) {
+            // Lỗi JavaMail không có mã SMTP (hết thời gian chờ pool, server đóng kết nối...)
+            return SendFailureType.TRANSIENT;
+        }
+        return SendFailureType.PERMANENT;
+    }
+
+    /**
+     * Lấy nội dung phản hồi SMTP từ exception, nếu không có thì lấy message của exception gốc
+     *
+     * @param error exception khi gửi email
+     * @return nội dung phản hồi
+     */
+    public static String reply(Throwable error) {
+        Throwable smtpError = findSmtpError(error);
+        if (smtpError != null) {
+            return smtpError.getMessage().trim();
+        }
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    /**
+     * Duyệt cause, nextException và lỗi từng email để tìm exception chứa phản hồi SMTP
+     */
+    private static Throwable findSmtpError(Throwable error) {
+        return find(error, e -> e instanceof SMTPSendFailedException
+                || e instanceof SMTPAddressFailedException
+                || e instanceof SMTPSenderFailedException);
+    }
+
+    private static Throwable find(Throwable error, Predicate<Throwable> predicate) {
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Throwable> pending = new ArrayDeque<>();
+        pending.add(error);
+        while (!pending.isEmpty()) {
+            Throwable current = pending.poll();
+            if (current == null || !visited.add(current)) {
+                continue;
+            }
+            if (predicate.test(current)) {
+                return current;
+            }
+            if (current instanceof MessagingException me && me.getNextException() != null) {
+                pending.add(me.getNextException());
+            }
+            if (current instanceof MailSendException mse) {
+                // Lỗi của từng email trong MailSendException không nằm trong chuỗi cause
+                pending.addAll(Arrays.asList(mse.getMessageExceptions()));
+            }
+            if (current.getCause() != null) {
+                pending.add(current.getCause());
+            }
+        }
+        return null;
+    }
+}
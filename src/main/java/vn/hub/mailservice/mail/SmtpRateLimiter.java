@@ -0,0 +1,84 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import vn.hub.mailservice.config.SmtpRateLimitProperties;
+import vn.hub.mailservice.util.TokenBucket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giới hạn tốc độ gửi tới một SMTP server/tài khoản.
+ * Email vượt tốc độ phải chờ thay vì bị server từ chối; khi server trả lỗi tạm thời 4xx (421, 454...)
+ * tốc độ bị giảm theo hệ số backoff, sau đó tăng dần lại khi gửi thành công.
+ */
+@Slf4j
+public class SmtpRateLimiter {
+
+    private static final double SECONDS_PER_MINUTE = 60.0;
+
+    private final String provider;
+    private final SmtpRateLimitProperties.Limit limit;
+    private final TokenBucket bucket;
+
+    private final Timer waitTimer;
+    private final Counter backoffCounter;
+
+    public SmtpRateLimiter(String provider, SmtpRateLimitProperties.Limit limit, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.limit = limit;
+        this.bucket = new TokenBucket(limit.getRatePerMinute() / SECONDS_PER_MINUTE, limit.getBurst());
+
+        Tags tags = Tags.of("provider", provider);
+        Gauge.builder("mail.smtp.rate", bucket, b -> b.getRatePerSecond() * SECONDS_PER_MINUTE)
+                .description("Tốc độ gửi hiện tại (email/phút)")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("mail.smtp.rate.tokens", bucket, TokenBucket::getAvailableTokens)
+                .description("Số token còn lại, âm nếu có email đang chờ")
+                .tags(tags)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("mail.smtp.rate.wait")
+                .description("Thời gian email phải chờ do giới hạn tốc độ")
+                .tags(tags)
+                .register(meterRegistry);
+        this.backoffCounter = Counter.builder("mail.smtp.rate.backoffs")
+                .description("Số lần giảm tốc do server trả lỗi tạm thời")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Chờ tới lượt gửi một email
+     */
+    public void acquire() throws InterruptedException {
+        long waitedNanos = bucket.acquire(1);
+        waitTimer.record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Ghi nhận kết quả gửi để điều chỉnh tốc độ
+     *
+     * @param smtpCode mã phản hồi SMTP khi lỗi, 0 nếu gửi thành công
+     */
+    public void onResult(int smtpCode) {
+        if (smtpCode == 0) {
+            double current = bucket.getRatePerSecond() * SECONDS_PER_MINUTE;
+            if (current < limit.getRatePerMinute()) {
+                double recovered = Math.min(limit.getRatePerMinute(), current + limit.getRecoveryPerSuccess());
+                bucket.setRatePerSecond(recovered / SECONDS_PER_MINUTE);
+            }
+        } else if (smtpCode >= 400 && smtpCode < 500) {
+            double current = bucket.getRatePerSecond() * SECONDS_PER_MINUTE;
+            double reduced = Math.max(limit.getMinRatePerMinute(), current * limit.getBackoffFactor());
+            bucket.setRatePerSecond(reduced / SECONDS_PER_MINUTE);
+            backoffCounter.increment();
+            log.warn("SMTP {} trả lỗi tạm thời {}, giảm tốc độ gửi từ {} xuống {} email/phút",
+                    provider, smtpCode, Math.round(current), Math.round(reduced));
+        }
+    }
+}
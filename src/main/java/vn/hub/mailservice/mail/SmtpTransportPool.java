@@ -0,0 +1,243 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import vn.hub.mailservice.config.SmtpPoolProperties;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool các kết nối SMTP đã xác thực.
+ * Mỗi kết nối mới tốn một lần TCP + STARTTLS + AUTH, nên kết nối được giữ lại và dùng cho nhiều email.
+ */
+@Slf4j
+public class SmtpTransportPool implements AutoCloseable {
+
+    /**
+     * Hàm mở một kết nối SMTP mới đã xác thực
+     */
+    @FunctionalInterface
+    public interface TransportFactory {
+        Transport connect() throws MessagingException;
+    }
+
+    private final TransportFactory transportFactory;
+    private final SmtpPoolProperties properties;
+    private final Semaphore capacity;
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final Timer waitTimer;
+    private final Counter createdCounter;
+    private final Counter destroyedCounter;
+    private final Counter reconnectCounter;
+
+    private volatile boolean closed;
+
+    public SmtpTransportPool(TransportFactory transportFactory, SmtpPoolProperties properties,
+            MeterRegistry meterRegistry) {
+        this.transportFactory = transportFactory;
+        this.properties = properties;
+        this.capacity = new Semaphore(properties.getMaxTotal(), true);
+
+        Gauge.builder("mail.smtp.pool.active", active, AtomicInteger::get)
+                .description("Số kết nối SMTP đang được sử dụng")
+                .register(meterRegistry);
+        Gauge.builder("mail.smtp.pool.idle", idle, BlockingDeque::size)
+                .description("Số kết nối SMTP rảnh trong pool")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("mail.smtp.pool.wait")
+                .description("Thời gian chờ lấy kết nối SMTP từ pool")
+                .register(meterRegistry);
+        this.createdCounter = Counter.builder("mail.smtp.pool.created")
+                .description("Số kết nối SMTP đã mở")
+                .register(meterRegistry);
+        this.destroyedCounter = Counter.builder("mail.smtp.pool.destroyed")
+                .description("Số kết nối SMTP đã đóng")
+                .register(meterRegistry);
+        this.reconnectCounter = Counter.builder("mail.smtp.pool.reconnects")
+                .description("Số kết nối SMTP bị mất phải mở lại")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lấy một kết nối từ pool, mở kết nối mới nếu không còn kết nối rảnh dùng được
+     *
+     * @return kết nối SMTP đã xác thực, phải trả lại bằng {@link #release}
+     * @throws MessagingException nếu hết thời gian chờ hoặc không mở được kết nối
+     */
+    public PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP pool đã đóng");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!capacity.tryAcquire(properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Hết thời gian chờ kết nối SMTP từ pool");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Bị ngắt khi chờ kết nối SMTP", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                if (isReusable(transport)) {
+                    active.incrementAndGet();
+                    return transport;
+                }
+                destroy(transport);
+            }
+
+            transport = create();
+            active.incrementAndGet();
+            return transport;
+        } catch (MessagingException | RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Trả kết nối về pool
+     *
+     * @param transport kết nối đã lấy bằng {@link #borrow}
+     * @param broken    true nếu kết nối gặp lỗi và không nên dùng lại
+     */
+    public void release(PooledTransport transport, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (broken || closed || isExhausted(transport) || idle.size() >= properties.getMaxIdle()) {
+                destroy(transport);
+            } else {
+                transport.touch();
+                idle.offerFirst(transport);
+            }
+        } finally {
+            capacity.release();
+        }
+    }
+
+    /**
+     * Kết nối đã gửi đủ số email cho phép và cần được thay mới
+     */
+    public boolean isExhausted(PooledTransport transport) {
+        return transport.getMessageCount() >= properties.getMaxMessagesPerConnection();
+    }
+
+    /**
+     * Đóng các kết nối rảnh quá lâu
+     */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledTransport transport : idle) {
+            if (now - transport.getLastUsedAt() > properties.getIdleTimeout().toMillis() && idle.remove(transport)) {
+                destroy(transport);
+            }
+        }
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Số kết nối còn lấy được ngay (rảnh hoặc chưa mở) mà không phải chờ
+     */
+    public int getAvailableCount() {
+        return capacity.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            destroy(transport);
+        }
+    }
+
+    private boolean isReusable(PooledTransport transport) {
+        long idleMillis = System.currentTimeMillis() - transport.getLastUsedAt();
+        if (isExhausted(transport) || idleMillis > properties.getIdleTimeout().toMillis()) {
+            return false;
+        }
+        if (idleMillis > properties.getValidationInterval().toMillis() && !transport.getTransport().isConnected()) {
+            // isConnected() gửi lệnh NOOP, server đã đóng kết nối thì phải mở lại
+            reconnectCounter.increment();
+            log.debug("Kết nối SMTP rảnh {}ms đã bị server đóng, mở kết nối mới", idleMillis);
+            return false;
+        }
+        return true;
+    }
+
+    private PooledTransport create() throws MessagingException {
+        Transport transport = transportFactory.connect();
+        createdCounter.increment();
+        return new PooledTransport(transport);
+    }
+
+    private void destroy(PooledTransport transport) {
+        destroyedCounter.increment();
+        try {
+            transport.getTransport().close();
+        } catch (MessagingException e) {
+            log.debug("Lỗi khi đóng kết nối SMTP: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Một kết nối SMTP trong pool kèm số email đã gửi và thời điểm dùng gần nhất
+     */
+    public static class PooledTransport {
+
+        private final Transport transport;
+        private int messageCount;
+        private volatile long lastUsedAt;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsedAt = System.currentTimeMillis();
+        }
+
+        public void sendMessage(MimeMessage message, Address[] addresses) throws MessagingException {
+            messageCount++;
+            transport.sendMessage(message, addresses);
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        long getLastUsedAt() {
+            return lastUsedAt;
+        }
+
+        void touch() {
+            lastUsedAt = System.currentTimeMillis();
+        }
+    }
+}
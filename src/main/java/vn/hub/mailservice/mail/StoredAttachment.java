@@ -0,0 +1,22 @@
+package vn.hub.mailservice.mail;
+
+import java.nio.ByteBuffer;
+
+/**
+ * File đính kèm trong {@link AttachmentStore}
+ *
+ * @param id          SHA-256 (hex) của nội dung file
+ * @param fileName    tên file lúc upload
+ * @param contentType content type của file
+ * @param size        kích thước file gốc
+ * @param encoded     nội dung đã mã hóa base64, chỉ đọc
+ */
+public record StoredAttachment(String id, String fileName, String contentType, long size, ByteBuffer encoded) {
+
+    /**
+     * Kích thước nội dung đã mã hóa base64 trong email
+     */
+    public long encodedSize() {
+        return encoded.capacity();
+    }
+}
@@ -0,0 +1,76 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.activation.DataHandler;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import vn.hub.mailservice.util.CompiledTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * DataHandler render template HTML thẳng vào luồng ghi của phần MIME khi email được gửi.
+ * Nội dung được mã hóa quoted-printable ngay khi ghi, không cần giữ toàn bộ HTML dưới dạng String.
+ */
+public class TemplateDataHandler extends DataHandler {
+
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String TRANSFER_ENCODING = "quoted-printable";
+
+    private final CompiledTemplate template;
+    private final Map<String, String> variables;
+
+    public TemplateDataHandler(CompiledTemplate template, Map<String, String> variables) {
+        super(template, CONTENT_TYPE);
+        this.template = template;
+        this.variables = variables;
+    }
+
+    /**
+     * Tạo phần MIME chứa nội dung HTML render từ template
+     *
+     * @param template  template đã phân tích
+     * @param variables map chứa giá trị các biến
+     * @return phần MIME sẵn sàng thêm vào multipart
+     */
+    public static MimeBodyPart createBodyPart(CompiledTemplate template, Map<String, String> variables)
+            throws MessagingException {
+        MimeBodyPart bodyPart = new MimeBodyPart();
+        bodyPart.setDataHandler(new TemplateDataHandler(template, variables));
+        // Đặt sẵn encoding để JavaMail không phải render thử nội dung để chọn encoding
+        bodyPart.setHeader("Content-Transfer-Encoding", TRANSFER_ENCODING);
+        return bodyPart;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        template.render(variables, writer);
+        // Chỉ flush, luồng bên dưới do JavaMail quản lý
+        writer.flush();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public Object getContent() {
+        return template.render(variables);
+    }
+}
@@ -0,0 +1,61 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.hub.mailservice.entity.DailyWorkingMinutes;
+import vn.hub.mailservice.entity.DailyWorkingMinutesId;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface DailyWorkingMinutesRepository extends JpaRepository<DailyWorkingMinutes, DailyWorkingMinutesId> {
+
+    @Query("SELECT d.minutes FROM DailyWorkingMinutes d WHERE d.id.userId = :userId AND d.id.workDate = :workDate")
+    Optional<Integer> findMinutes(@Param("userId") Long userId, @Param("workDate") LocalDate workDate);
+
+    /**
+     * Cộng thêm số phút vào tổng của ngày, tạo dòng mới nếu chưa có
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_working_minutes (user_id, work_date, minutes, updated_at) " +
+            "VALUES (:userId, :workDate, :minutes, NOW()) " +
+            "ON DUPLICATE KEY UPDATE minutes = minutes + :minutes, updated_at = NOW()",
+            nativeQuery = true)
+    int addMinutes(@Param("userId") Long userId, @Param("workDate") LocalDate workDate,
+            @Param("minutes") int minutes);
+
+    @Modifying
+    @Query(value = "DELETE FROM daily_working_minutes WHERE work_date >= :fromDate AND work_date < :toDate",
+            nativeQuery = true)
+    int deleteRange(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    /**
+     * Dựng lại tổng theo ngày từ login_history bằng một câu INSERT ... SELECT ... GROUP BY
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_working_minutes (user_id, work_date, minutes, updated_at) " +
+            "SELECT user_id, DATE(login_time), SUM(working_minutes), NOW() FROM login_history " +
+            "WHERE login_time >= :fromTime AND login_time < :toTime AND working_minutes IS NOT NULL " +
+            "GROUP BY user_id, DATE(login_time)",
+            nativeQuery = true)
+    int rebuildRange(@Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+
+    /**
+     * Tính lại tổng theo ngày của các user từ login_history, ghi đè giá trị đang có.
+     * Chạy lại nhiều lần vẫn cho cùng kết quả
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_working_minutes (user_id, work_date, minutes, updated_at) " +
+            "SELECT user_id, DATE(login_time), SUM(working_minutes), NOW() FROM login_history " +
+            "WHERE user_id IN (:userIds) AND login_time >= :fromTime AND login_time < :toTime " +
+            "AND working_minutes IS NOT NULL " +
+            "GROUP BY user_id, DATE(login_time) " +
+            "ON DUPLICATE KEY UPDATE minutes = VALUES(minutes), updated_at = VALUES(updated_at)",
+            nativeQuery = true)
+    int refreshUsers(@Param("userIds") Collection<Long> userIds, @Param("fromTime") LocalDateTime fromTime,
+            @Param("toTime") LocalDateTime toTime);
+}
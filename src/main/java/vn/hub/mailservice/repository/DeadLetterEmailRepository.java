@@ -0,0 +1,16 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import vn.hub.mailservice.entity.DeadLetterEmail;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DeadLetterEmailRepository extends JpaRepository<DeadLetterEmail, Long> {
+
+    Page<DeadLetterEmail> findByReplayedAtIsNull(Pageable pageable);
+
+    List<DeadLetterEmail> findByIdInAndReplayedAtIsNull(Collection<Long> ids);
+}
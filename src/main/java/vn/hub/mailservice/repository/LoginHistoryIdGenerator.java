@@ -0,0 +1,33 @@
+package vn.hub.mailservice.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+import vn.hub.mailservice.entity.LoginHistory;
+
+/**
+ * Cấp ID cho login_history trước khi ghi xuống DB.
+ * Dùng chính bộ sinh ID pooled của entity LoginHistory, nên ID cấp ở đây không trùng với ID Hibernate
+ * cấp khi persist và chỉ chạm DB một lần cho mỗi {@link LoginHistory#ID_ALLOCATION_SIZE} ID.
+ */
+@Component
+public class LoginHistoryIdGenerator {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator generator;
+
+    public LoginHistoryIdGenerator(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.generator = (IdentifierGenerator) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(LoginHistory.class)
+                .getGenerator();
+    }
+
+    public long next() {
+        try (SessionImplementor session = (SessionImplementor) sessionFactory.openSession()) {
+            return ((Number) generator.generate(session, null)).longValue();
+        }
+    }
+}
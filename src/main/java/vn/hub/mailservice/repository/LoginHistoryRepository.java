@@ -1,24 +1,88 @@
 package vn.hub.mailservice.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.dto.UserWorkingMinutes;
 import vn.hub.mailservice.entity.LoginHistory;
 import vn.hub.mailservice.entity.User;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LoginHistoryRepository extends JpaRepository<LoginHistory, Long> {
 
         Optional<LoginHistory> findByUserAndLogoutTimeIsNull(User user);
 
-        List<LoginHistory> findAllByLoginTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
+        /**
+         * Mọi phiên chưa đăng xuất kèm user, dùng để nạp danh sách phiên đang mở khi khởi động
+         */
+        @Query("SELECT lh FROM LoginHistory lh JOIN FETCH lh.user WHERE lh.logoutTime IS NULL")
+        List<LoginHistory> findAllOpenSessions();
+
+        /**
+         * Ghi phiên đăng nhập mới với ID đã cấp trước
+         */
+        @Modifying
+        @Transactional
+        @Query(value = "INSERT INTO login_history (id, user_id, login_time, is_active) " +
+                        "VALUES (:id, :userId, :loginTime, TRUE)", nativeQuery = true)
+        int insertSession(@Param("id") Long id,
+                        @Param("userId") Long userId,
+                        @Param("loginTime") LocalDateTime loginTime);
+
+        /**
+         * Đóng phiên đăng nhập bằng một câu UPDATE, không cần đọc bản ghi trước.
+         * loginTime giúp MySQL chỉ tìm trong partition của tháng đăng nhập.
+         *
+         * @return 0 nếu phiên không tồn tại hoặc đã được đóng
+         */
+        @Modifying
+        @Transactional
+        @Query("UPDATE LoginHistory lh SET lh.logoutTime = :logoutTime, lh.workingMinutes = :workingMinutes, " +
+                        "lh.active = false " +
+                        "WHERE lh.id = :id AND lh.loginTime = :loginTime AND lh.logoutTime IS NULL")
+        int closeSession(@Param("id") Long id,
+                        @Param("loginTime") LocalDateTime loginTime,
+                        @Param("logoutTime") LocalDateTime logoutTime,
+                        @Param("workingMinutes") int workingMinutes);
+
+        /**
+         * Phiên đăng nhập trong khoảng thời gian, nạp kèm user bằng JOIN FETCH
+         * để gọi getUsername() không phát sinh thêm một truy vấn cho mỗi phiên
+         */
+        @Query("SELECT lh FROM LoginHistory lh JOIN FETCH lh.user " +
+                        "WHERE lh.loginTime BETWEEN :startTime AND :endTime")
+        List<LoginHistory> findAllByLoginTimeBetween(@Param("startTime") LocalDateTime startTime,
+                        @Param("endTime") LocalDateTime endTime);
 
         @Query("SELECT COALESCE(SUM(lh.workingMinutes), 0) FROM LoginHistory lh " +
                         "WHERE lh.user.id = :userId AND lh.loginTime BETWEEN :startTime AND :endTime")
         int calculateTotalWorkingMinutes(@Param("userId") Long userId,
                         @Param("startTime") LocalDateTime startTime,
                         @Param("endTime") LocalDateTime endTime);
+
+        /**
+         * Tổng số phút làm việc trong khoảng thời gian của từng user đang hoạt động thuộc một phần
+         * (user_id % partitions = partition), gộp bằng một truy vấn GROUP BY.
+         * User không có phiên nào vẫn có mặt với 0 phút; chỉ trả về user có tổng dưới maxMinutes.
+         * Stream phải được đóng và dùng trong giao dịch.
+         */
+        @Query("SELECT new vn.hub.mailservice.dto.UserWorkingMinutes(" +
+                        "u.id, u.username, u.email, u.fullName, COALESCE(SUM(lh.workingMinutes), 0L)) " +
+                        "FROM User u LEFT JOIN LoginHistory lh ON lh.user = u " +
+                        "AND lh.loginTime >= :startTime AND lh.loginTime < :endTime " +
+                        "WHERE u.active = true AND MOD(u.id, :partitions) = :partition " +
+                        "GROUP BY u.id, u.username, u.email, u.fullName " +
+                        "HAVING COALESCE(SUM(lh.workingMinutes), 0L) < :maxMinutes " +
+                        "ORDER BY u.id")
+        Stream<UserWorkingMinutes> streamWorkingMinutesBelow(@Param("startTime") LocalDateTime startTime,
+                        @Param("endTime") LocalDateTime endTime,
+                        @Param("maxMinutes") long maxMinutes,
+                        @Param("partitions") int partitions,
+                        @Param("partition") int partition);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.entity.OpenSession;
+
+import java.time.LocalDateTime;
+
+/**
+ * Các thao tác trên open_session chạy trong giao dịch riêng để có hiệu lực ngay với các instance khác
+ */
+public interface OpenSessionRepository extends JpaRepository<OpenSession, Long> {
+
+    /**
+     * Giữ chỗ phiên đang mở cho user, ID phiên trong login_history được cấp trước khi ghi phiên
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException nếu user đã có phiên đang mở
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "INSERT INTO open_session (user_id, login_history_id, login_time) " +
+            "VALUES (:userId, :loginHistoryId, :loginTime)", nativeQuery = true)
+    int claim(@Param("userId") Long userId, @Param("loginHistoryId") Long loginHistoryId,
+            @Param("loginTime") LocalDateTime loginTime);
+
+    /**
+     * Bỏ phiên đang mở, chỉ một request logout (trên bất kỳ instance nào) xóa được
+     *
+     * @return 0 nếu phiên đã được đóng hoặc đã bị thay bằng phiên khác
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("DELETE FROM OpenSession s WHERE s.userId = :userId AND s.loginTime = :loginTime")
+    int release(@Param("userId") Long userId, @Param("loginTime") LocalDateTime loginTime);
+}
@@ -0,0 +1,27 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.OutboundEmail;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+
+    /**
+     * Lấy ID và thời điểm gửi lại của các email theo trạng thái, dùng khi nạp lại hàng đợi lúc khởi động
+     */
+    @Query("SELECT e.id, e.nextAttemptAt, e.to FROM OutboundEmail e WHERE e.status IN :statuses ORDER BY e.id")
+    List<Object[]> findPendingByStatusIn(@Param("statuses") Collection<EmailStatus> statuses);
+
+    @Query("SELECT e.status, COUNT(e) FROM OutboundEmail e WHERE e.campaignId = :campaignId GROUP BY e.status")
+    List<Object[]> countByStatusForCampaign(@Param("campaignId") String campaignId);
+
+    /**
+     * Còn email chưa gửi xong (kể cả email trong dead-letter có thể được gửi lại) dùng file đính kèm này
+     */
+    boolean existsByAttachmentIdAndStatusNot(String attachmentId, EmailStatus status);
+}
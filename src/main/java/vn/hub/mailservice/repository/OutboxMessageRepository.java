@@ -0,0 +1,23 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.hub.mailservice.entity.OutboxMessage;
+import vn.hub.mailservice.entity.OutboxStatus;
+
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Khóa một lô bản ghi PENDING để xử lý; bản ghi đang bị instance khác khóa sẽ bị bỏ qua
+     * nên nhiều instance có thể xử lý outbox song song mà không gửi trùng.
+     * Phải được gọi trong giao dịch.
+     */
+    @Query(value = "SELECT * FROM outbox WHERE status = 'PENDING' ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxMessage> claimPending(@Param("limit") int limit);
+
+    boolean existsByAttachmentIdAndStatus(String attachmentId, OutboxStatus status);
+}
@@ -0,0 +1,54 @@
+package vn.hub.mailservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.entity.ScheduledLock;
+
+/**
+ * Các thao tác khóa dùng giờ của DB để không phụ thuộc độ lệch đồng hồ giữa các instance,
+ * và chạy trong giao dịch riêng để khóa được commit ngay, không chờ giao dịch của job.
+ */
+public interface ScheduledLockRepository extends JpaRepository<ScheduledLock, String> {
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "INSERT IGNORE INTO scheduled_lock (name, lock_until, locked_at, locked_by) " +
+            "VALUES (:name, TIMESTAMPADD(MICROSECOND, :lockMicros, NOW(3)), NOW(3), :lockedBy)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("lockMicros") long lockMicros,
+            @Param("lockedBy") String lockedBy);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "UPDATE scheduled_lock SET lock_until = TIMESTAMPADD(MICROSECOND, :lockMicros, NOW(3)), " +
+            "locked_at = NOW(3), locked_by = :lockedBy WHERE name = :name AND lock_until <= NOW(3)",
+            nativeQuery = true)
+    int acquireIfExpired(@Param("name") String name, @Param("lockMicros") long lockMicros,
+            @Param("lockedBy") String lockedBy);
+
+    /**
+     * Nhả khóa nhưng vẫn giữ tối thiểu lockAtLeast kể từ lúc khóa,
+     * để instance có đồng hồ chạy chậm vài giây không chạy lại job vừa xong
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "UPDATE scheduled_lock SET lock_until = " +
+            "GREATEST(NOW(3), TIMESTAMPADD(MICROSECOND, :atLeastMicros, locked_at)) " +
+            "WHERE name = :name AND locked_by = :lockedBy",
+            nativeQuery = true)
+    int release(@Param("name") String name, @Param("atLeastMicros") long atLeastMicros,
+            @Param("lockedBy") String lockedBy);
+
+    /**
+     * Xóa các khóa đã hết hạn có tên bắt đầu bằng prefix (khóa theo ngày của các ngày đã qua)
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "DELETE FROM scheduled_lock WHERE name LIKE CONCAT(:prefix, '%') AND lock_until <= NOW(3)",
+            nativeQuery = true)
+    int deleteExpired(@Param("prefix") String prefix);
+}
@@ -1,13 +1,54 @@
 package vn.hub.mailservice.repository;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.hub.mailservice.entity.User;
 
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Tra cứu user theo username được cache (cache "users", cấu hình ở spring.cache)
+ * vì được gọi ở mọi request login/logout/check-login.
+ * Mọi thao tác ghi đều xóa cache để thay đổi mật khẩu, khóa tài khoản... có hiệu lực ngay trên instance đó;
+ * cache là riêng từng instance nên các instance khác chỉ thấy thay đổi khi bản cache hết hạn (expireAfterWrite).
+ * Vì vậy trạng thái khóa tài khoản khi login được đọc lại từ DB bằng {@link #findActiveById}.
+ */
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    String CACHE_NAME = "users";
+
+    /**
+     * User trả về là bản dùng chung trong cache, ngoài giao dịch là entity tách rời: không được sửa trực tiếp.
+     * Cần sửa thì tạo bản sao (hoặc đọc bằng findById) rồi {@link #save}, save sẽ xóa bản trong cache
+     */
+    @Cacheable(cacheNames = CACHE_NAME, key = "#p0", unless = "#result == null")
     Optional<User> findByUsername(String username);
 
     List<User> findByActiveTrue();
-}
\ No newline at end of file
+
+    /**
+     * Trạng thái tài khoản đọc thẳng từ DB theo khóa chính, không qua cache
+     */
+    @Query("SELECT u.active FROM User u WHERE u.id = :id")
+    Optional<Boolean> findActiveById(@Param("id") Long id);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, key = "#p0.username")
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, key = "#p0.username")
+    void delete(User user);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    void deleteById(Long id);
+}
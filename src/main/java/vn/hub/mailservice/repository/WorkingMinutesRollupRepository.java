@@ -0,0 +1,94 @@
+package vn.hub.mailservice.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import vn.hub.mailservice.dto.TeamWorkingHoursReport;
+import vn.hub.mailservice.dto.UserWorkingHoursReport;
+import vn.hub.mailservice.entity.ReportPeriod;
+import vn.hub.mailservice.entity.WorkingMinutesRollup;
+import vn.hub.mailservice.entity.WorkingMinutesRollupId;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+public interface WorkingMinutesRollupRepository extends JpaRepository<WorkingMinutesRollup, WorkingMinutesRollupId> {
+
+    /**
+     * Tính lại tổng theo tuần cho các (user, tuần) có ít nhất một ngày thay đổi từ :since
+     */
+    @Modifying
+    @Query(value = "INSERT INTO working_minutes_rollup (period, period_start, user_id, minutes, updated_at) " +
+            "SELECT 'WEEK', changed.period_start, d.user_id, SUM(d.minutes), NOW() " +
+            "FROM (SELECT DISTINCT user_id, DATE_SUB(work_date, INTERVAL WEEKDAY(work_date) DAY) AS period_start " +
+            "FROM daily_working_minutes WHERE updated_at >= :since) changed " +
+            "JOIN daily_working_minutes d ON d.user_id = changed.user_id " +
+            "AND d.work_date >= changed.period_start AND d.work_date < DATE_ADD(changed.period_start, INTERVAL 7 DAY) " +
+            "GROUP BY changed.period_start, d.user_id " +
+            "ON DUPLICATE KEY UPDATE minutes = VALUES(minutes), updated_at = VALUES(updated_at)",
+            nativeQuery = true)
+    int rollupWeeks(@Param("since") LocalDateTime since);
+
+    /**
+     * Tính lại tổng theo tháng cho các (user, tháng) có ít nhất một ngày thay đổi từ :since.
+     * Tính từ tổng theo ngày chứ không cộng các tuần vì một tuần có thể nằm ở hai tháng
+     */
+    @Modifying
+    @Query(value = "INSERT INTO working_minutes_rollup (period, period_start, user_id, minutes, updated_at) " +
+            "SELECT 'MONTH', changed.period_start, d.user_id, SUM(d.minutes), NOW() " +
+            "FROM (SELECT DISTINCT user_id, DATE_SUB(work_date, INTERVAL DAYOFMONTH(work_date) - 1 DAY) AS period_start " +
+            "FROM daily_working_minutes WHERE updated_at >= :since) changed " +
+            "JOIN daily_working_minutes d ON d.user_id = changed.user_id " +
+            "AND d.work_date >= changed.period_start AND d.work_date < DATE_ADD(changed.period_start, INTERVAL 1 MONTH) " +
+            "GROUP BY changed.period_start, d.user_id " +
+            "ON DUPLICATE KEY UPDATE minutes = VALUES(minutes), updated_at = VALUES(updated_at)",
+            nativeQuery = true)
+    int rollupMonths(@Param("since") LocalDateTime since);
+
+    /**
+     * Tổng phút trong kỳ của các user đang hoạt động (lọc theo team nếu có), user không làm ngày nào có 0 phút
+     */
+    @Query(value = "SELECT new vn.hub.mailservice.dto.UserWorkingHoursReport(" +
+            "u.id, u.username, u.fullName, u.team, COALESCE(r.minutes, 0)) " +
+            "FROM User u LEFT JOIN WorkingMinutesRollup r ON r.id.userId = u.id " +
+            "AND r.id.period = :period AND r.id.periodStart = :periodStart " +
+            "WHERE u.active = true AND (:team IS NULL OR u.team = :team) " +
+            "ORDER BY u.username",
+            countQuery = "SELECT COUNT(u) FROM User u WHERE u.active = true AND (:team IS NULL OR u.team = :team)")
+    Page<UserWorkingHoursReport> findUserReport(@Param("period") ReportPeriod period,
+            @Param("periodStart") LocalDate periodStart, @Param("team") String team, Pageable pageable);
+
+    /**
+     * Như {@link #findUserReport} nhưng đọc dần từng dòng (MySQL streaming result set) để xuất file.
+     * Stream phải được đóng và dùng trong giao dịch
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT new vn.hub.mailservice.dto.UserWorkingHoursReport(" +
+            "u.id, u.username, u.fullName, u.team, COALESCE(r.minutes, 0)) " +
+            "FROM User u LEFT JOIN WorkingMinutesRollup r ON r.id.userId = u.id " +
+            "AND r.id.period = :period AND r.id.periodStart = :periodStart " +
+            "WHERE u.active = true AND (:team IS NULL OR u.team = :team) " +
+            "ORDER BY u.username")
+    Stream<UserWorkingHoursReport> streamUserReport(@Param("period") ReportPeriod period,
+            @Param("periodStart") LocalDate periodStart, @Param("team") String team);
+
+    /**
+     * Tổng phút trong kỳ theo team, user chưa có team được gộp vào dòng team null
+     */
+    @Query(value = "SELECT new vn.hub.mailservice.dto.TeamWorkingHoursReport(" +
+            "u.team, COUNT(u), COALESCE(SUM(r.minutes), 0L)) " +
+            "FROM User u LEFT JOIN WorkingMinutesRollup r ON r.id.userId = u.id " +
+            "AND r.id.period = :period AND r.id.periodStart = :periodStart " +
+            "WHERE u.active = true " +
+            "GROUP BY u.team ORDER BY u.team",
+            countQuery = "SELECT COUNT(DISTINCT COALESCE(u.team, '')) FROM User u WHERE u.active = true")
+    Page<TeamWorkingHoursReport> findTeamReport(@Param("period") ReportPeriod period,
+            @Param("periodStart") LocalDate periodStart, Pageable pageable);
+}
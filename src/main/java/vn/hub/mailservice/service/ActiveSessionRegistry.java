@@ -0,0 +1,141 @@
+package vn.hub.mailservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách phiên đăng nhập đang mở, giữ trong bộ nhớ theo username.
+ * Được nạp từ các bản ghi login_history chưa đăng xuất khi khởi động và cập nhật ở mỗi lần login/logout
+ * trên instance này.
+ * <p>
+ * Login giữ chỗ username bằng putIfAbsent trước khi ghi DB, nên hai request login đồng thời
+ * trên cùng instance cho cùng một user chỉ có một request thành công.
+ * Danh sách chỉ là cache của bảng open_session: khi chạy nhiều instance, phiên có thể được mở hoặc đóng
+ * trên instance khác, nên LoginServiceImpl vẫn giữ chỗ/bỏ phiên trong open_session (mỗi user một dòng),
+ * đối chiếu phiên trong bộ nhớ với open_session (tra theo khóa chính) trước khi trả trạng thái đăng nhập
+ * và bỏ phiên đã bị đóng trên instance khác.
+ * Khởi tạo sau {@link LoginEventWriter} để các sự kiện còn trong journal (chế độ write-behind)
+ * đã được ghi xuống DB trước khi nạp.
+ */
+@Component
+@DependsOn("loginEventWriter")
+@Slf4j
+public class ActiveSessionRegistry {
+
+    /**
+     * Đánh dấu username đang được login, chưa có phiên trong DB
+     */
+    private static final Session RESERVED = new Session(null, null, null, null);
+
+    private final LoginHistoryRepository loginHistoryRepository;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public ActiveSessionRegistry(LoginHistoryRepository loginHistoryRepository, MeterRegistry meterRegistry) {
+        this.loginHistoryRepository = loginHistoryRepository;
+        Gauge.builder("login.sessions.active", sessions, Map::size)
+                .description("Số phiên đăng nhập đang mở")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Nạp các phiên chưa đăng xuất từ DB
+     */
+    @PostConstruct
+    public void warmUp() {
+        for (LoginHistory open : loginHistoryRepository.findAllOpenSessions()) {
+            sessions.put(open.getUsername(), Session.of(open));
+        }
+        log.info("Đã nạp {} phiên đăng nhập đang mở", sessions.size());
+    }
+
+    /**
+     * Giữ chỗ cho một lần login
+     *
+     * @return false nếu user đang đăng nhập hoặc đang có một request login khác
+     */
+    public boolean reserve(String username) {
+        return sessions.putIfAbsent(username, RESERVED) == null;
+    }
+
+    /**
+     * Ghi nhận phiên vừa được lưu xuống DB cho username đã giữ chỗ
+     */
+    public void confirm(LoginHistory loginHistory) {
+        sessions.put(loginHistory.getUsername(), Session.of(loginHistory));
+    }
+
+    /**
+     * Bỏ giữ chỗ khi login thất bại
+     */
+    public void cancel(String username) {
+        sessions.remove(username, RESERVED);
+    }
+
+    /**
+     * Phiên đang mở của user
+     */
+    public Optional<Session> find(String username) {
+        Session session = sessions.get(username);
+        return session == null || session == RESERVED ? Optional.empty() : Optional.of(session);
+    }
+
+    /**
+     * Lấy ra phiên đang mở để logout, chỉ một request logout đồng thời lấy được phiên
+     */
+    public Optional<Session> remove(String username) {
+        Session session = sessions.get(username);
+        if (session == null || session == RESERVED || !sessions.remove(username, session)) {
+            return Optional.empty();
+        }
+        return Optional.of(session);
+    }
+
+    /**
+     * Bỏ phiên đã được đóng qua instance khác, giữ nguyên nếu username đã có phiên khác
+     */
+    public void evict(Session session) {
+        sessions.remove(session.username(), session);
+    }
+
+    /**
+     * Trả lại phiên khi logout không ghi được xuống DB
+     */
+    public void restore(Session session) {
+        sessions.putIfAbsent(session.username(), session);
+    }
+
+    /**
+     * Phiên đăng nhập đang mở
+     */
+    public record Session(Long id, Long userId, String username, LocalDateTime loginTime) {
+
+        static Session of(LoginHistory loginHistory) {
+            return new Session(loginHistory.getId(), loginHistory.getUser().getId(), loginHistory.getUsername(),
+                    loginHistory.getLoginTime());
+        }
+
+        /**
+         * Tạo LoginHistory (không gắn với persistence context) để trả về cho API
+         */
+        public LoginHistory toLoginHistory() {
+            User user = new User();
+            user.setId(userId);
+            user.setUsername(username);
+            LoginHistory loginHistory = new LoginHistory(user, loginTime);
+            loginHistory.setId(id);
+            return loginHistory;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package vn.hub.mailservice.service;
+
+public interface AttachmentRetentionService {
+
+    /**
+     * Xóa các file đính kèm hết hạn giữ không còn email chờ gửi nào tham chiếu
+     *
+     * @return số file đã xóa
+     */
+    int deleteUnreferencedAttachments();
+}
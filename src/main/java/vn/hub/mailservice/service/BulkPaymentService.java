@@ -0,0 +1,27 @@
+package vn.hub.mailservice.service;
+
+import vn.hub.mailservice.dto.BulkPaymentProgressResponse;
+import vn.hub.mailservice.dto.PaymentInvoiceRequest;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BulkPaymentService {
+
+    /**
+     * Bắt đầu gửi yêu cầu thanh toán kèm QR cho danh sách hóa đơn, chạy nền
+     *
+     * @param invoices danh sách hóa đơn
+     * @return tiến độ ban đầu kèm ID đợt gửi
+     * @throws vn.hub.mailservice.exception.EmailQueueFullException nếu đã đủ số đợt gửi chạy cùng lúc
+     */
+    BulkPaymentProgressResponse start(List<PaymentInvoiceRequest> invoices);
+
+    /**
+     * Lấy tiến độ đợt gửi
+     *
+     * @param id ID đợt gửi
+     * @return tiến độ nếu đợt gửi tồn tại
+     */
+    Optional<BulkPaymentProgressResponse> getProgress(String id);
+}
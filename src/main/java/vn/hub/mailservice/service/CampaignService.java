@@ -0,0 +1,32 @@
+package vn.hub.mailservice.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.dto.CampaignProgressResponse;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface CampaignService {
+
+    /**
+     * Bắt đầu chiến dịch gửi email từ một template cho danh sách người nhận (CSV hoặc NDJSON).
+     * Mỗi dòng phải có cột email, các cột còn lại là biến của template.
+     *
+     * @param templateName  tên template trong thư mục templates (không có đuôi .html)
+     * @param subject       tiêu đề email, có thể chứa biến ${...}
+     * @param recipients    file danh sách người nhận
+     * @param concurrency   số luồng xử lý song song, null để dùng cấu hình mặc định
+     * @param ratePerSecond số email mỗi giây, null để dùng cấu hình mặc định
+     * @return tiến độ ban đầu của chiến dịch
+     */
+    CampaignProgressResponse start(String templateName, String subject, MultipartFile recipients,
+            Integer concurrency, Double ratePerSecond) throws IOException;
+
+    /**
+     * Lấy tiến độ chiến dịch
+     *
+     * @param id ID chiến dịch
+     * @return tiến độ nếu chiến dịch tồn tại
+     */
+    Optional<CampaignProgressResponse> getProgress(String id);
+}
@@ -0,0 +1,26 @@
+package vn.hub.mailservice.service;
+
+import org.springframework.data.domain.Page;
+import vn.hub.mailservice.dto.DeadLetterResponse;
+
+import java.util.List;
+
+public interface DeadLetterService {
+
+    /**
+     * Lấy danh sách email trong dead-letter chưa được gửi lại
+     *
+     * @param page trang (bắt đầu từ 0)
+     * @param size số bản ghi mỗi trang
+     * @return một trang dead-letter
+     */
+    Page<DeadLetterResponse> findPending(int page, int size);
+
+    /**
+     * Gửi lại các email trong dead-letter
+     *
+     * @param ids danh sách ID dead-letter, null hoặc rỗng để gửi lại tất cả
+     * @return số email đã đưa lại vào hàng đợi
+     */
+    int replay(List<Long> ids);
+}
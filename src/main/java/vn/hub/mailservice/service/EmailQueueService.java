@@ -0,0 +1,53 @@
+package vn.hub.mailservice.service;
+
+import vn.hub.mailservice.entity.OutboundEmail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+public interface EmailQueueService {
+
+    /**
+     * Đưa email vào hàng đợi gửi bất đồng bộ
+     *
+     * @param email email cần gửi
+     * @return email đã được lưu kèm ID để tra cứu trạng thái
+     * @throws vn.hub.mailservice.exception.EmailQueueFullException nếu hàng đợi đã đầy
+     */
+    OutboundEmail enqueue(OutboundEmail email);
+
+    /**
+     * Đưa email vào hàng đợi, chờ tối đa maxWait nếu hàng đợi đang đầy
+     *
+     * @param email   email cần gửi
+     * @param maxWait thời gian chờ tối đa
+     * @return email đã được lưu kèm ID
+     * @throws vn.hub.mailservice.exception.EmailQueueFullException nếu hết thời gian chờ
+     */
+    OutboundEmail enqueue(OutboundEmail email, Duration maxWait) throws InterruptedException;
+
+    /**
+     * Đưa nhiều email vào hàng đợi trong một giao dịch: cả lô được nhận hoặc không email nào được nhận
+     *
+     * @param emails các email cần gửi
+     * @return các email đã được lưu kèm ID, theo đúng thứ tự đầu vào
+     * @throws vn.hub.mailservice.exception.EmailQueueFullException nếu hàng đợi không còn đủ chỗ cho cả lô
+     */
+    List<OutboundEmail> enqueueAll(List<OutboundEmail> emails);
+
+    /**
+     * Đưa lại email đã thất bại vào hàng đợi, số lần gửi được tính lại từ đầu
+     *
+     * @param id ID email trong hàng đợi
+     */
+    void requeue(Long id);
+
+    /**
+     * Tra cứu trạng thái email trong hàng đợi
+     *
+     * @param id ID email trả về khi enqueue
+     * @return email nếu tồn tại
+     */
+    Optional<OutboundEmail> findById(Long id);
+}
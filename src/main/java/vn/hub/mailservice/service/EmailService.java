@@ -2,9 +2,11 @@ package vn.hub.mailservice.service;
 
 import jakarta.mail.MessagingException;
 import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.dto.RecipientFanOutResult;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 public interface EmailService {
 
@@ -18,24 +20,40 @@ public interface EmailService {
     void sendHtmlEmail(String to, String subject, String htmlContent);
 
     /**
-     * Gửi email sử dụng CC cho nhiều người nhận
+     * Gửi email HTML render từ template, nội dung được render thẳng vào phần MIME khi gửi
+     * 
+     * @param to           email người nhận
+     * @param subject      tiêu đề email
+     * @param templatePath đường dẫn template trong classpath
+     * @param variables    map chứa các biến cần thay thế
+     */
+    void sendTemplateEmail(String to, String subject, String templatePath, Map<String, String> variables);
+
+    /**
+     * Gửi email sử dụng CC cho nhiều người nhận.
+     * Danh sách được bỏ trùng và chia thành nhiều email theo số người nhận tối đa của SMTP server
      * 
      * @param to          email người nhận chính
      * @param cc          danh sách email CC
      * @param subject     tiêu đề email
      * @param htmlContent nội dung HTML
+     * @return kết quả gửi của từng phần, lỗi ở một số phần không làm hỏng các phần khác
+     * @throws RuntimeException nếu mọi phần đều gửi lỗi
      */
-    void sendHtmlEmailWithCC(String to, List<String> cc, String subject, String htmlContent);
+    RecipientFanOutResult sendHtmlEmailWithCC(String to, List<String> cc, String subject, String htmlContent);
 
     /**
-     * Gửi email sử dụng BCC cho nhiều người nhận
+     * Gửi email sử dụng BCC cho nhiều người nhận.
+     * Danh sách được bỏ trùng và chia thành nhiều email theo số người nhận tối đa của SMTP server
      * 
      * @param to          email người nhận chính
      * @param bcc         danh sách email BCC
      * @param subject     tiêu đề email
      * @param htmlContent nội dung HTML
+     * @return kết quả gửi của từng phần, lỗi ở một số phần không làm hỏng các phần khác
+     * @throws RuntimeException nếu mọi phần đều gửi lỗi
      */
-    void sendHtmlEmailWithBCC(String to, List<String> bcc, String subject, String htmlContent);
+    RecipientFanOutResult sendHtmlEmailWithBCC(String to, List<String> bcc, String subject, String htmlContent);
 
     /**
      * Gửi email với mã QR code thanh toán
@@ -69,4 +87,35 @@ public interface EmailService {
      */
     void sendEmailWithPdfAttachment(String to, String subject, String htmlContent, MultipartFile pdfFile)
             throws MessagingException;
-}
\ No newline at end of file
+
+    /**
+     * Gửi email với file PDF đính kèm từ nội dung đã đọc sẵn
+     * 
+     * @param to             email người nhận
+     * @param subject        tiêu đề email
+     * @param htmlContent    nội dung HTML
+     * @param attachmentName tên file đính kèm
+     * @param pdfContent     nội dung file PDF
+     */
+    void sendEmailWithPdfAttachment(String to, String subject, String htmlContent, String attachmentName,
+            byte[] pdfContent) throws MessagingException;
+
+    /**
+     * Gửi email với file đính kèm đã lưu trong kho file đính kèm, nội dung đã mã hóa sẵn được dùng lại
+     * 
+     * @param to             email người nhận
+     * @param subject        tiêu đề email
+     * @param htmlContent    nội dung HTML
+     * @param attachmentId   ID file đính kèm (SHA-256 của nội dung)
+     * @param attachmentName tên file hiển thị, null thì dùng tên lúc upload
+     */
+    void sendEmailWithStoredAttachment(String to, String subject, String htmlContent, String attachmentId,
+            String attachmentName) throws MessagingException;
+
+    /**
+     * Gửi email đã dựng sẵn dạng MIME, nội dung được gửi nguyên văn
+     *
+     * @param rawMessage email dạng MIME (RFC 822) đã có người nhận, tiêu đề và nội dung
+     */
+    void sendPreparedEmail(byte[] rawMessage);
+}
@@ -0,0 +1,48 @@
+package vn.hub.mailservice.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.function.IntConsumer;
+
+public interface JobLockService {
+
+    /**
+     * Tên khóa của job thông báo thiếu giờ làm việc lúc 21h
+     */
+    String WORKING_HOURS_JOB = "working-hours-notification";
+
+    /**
+     * Thử lấy khóa, không chờ nếu instance khác đang giữ
+     *
+     * @param name          tên khóa
+     * @param lockAtMostFor khóa tự hết hạn sau thời gian này
+     * @return true nếu lấy được khóa
+     */
+    boolean tryLock(String name, Duration lockAtMostFor);
+
+    /**
+     * Nhả khóa, khóa vẫn được giữ tới ít nhất lockAtLeastFor kể từ lúc lấy
+     *
+     * @param name           tên khóa
+     * @param lockAtLeastFor thời gian giữ khóa tối thiểu
+     */
+    void unlock(String name, Duration lockAtLeastFor);
+
+    /**
+     * Chạy job theo từng phần: mỗi phần có một khóa riêng nên mỗi phần chỉ được một instance chạy,
+     * các instance cùng chạy job sẽ chia nhau các phần.
+     * Tên khóa gồm ngày chạy, phần chạy xong được giữ khóa tới hết ngày đó nên không bị chạy lại trong ngày
+     * dù job chạy lâu hơn lockAtLeastFor; phần bị lỗi được nhả khóa sau lockAtLeastFor để chạy lại được.
+     *
+     * @param jobName tên job
+     * @param runDate ngày dữ liệu job xử lý
+     * @param task    xử lý một phần, nhận số thứ tự phần (0..partitions-1)
+     * @return số phần đã chạy trên instance này
+     */
+    int runPartitioned(String jobName, LocalDate runDate, IntConsumer task);
+
+    /**
+     * @return số phần chia tập user cho các job định kỳ
+     */
+    int getPartitions();
+}
@@ -0,0 +1,28 @@
+package vn.hub.mailservice.service;
+
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi phiên đăng nhập/đăng xuất xuống login_history.
+ * Bật app.login-events.write-behind để dùng bản ghi sau theo lô thay cho bản ghi trực tiếp.
+ */
+public interface LoginEventWriter {
+
+    /**
+     * Ghi phiên đăng nhập mới
+     *
+     * @param id ID phiên đã cấp trước bằng {@link vn.hub.mailservice.repository.LoginHistoryIdGenerator}
+     * @return phiên đã ghi
+     */
+    LoginHistory recordLogin(User user, long id, LocalDateTime loginTime);
+
+    /**
+     * Đóng phiên và cộng phút làm việc vào tổng của ngày
+     *
+     * @return false nếu phiên không còn mở trong DB
+     */
+    boolean recordLogout(ActiveSessionRegistry.Session session, LocalDateTime logoutTime, int workingMinutes);
+}
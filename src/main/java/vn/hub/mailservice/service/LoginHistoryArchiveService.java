@@ -0,0 +1,9 @@
+package vn.hub.mailservice.service;
+
+public interface LoginHistoryArchiveService {
+
+    /**
+     * Tạo trước partition cho các tháng sắp tới và chuyển các tháng quá hạn sang bảng lưu trữ
+     */
+    void maintainPartitions();
+}
@@ -10,6 +10,4 @@ public interface LoginService {
     LoginHistory isUserLoggedIn(String username);
 
     int getTotalWorkingMinutesForToday(String username);
-
-    void calculateAndNotifyWorkingHours();
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package vn.hub.mailservice.service;
+
+import vn.hub.mailservice.entity.OutboxMessage;
+
+import java.util.List;
+
+public interface OutboxService {
+
+    /**
+     * Ghi email vào outbox trong giao dịch hiện tại của nghiệp vụ.
+     * Email chỉ được gửi sau khi giao dịch commit, rollback thì email cũng bị hủy theo.
+     *
+     * @param message email cần gửi
+     * @return bản ghi outbox đã lưu
+     */
+    OutboxMessage add(OutboxMessage message);
+
+    /**
+     * Ghi nhiều email vào outbox trong giao dịch hiện tại
+     *
+     * @param messages các email cần gửi
+     * @return các bản ghi outbox đã lưu
+     */
+    List<OutboxMessage> addAll(List<OutboxMessage> messages);
+
+    /**
+     * Khóa một lô bản ghi outbox chưa xử lý và chuyển chúng sang hàng đợi gửi
+     *
+     * @return số bản ghi đã chuyển
+     */
+    int relayPending();
+}
@@ -0,0 +1,33 @@
+package vn.hub.mailservice.service;
+
+import org.springframework.data.domain.Page;
+import vn.hub.mailservice.dto.TeamWorkingHoursReport;
+import vn.hub.mailservice.dto.UserWorkingHoursReport;
+import vn.hub.mailservice.entity.ReportPeriod;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Báo cáo thời gian làm việc theo tuần/tháng, đọc từ bảng tổng hợp working_minutes_rollup
+ */
+public interface WorkingHoursReportService {
+
+    /**
+     * Báo cáo theo user của kỳ chứa ngày {@code date}
+     *
+     * @param team chỉ lấy user thuộc team này, null để lấy tất cả
+     */
+    Page<UserWorkingHoursReport> findUserReport(ReportPeriod period, LocalDate date, String team, int page, int size);
+
+    /**
+     * Báo cáo theo team của kỳ chứa ngày {@code date}
+     */
+    Page<TeamWorkingHoursReport> findTeamReport(ReportPeriod period, LocalDate date, int page, int size);
+
+    /**
+     * Ghi báo cáo theo user ra CSV, đọc và ghi lần lượt từng dòng
+     */
+    void exportUserReportCsv(ReportPeriod period, LocalDate date, String team, Writer writer) throws IOException;
+}
@@ -4,18 +4,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import vn.hub.mailservice.entity.LoginHistory;
-import vn.hub.mailservice.entity.User;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.dto.UserWorkingMinutes;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboxMessage;
 import vn.hub.mailservice.repository.LoginHistoryRepository;
-import vn.hub.mailservice.repository.UserRepository;
-import vn.hub.mailservice.service.EmailService;
-import vn.hub.mailservice.util.TemplateUtil;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Service xử lý tính toán giờ làm việc và gửi thông báo
@@ -25,10 +28,11 @@ import java.util.Map;
 @Slf4j
 public class WorkingHoursService {
 
-    private final UserRepository userRepository;
     private final LoginHistoryRepository loginHistoryRepository;
-    private final EmailService emailService;
-    private final TemplateUtil templateUtil;
+    private final OutboxService outboxService;
+    private final JobLockService jobLockService;
+    private final SchedulingProperties schedulingProperties;
+    private final TransactionTemplate transactionTemplate;
 
     // Thời gian kết thúc làm việc (7:30 PM)
     private static final LocalTime WORK_END_TIME = LocalTime.of(19, 30);
@@ -36,29 +40,19 @@ public class WorkingHoursService {
     private static final int REQUIRED_MINUTES = 480;
 
     /**
-     * Job tự động chạy lúc 9h tối hàng ngày để kiểm tra và thông báo giờ làm việc
+     * Job tự động chạy lúc 9h tối hàng ngày để kiểm tra và thông báo giờ làm việc.
+     * Tập user được chia thành nhiều phần theo user_id, mỗi phần có khóa riêng trong DB
+     * nên khi chạy nhiều instance mỗi user chỉ được xử lý một lần và các instance chia nhau các phần.
+     * Khóa theo ngày chạy, phần đã xong không bị chạy lại trong ngày dù job chạy lâu.
      */
     @Scheduled(cron = "0 0 21 * * *") // Chạy lúc 9 giờ tối hàng ngày
     public void calculateAndNotifyWorkingHours() {
-        log.info("Bắt đầu tính toán giờ làm việc cho ngày {}", LocalDateTime.now().toLocalDate());
+        LocalDate today = LocalDate.now();
+        log.info("Bắt đầu tính toán giờ làm việc cho ngày {}", today);
 
         try {
-            // Lấy danh sách user đang đăng nhập
-            List<User> activeUsers = userRepository.findByActiveTrue();
-
-            for (User user : activeUsers) {
-                try {
-                    // Tính thời gian làm việc của user
-                    int workingMinutes = calculateWorkingMinutes(user);
-
-                    // Nếu không đủ 8 tiếng, gửi thông báo
-                    if (workingMinutes < REQUIRED_MINUTES) {
-                        sendWorkingHoursNotification(user.getUsername(), workingMinutes);
-                    }
-                } catch (Exception e) {
-                    log.error("Lỗi khi xử lý user {}: {}", user.getUsername(), e.getMessage());
-                }
-            }
+            jobLockService.runPartitioned(JobLockService.WORKING_HOURS_JOB, today, partition ->
+                    transactionTemplate.executeWithoutResult(status -> notifyPartition(today, partition)));
 
             log.info("Hoàn thành tính toán giờ làm việc");
         } catch (Exception e) {
@@ -67,43 +61,51 @@ public class WorkingHoursService {
     }
 
     /**
-     * Tính tổng thời gian làm việc của user trong ngày
-     * 
-     * @param user User cần tính
-     * @return Số phút làm việc
+     * Xử lý một phần user: tổng phút làm việc được gộp bằng một truy vấn, đọc dạng stream
+     * và ghi thông báo vào outbox theo từng lô
      */
-    private int calculateWorkingMinutes(User user) {
-        // Lấy thời gian đầu ngày và cuối ngày
-        LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfDay = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
-
-        // Tính tổng thời gian làm việc
-        return loginHistoryRepository.calculateTotalWorkingMinutes(user.getId(), startOfDay, endOfDay);
+    private void notifyPartition(LocalDate day, int partition) {
+        LocalDateTime startOfDay = day.atStartOfDay();
+        LocalDateTime endOfDay = startOfDay.plusDays(1);
+        int chunkSize = Math.max(1, schedulingProperties.getChunkSize());
+
+        List<OutboxMessage> chunk = new ArrayList<>(chunkSize);
+        // Driver MySQL đọc hết kết quả (chỉ gồm các user thiếu giờ) trong một lần,
+        // nên có thể ghi outbox trên cùng kết nối trong lúc duyệt stream
+        try (Stream<UserWorkingMinutes> shortfalls = loginHistoryRepository.streamWorkingMinutesBelow(
+                startOfDay, endOfDay, REQUIRED_MINUTES, jobLockService.getPartitions(), partition)) {
+            shortfalls.forEach(user -> {
+                chunk.add(toNotification(user));
+                if (chunk.size() >= chunkSize) {
+                    outboxService.addAll(chunk);
+                    chunk.clear();
+                }
+            });
+        }
+        if (!chunk.isEmpty()) {
+            outboxService.addAll(chunk);
+        }
     }
 
     /**
-     * Gửi email thông báo cho user không đủ giờ làm việc
-     * 
-     * @param username      Username của user
-     * @param actualMinutes Số phút làm việc thực tế
+     * Tạo email thông báo cho user không đủ giờ làm việc
+     *
+     * @param user Tổng phút làm việc của user trong ngày
+     * @return Email cần ghi vào outbox
      */
-    private void sendWorkingHoursNotification(String username, int actualMinutes) {
+    private OutboxMessage toNotification(UserWorkingMinutes user) {
+        int actualMinutes = user.getTotalMinutes().intValue();
         // Tính số phút thiếu
         int missingMinutes = REQUIRED_MINUTES - actualMinutes;
 
         // Chuẩn bị dữ liệu cho template
         Map<String, String> variables = new HashMap<>();
-        variables.put("name", username);
+        variables.put("name", user.getFullName() != null ? user.getFullName() : user.getUsername());
         variables.put("actualHours", String.format("%.2f", actualMinutes / 60.0));
         variables.put("missingMinutes", String.valueOf(missingMinutes));
 
-        // Xử lý template và gửi email
-        String htmlContent = templateUtil.processTemplate("templates/working-hours-notification.html", variables);
-        emailService.sendHtmlEmail(
-                username,
-                "Thông báo giờ làm việc không đủ",
-                htmlContent);
-
-        log.info("Đã gửi thông báo cho user {} về việc thiếu {} phút làm việc", username, missingMinutes);
+        log.info("Thông báo cho user {} về việc thiếu {} phút làm việc", user.getUsername(), missingMinutes);
+        return new OutboxMessage(EmailType.HTML, user.getEmail(), "Thông báo giờ làm việc không đủ",
+                "templates/working-hours-notification.html", variables);
     }
-}
\ No newline at end of file
+}
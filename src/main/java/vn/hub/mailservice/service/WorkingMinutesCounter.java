@@ -0,0 +1,88 @@
+package vn.hub.mailservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.config.WorkingMinutesProperties;
+import vn.hub.mailservice.repository.DailyWorkingMinutesRepository;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Tổng số phút làm việc theo ngày của từng user, lưu ở bảng daily_working_minutes.
+ * Mỗi lần logout cộng thêm phút của phiên vào dòng của ngày đăng nhập, nên đọc tổng chỉ là một lần tra theo khóa.
+ * Không giữ tổng trong bộ nhớ: logout có thể được ghi trên instance khác, đọc thẳng từ DB luôn thấy tổng mới nhất.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WorkingMinutesCounter {
+
+    private static final String RECONCILE_LOCK = "working-minutes-reconcile";
+
+    private final DailyWorkingMinutesRepository dailyWorkingMinutesRepository;
+    private final JobLockService jobLockService;
+    private final SchedulingProperties schedulingProperties;
+    private final WorkingMinutesProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Cộng phút của phiên vừa đăng xuất, gọi trong cùng giao dịch với việc đóng phiên
+     *
+     * @param userId   ID user
+     * @param workDate ngày đăng nhập của phiên
+     * @param minutes  số phút của phiên
+     */
+    public void recordLogout(Long userId, LocalDate workDate, int minutes) {
+        dailyWorkingMinutesRepository.addMinutes(userId, workDate, minutes);
+    }
+
+    /**
+     * Tính lại tổng trong khoảng [fromDate, toDate) của các user từ login_history,
+     * gọi trong giao dịch ghi lô sự kiện logout. Ghi lại cùng một lô nhiều lần không bị cộng trùng
+     */
+    public void refresh(Set<Long> userIds, LocalDate fromDate, LocalDate toDate) {
+        dailyWorkingMinutesRepository.refreshUsers(userIds, fromDate.atStartOfDay(), toDate.atStartOfDay());
+    }
+
+    /**
+     * Tổng số phút của các phiên đã đăng xuất trong ngày
+     */
+    public int getMinutes(Long userId, LocalDate workDate) {
+        return dailyWorkingMinutesRepository.findMinutes(userId, workDate).orElse(0);
+    }
+
+    /**
+     * Dựng lại tổng của các ngày gần đây từ login_history, sửa các sai lệch (ví dụ phiên được sửa tay trong DB)
+     */
+    @Scheduled(cron = "${app.working-minutes.reconcile-cron:0 0 3 * * *}")
+    public void reconcileRecentDays() {
+        if (!jobLockService.tryLock(RECONCILE_LOCK, schedulingProperties.getLockAtMostFor())) {
+            return;
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            reconcile(today.minusDays(properties.getReconcileDays()), today);
+        } finally {
+            jobLockService.unlock(RECONCILE_LOCK, schedulingProperties.getLockAtLeastFor());
+        }
+    }
+
+    /**
+     * Dựng lại tổng theo ngày trong khoảng [fromDate, toDate) bằng một câu INSERT ... SELECT ... GROUP BY
+     *
+     * @return số dòng tổng hợp được tạo
+     */
+    public int reconcile(LocalDate fromDate, LocalDate toDate) {
+        Integer rows = transactionTemplate.execute(status -> {
+            dailyWorkingMinutesRepository.deleteRange(fromDate, toDate);
+            return dailyWorkingMinutesRepository.rebuildRange(fromDate.atStartOfDay(), toDate.atStartOfDay());
+        });
+        log.info("Đã dựng lại {} dòng tổng phút làm việc từ {} tới {}", rows, fromDate, toDate);
+        return rows != null ? rows : 0;
+    }
+}
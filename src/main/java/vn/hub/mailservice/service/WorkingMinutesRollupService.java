@@ -0,0 +1,9 @@
+package vn.hub.mailservice.service;
+
+public interface WorkingMinutesRollupService {
+
+    /**
+     * Tổng hợp tổng theo ngày đã thay đổi từ lần chạy trước vào bảng tổng theo tuần và theo tháng
+     */
+    void compact();
+}
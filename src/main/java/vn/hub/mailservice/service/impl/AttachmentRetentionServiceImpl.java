@@ -0,0 +1,51 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.hub.mailservice.config.AttachmentStoreProperties;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.OutboxStatus;
+import vn.hub.mailservice.mail.AttachmentStore;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.repository.OutboxMessageRepository;
+import vn.hub.mailservice.service.AttachmentRetentionService;
+
+import java.io.IOException;
+
+/**
+ * Dọn kho file đính kèm: file chỉ được giữ khi còn email chưa gửi xong (outbound_email khác SENT,
+ * outbox PENDING) tham chiếu hoặc mới được upload trong khoảng retention.
+ * Mỗi instance dọn thư mục của mình, xóa trùng trên thư mục dùng chung không gây lỗi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentRetentionServiceImpl implements AttachmentRetentionService {
+
+    private final AttachmentStore attachmentStore;
+    private final AttachmentStoreProperties properties;
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    @Override
+    @Scheduled(cron = "${app.mail.attachments.cleanup-cron:0 0 4 * * *}")
+    public int deleteUnreferencedAttachments() {
+        try {
+            int deleted = attachmentStore.deleteUnreferenced(properties.getRetention(), this::isReferenced);
+            if (deleted > 0) {
+                log.info("Đã xóa {} file đính kèm không còn được dùng", deleted);
+            }
+            return deleted;
+        } catch (IOException e) {
+            log.error("Lỗi khi dọn kho file đính kèm: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private boolean isReferenced(String attachmentId) {
+        return outboundEmailRepository.existsByAttachmentIdAndStatusNot(attachmentId, EmailStatus.SENT)
+                || outboxMessageRepository.existsByAttachmentIdAndStatus(attachmentId, OutboxStatus.PENDING);
+    }
+}
@@ -0,0 +1,394 @@
+package vn.hub.mailservice.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.hub.mailservice.config.BulkPaymentProperties;
+import vn.hub.mailservice.dto.BulkPaymentProgressResponse;
+import vn.hub.mailservice.dto.BulkPaymentProgressResponse.StageStats;
+import vn.hub.mailservice.dto.PaymentInvoiceRequest;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.exception.EmailQueueFullException;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.service.BulkPaymentService;
+import vn.hub.mailservice.service.EmailQueueService;
+import vn.hub.mailservice.util.CompiledTemplate;
+import vn.hub.mailservice.util.QrCodeGenerator;
+import vn.hub.mailservice.util.TemplateUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gửi yêu cầu thanh toán kèm QR cho cả đợt hóa đơn theo dạng pipeline:
+ * <pre>
+ * hóa đơn → [pool CPU dùng chung] → render template, tạo QR, dựng MIME
+ *         → [hàng đợi chuyển]     → virtual thread: lưu email dựng sẵn vào hàng đợi gửi (outbound_email)
+ * </pre>
+ * Email được gửi bởi hàng đợi gửi như mọi email khác: giới hạn tốc độ, gửi lại khi lỗi tạm thời, dead-letter,
+ * và được gửi tiếp sau khi khởi động lại. Trạng thái từng hóa đơn nằm trong outbound_email với campaign_id là
+ * ID đợt gửi, số email đã gửi/lỗi trong tiến độ được đếm từ đó.
+ * Mỗi đợt chỉ có tối đa queueCapacity hóa đơn đang chuẩn bị hoặc chờ chuyển, đủ thì phải chờ chuyển bớt, nên
+ * bộ nhớ không tăng theo số hóa đơn; hàng đợi gửi đầy thì việc chuyển phải chờ tối đa enqueueTimeout.
+ * Pool CPU có cpuWorkers luồng dùng chung cho mọi đợt, mỗi hóa đơn là một task nên các đợt chạy cùng lúc được
+ * chia đều luồng CPU; số đợt chạy cùng lúc bị giới hạn bởi maxConcurrentRuns.
+ * Thời gian từng công đoạn được ghi vào timer payment.bulk.stage và trả về trong tiến độ của đợt gửi.
+ * Đợt gửi kết thúc khi mọi hóa đơn đã vào hàng đợi gửi hoặc lỗi khi chuẩn bị/chuyển; hóa đơn lỗi ở hai công
+ * đoạn này được trả về trong tiến độ để gửi lại. Tiến độ của đợt đã kết thúc được giữ trong bộ nhớ trong
+ * progressRetention.
+ */
+@Service
+@Slf4j
+public class BulkPaymentServiceImpl implements BulkPaymentService {
+
+    private static final PreparedMessage END_OF_MESSAGES = new PreparedMessage(null, null, null, 0);
+
+    private final JavaMailSender mailSender;
+    private final TemplateUtil templateUtil;
+    private final QrCodeGenerator qrCodeGenerator;
+    private final EmailQueueService emailQueueService;
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final BulkPaymentProperties properties;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final ExecutorService cpuPool;
+    private final Semaphore runSlots;
+
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    public BulkPaymentServiceImpl(JavaMailSender mailSender, TemplateUtil templateUtil,
+            QrCodeGenerator qrCodeGenerator, EmailQueueService emailQueueService,
+            OutboundEmailRepository outboundEmailRepository, BulkPaymentProperties properties,
+            MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.templateUtil = templateUtil;
+        this.qrCodeGenerator = qrCodeGenerator;
+        this.emailQueueService = emailQueueService;
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.properties = properties;
+        this.cpuPool = Executors.newFixedThreadPool(Math.max(1, properties.getCpuWorkers()),
+                Thread.ofPlatform().name("bulk-payment-cpu-", 0).factory());
+        this.runSlots = new Semaphore(Math.max(1, properties.getMaxConcurrentRuns()));
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("payment.bulk.stage")
+                    .description("Thời gian từng công đoạn gửi yêu cầu thanh toán hàng loạt")
+                    .tag("stage", stage.label)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public BulkPaymentProgressResponse start(List<PaymentInvoiceRequest> invoices) {
+        if (invoices == null || invoices.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách hóa đơn trống");
+        }
+        if (invoices.size() > properties.getMaxInvoices()) {
+            throw new IllegalArgumentException("Số hóa đơn vượt quá giới hạn " + properties.getMaxInvoices());
+        }
+        CompiledTemplate template = templateUtil.getTemplate(NotificationService.PAYMENT_TEMPLATE);
+        if (!runSlots.tryAcquire()) {
+            throw new EmailQueueFullException("Đang có " + properties.getMaxConcurrentRuns()
+                    + " đợt gửi yêu cầu thanh toán, vui lòng thử lại sau");
+        }
+
+        Run run = new Run(UUID.randomUUID().toString(), invoices.size(), properties.getQueueCapacity());
+        runs.put(run.id, run);
+        List<PaymentInvoiceRequest> snapshot = List.copyOf(invoices);
+        try {
+            Thread.ofVirtual().name("bulk-payment-" + run.id).start(() -> execute(run, snapshot, template));
+        } catch (RuntimeException e) {
+            runs.remove(run.id);
+            runSlots.release();
+            throw e;
+        }
+
+        log.info("Bắt đầu gửi yêu cầu thanh toán {} cho {} hóa đơn", run.id, invoices.size());
+        return toResponse(run);
+    }
+
+    @Override
+    public Optional<BulkPaymentProgressResponse> getProgress(String id) {
+        return Optional.ofNullable(runs.get(id)).map(this::toResponse);
+    }
+
+    /**
+     * Định kỳ xóa tiến độ của các đợt gửi đã kết thúc quá progressRetention
+     */
+    @Scheduled(fixedDelayString = "${app.mail.bulk-payment.eviction-interval:600000}")
+    public void evictFinishedRuns() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getProgressRetention());
+        runs.values().removeIf(run -> run.finishedAt != null && run.finishedAt.isBefore(cutoff));
+    }
+
+    private void execute(Run run, List<PaymentInvoiceRequest> invoices, CompiledTemplate template) {
+        int senders = Math.max(1, properties.getEnqueueConcurrency());
+        ExecutorService ioPool = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("bulk-payment-enqueue-", 0).factory());
+        BulkPaymentProgressResponse.Status status = BulkPaymentProgressResponse.Status.FAILED;
+
+        try {
+            for (int i = 0; i < senders; i++) {
+                ioPool.execute(() -> enqueueLoop(run));
+            }
+
+            for (PaymentInvoiceRequest invoice : invoices) {
+                run.slots.acquire();
+                run.preparing.incrementAndGet();
+                cpuPool.execute(() -> prepareOne(run, invoice, template));
+            }
+            // Lấy lại đủ chỗ nghĩa là mọi hóa đơn đã chuẩn bị xong và đã vào hàng đợi gửi hoặc lỗi
+            run.slots.acquire(run.capacity);
+
+            for (int i = 0; i < senders; i++) {
+                run.sendQueue.put(END_OF_MESSAGES);
+            }
+            ioPool.shutdown();
+            ioPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            status = BulkPaymentProgressResponse.Status.COMPLETED;
+            log.info("Đợt gửi {} đã đưa {} email vào hàng đợi gửi, {} lỗi", run.id, run.queued.sum(),
+                    run.failed.sum());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ioPool.shutdownNow();
+            run.error = "Bị ngắt khi đang gửi";
+        } catch (RejectedExecutionException e) {
+            ioPool.shutdownNow();
+            run.error = "Ứng dụng đang dừng";
+        } finally {
+            // Trả chỗ trước khi báo kết thúc để client thấy đợt đã xong thì tạo được đợt mới
+            runSlots.release();
+            run.finishedAt = LocalDateTime.now();
+            run.status = status;
+        }
+    }
+
+    /**
+     * Luồng CPU: render nội dung, tạo ảnh QR và dựng email MIME hoàn chỉnh rồi chuyển sang hàng đợi chuyển
+     */
+    private void prepareOne(Run run, PaymentInvoiceRequest invoice, CompiledTemplate template) {
+        try {
+            byte[] message = prepare(run, invoice, template);
+            run.prepared.increment();
+            run.sendQueue.add(new PreparedMessage(invoice.getOrderId(), invoice.getEmail(), message,
+                    System.nanoTime()));
+        } catch (Exception e) {
+            run.fail(invoice.getOrderId(), e, properties.getMaxReportedFailures());
+            run.slots.release();
+        } finally {
+            run.preparing.decrementAndGet();
+        }
+    }
+
+    private byte[] prepare(Run run, PaymentInvoiceRequest invoice, CompiledTemplate template)
+            throws MessagingException, IOException {
+        long start = System.nanoTime();
+        String html = template.render(NotificationService.paymentVariables(invoice.getCustomerName(),
+                invoice.getOrderId(), invoice.getServiceName(), invoice.getAmount(), invoice.getDueDate(),
+                invoice.getPaymentUrl()));
+        start = record(run, Stage.RENDER, start);
+
+        byte[] qrCode = qrCodeGenerator.generatePng(invoice.getQrCodeContent());
+        start = record(run, Stage.QRCODE, start);
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(invoice.getEmail());
+        helper.setSubject(NotificationService.PAYMENT_SUBJECT);
+        helper.setText(html, true);
+        helper.addInline("qrcode", new ByteArrayResource(qrCode), "image/png");
+        message.saveChanges();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        message.writeTo(raw);
+        record(run, Stage.MIME, start);
+        return raw.toByteArray();
+    }
+
+    /**
+     * Virtual thread: lưu email đã chuẩn bị vào hàng đợi gửi, số thread chạy đồng thời bằng enqueueConcurrency
+     */
+    private void enqueueLoop(Run run) {
+        try {
+            while (true) {
+                PreparedMessage prepared = run.sendQueue.take();
+                if (prepared == END_OF_MESSAGES) {
+                    return;
+                }
+                long start = record(run, Stage.ENQUEUE_WAIT, prepared.queuedAt());
+                try {
+                    OutboundEmail email = new OutboundEmail(EmailType.PREPARED, prepared.to(),
+                            NotificationService.PAYMENT_SUBJECT, null);
+                    email.setRawMessage(prepared.message());
+                    email.setCampaignId(run.id);
+                    emailQueueService.enqueue(email, properties.getEnqueueTimeout());
+                    run.queued.increment();
+                } catch (RuntimeException e) {
+                    run.fail(prepared.orderId(), e, properties.getMaxReportedFailures());
+                } finally {
+                    run.slots.release();
+                }
+                record(run, Stage.ENQUEUE, start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ghi thời gian của công đoạn tính từ {@code start}
+     *
+     * @return thời điểm kết thúc, dùng làm thời điểm bắt đầu của công đoạn sau
+     */
+    private long record(Run run, Stage stage, long start) {
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        stageTimers.get(stage).record(elapsed, TimeUnit.NANOSECONDS);
+        run.stages.get(stage).record(elapsed);
+        return end;
+    }
+
+    private BulkPaymentProgressResponse toResponse(Run run) {
+        LocalDateTime end = run.finishedAt != null ? run.finishedAt : LocalDateTime.now();
+        double seconds = Math.max(Duration.between(run.startedAt, end).toNanos() / 1e9, 1e-3);
+        Map<String, StageStats> stages = new LinkedHashMap<>();
+        run.stages.forEach((stage, counter) -> stages.put(stage.label, counter.toStats(seconds)));
+        List<String> failures;
+        synchronized (run.failures) {
+            failures = new ArrayList<>(run.failures);
+        }
+        long sent = 0;
+        long failed = run.failed.sum();
+        for (Object[] count : outboundEmailRepository.countByStatusForCampaign(run.id)) {
+            if (count[0] == EmailStatus.SENT) {
+                sent = (Long) count[1];
+            } else if (count[0] == EmailStatus.FAILED) {
+                failed += (Long) count[1];
+            }
+        }
+        return new BulkPaymentProgressResponse(run.id, run.status, run.total, run.prepared.sum(), run.queued.sum(),
+                sent, failed, run.preparing.get(), run.sendQueue.size(), stages, failures, run.error,
+                run.startedAt, run.finishedAt);
+    }
+
+    /**
+     * Dừng pool CPU khi tắt ứng dụng, đợt đang chạy kết thúc với trạng thái FAILED
+     */
+    @PreDestroy
+    public void shutdown() {
+        cpuPool.shutdownNow();
+    }
+
+    private enum Stage {
+        RENDER("render"),
+        QRCODE("qrcode"),
+        MIME("mime"),
+        ENQUEUE_WAIT("enqueue-wait"),
+        ENQUEUE("enqueue");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private record PreparedMessage(String orderId, String to, byte[] message, long queuedAt) {
+    }
+
+    /**
+     * Số liệu một công đoạn trong một đợt gửi
+     */
+    private static class StageCounter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        StageStats toStats(double elapsedSeconds) {
+            long n = count.sum();
+            return new StageStats(n, n / elapsedSeconds, n == 0 ? 0 : totalNanos.sum() / 1e6 / n,
+                    maxNanos.get() / 1e6);
+        }
+    }
+
+    /**
+     * Trạng thái đợt gửi trong bộ nhớ
+     */
+    private static class Run {
+        private final String id;
+        private final int total;
+        private final int capacity;
+        /**
+         * Chỗ cho hóa đơn đang chuẩn bị hoặc chờ chuyển, trả lại khi đã vào hàng đợi gửi hoặc lỗi
+         */
+        private final Semaphore slots;
+        private final AtomicInteger preparing = new AtomicInteger();
+        /**
+         * Không cần giới hạn sức chứa vì số email trong hàng đợi không vượt quá số chỗ của slots
+         */
+        private final BlockingQueue<PreparedMessage> sendQueue = new LinkedBlockingQueue<>();
+        private final Map<Stage, StageCounter> stages = new EnumMap<>(Stage.class);
+        private final LongAdder prepared = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile BulkPaymentProgressResponse.Status status = BulkPaymentProgressResponse.Status.RUNNING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        Run(String id, int total, int queueCapacity) {
+            this.id = id;
+            this.total = total;
+            this.capacity = Math.max(1, queueCapacity);
+            this.slots = new Semaphore(capacity);
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, new StageCounter());
+            }
+        }
+
+        void fail(String orderId, Exception e, int maxReported) {
+            failed.increment();
+            synchronized (failures) {
+                if (failures.size() < maxReported) {
+                    failures.add(orderId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package vn.hub.mailservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.config.CampaignProperties;
+import vn.hub.mailservice.dto.CampaignProgressResponse;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.service.CampaignService;
+import vn.hub.mailservice.service.EmailQueueService;
+import vn.hub.mailservice.util.CompiledTemplate;
+import vn.hub.mailservice.util.RecipientRowReader;
+import vn.hub.mailservice.util.TemplateUtil;
+import vn.hub.mailservice.util.TokenBucket;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Chiến dịch gửi email hàng loạt (mail-merge).
+ * File người nhận được lưu tạm xuống đĩa rồi đọc từng dòng, mỗi dòng được đưa vào hàng đợi gửi với số luồng
+ * và tốc độ giới hạn. Hàng đợi chỉ lưu đường dẫn template và biến của dòng, nội dung được render khi gửi.
+ * Tiến độ của chiến dịch đã kết thúc được giữ trong bộ nhớ trong thời gian progressRetention.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignServiceImpl implements CampaignService {
+
+    private static final Pattern TEMPLATE_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String EMAIL_COLUMN = "email";
+
+    private final EmailQueueService emailQueueService;
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final TemplateUtil templateUtil;
+    private final CampaignProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Campaign> campaigns = new ConcurrentHashMap<>();
+
+    @Override
+    public CampaignProgressResponse start(String templateName, String subject, MultipartFile recipients,
+            Integer concurrency, Double ratePerSecond) throws IOException {
+        if (templateName == null || !TEMPLATE_NAME.matcher(templateName).matches()) {
+            throw new IllegalArgumentException("Tên template không hợp lệ: " + templateName);
+        }
+        int threads = concurrency != null && concurrency > 0 ? concurrency : properties.getConcurrency();
+        if (threads > properties.getMaxConcurrency()) {
+            throw new IllegalArgumentException("Số luồng tối đa là " + properties.getMaxConcurrency());
+        }
+        // Tốc độ 0 (không giới hạn) chỉ dùng được qua cấu hình, không qua request
+        double rate = ratePerSecond != null ? ratePerSecond : properties.getRatePerSecond();
+        if (ratePerSecond != null && (ratePerSecond <= 0 || ratePerSecond > properties.getMaxRatePerSecond())) {
+            throw new IllegalArgumentException("Tốc độ gửi phải lớn hơn 0 và không quá "
+                    + properties.getMaxRatePerSecond() + " email mỗi giây");
+        }
+        String templatePath = "templates/" + templateName + ".html";
+        // Kiểm tra template tồn tại trước khi nhận file, nội dung được render khi gửi từng email
+        templateUtil.getTemplate(templatePath);
+        CompiledTemplate subjectTemplate = CompiledTemplate.compile(subject);
+
+        // Lưu file xuống đĩa để đọc dần sau khi request kết thúc, không nạp toàn bộ danh sách vào bộ nhớ
+        Path spoolFile = Files.createTempFile("campaign-", ".tmp");
+        try {
+            recipients.transferTo(spoolFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+
+        Campaign campaign = new Campaign(UUID.randomUUID().toString(), templateName);
+        campaigns.put(campaign.id, campaign);
+
+        RecipientRowReader.Format format = RecipientRowReader.detectFormat(recipients.getOriginalFilename());
+
+        Thread.ofVirtual().name("campaign-" + campaign.id).start(() ->
+                run(campaign, spoolFile, format, templatePath, subjectTemplate, threads, rate));
+
+        log.info("Bắt đầu chiến dịch {} với template {}", campaign.id, templateName);
+        return toResponse(campaign);
+    }
+
+    @Override
+    public Optional<CampaignProgressResponse> getProgress(String id) {
+        return Optional.ofNullable(campaigns.get(id)).map(this::toResponse);
+    }
+
+    /**
+     * Định kỳ xóa tiến độ của các chiến dịch đã kết thúc quá progressRetention
+     */
+    @Scheduled(fixedDelayString = "${app.mail.campaign.eviction-interval:600000}")
+    public void evictFinishedCampaigns() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getProgressRetention());
+        campaigns.values().removeIf(campaign -> campaign.finishedAt != null && campaign.finishedAt.isBefore(cutoff));
+    }
+
+    private void run(Campaign campaign, Path spoolFile, RecipientRowReader.Format format,
+            String templatePath, CompiledTemplate subjectTemplate, int threads, double rate) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("campaign-worker-", 0).factory());
+        // Giới hạn số dòng đã đọc nhưng chưa xử lý xong
+        Semaphore inFlight = new Semaphore(threads * 2);
+        TokenBucket rateLimiter = rate > 0 ? new TokenBucket(rate, Math.max(1, rate)) : null;
+
+        try (BufferedReader reader = Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8);
+                RecipientRowReader rows = RecipientRowReader.open(reader, format, objectMapper)) {
+            Map<String, String> row;
+            while ((row = rows.next()) != null) {
+                campaign.rowsRead.incrementAndGet();
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(1);
+                }
+                inFlight.acquire();
+                Map<String, String> variables = row;
+                workers.execute(() -> {
+                    try {
+                        enqueueRow(campaign, variables, templatePath, subjectTemplate);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            campaign.status = CampaignProgressResponse.Status.COMPLETED;
+            log.info("Chiến dịch {} đã đưa {} email vào hàng đợi", campaign.id, campaign.queued.get());
+        } catch (Exception e) {
+            log.error("Chiến dịch {} bị lỗi: {}", campaign.id, e.getMessage());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            workers.shutdownNow();
+            campaign.error = e.getMessage();
+            campaign.status = CampaignProgressResponse.Status.FAILED;
+        } finally {
+            campaign.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                log.warn("Không xóa được file tạm {}: {}", spoolFile, e.getMessage());
+            }
+        }
+    }
+
+    private void enqueueRow(Campaign campaign, Map<String, String> variables, String templatePath,
+            CompiledTemplate subjectTemplate) {
+        String to = variables.get(EMAIL_COLUMN);
+        if (to == null || to.isBlank()) {
+            campaign.invalid.incrementAndGet();
+            return;
+        }
+        try {
+            new InternetAddress(to.trim(), true);
+        } catch (AddressException e) {
+            campaign.invalid.incrementAndGet();
+            return;
+        }
+        try {
+            OutboundEmail email = new OutboundEmail(EmailType.HTML, to.trim(), subjectTemplate.render(variables),
+                    null);
+            email.setTemplatePath(templatePath);
+            email.setTemplateVariables(variables);
+            email.setCampaignId(campaign.id);
+            emailQueueService.enqueue(email, properties.getEnqueueTimeout());
+            campaign.queued.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            campaign.rejected.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Chiến dịch {}: không đưa được email {} vào hàng đợi: {}", campaign.id, to, e.getMessage());
+            campaign.rejected.incrementAndGet();
+        }
+    }
+
+    private CampaignProgressResponse toResponse(Campaign campaign) {
+        long sent = 0;
+        long failed = 0;
+        for (Object[] count : outboundEmailRepository.countByStatusForCampaign(campaign.id)) {
+            if (count[0] == EmailStatus.SENT) {
+                sent = (Long) count[1];
+            } else if (count[0] == EmailStatus.FAILED) {
+                failed = (Long) count[1];
+            }
+        }
+        return new CampaignProgressResponse(campaign.id, campaign.template, campaign.status,
+                campaign.rowsRead.get(), campaign.queued.get(), campaign.invalid.get(), campaign.rejected.get(), sent, failed,
+                campaign.error, campaign.startedAt, campaign.finishedAt);
+    }
+
+    /**
+     * Trạng thái chiến dịch trong bộ nhớ, các bộ đếm được cập nhật khi đang chạy
+     */
+    private static class Campaign {
+        private final String id;
+        private final String template;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong invalid = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile CampaignProgressResponse.Status status = CampaignProgressResponse.Status.RUNNING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        Campaign(String id, String template) {
+            this.id = id;
+            this.template = template;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import vn.hub.mailservice.dto.DeadLetterResponse;
+import vn.hub.mailservice.entity.DeadLetterEmail;
+import vn.hub.mailservice.repository.DeadLetterEmailRepository;
+import vn.hub.mailservice.service.DeadLetterService;
+import vn.hub.mailservice.service.EmailQueueService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterServiceImpl implements DeadLetterService {
+
+    private static final int REPLAY_CHUNK_SIZE = 500;
+
+    private final DeadLetterEmailRepository deadLetterEmailRepository;
+    private final EmailQueueService emailQueueService;
+
+    @Override
+    public Page<DeadLetterResponse> findPending(int page, int size) {
+        return deadLetterEmailRepository
+                .findByReplayedAtIsNull(PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "failedAt")))
+                .map(DeadLetterResponse::new);
+    }
+
+    @Override
+    public int replay(List<Long> ids) {
+        int replayed = 0;
+        if (ids != null && !ids.isEmpty()) {
+            replayed = replayAll(deadLetterEmailRepository.findByIdInAndReplayedAtIsNull(ids));
+        } else {
+            // Luôn lấy trang đầu vì các bản ghi đã gửi lại sẽ không còn trong kết quả
+            List<DeadLetterEmail> chunk;
+            do {
+                chunk = deadLetterEmailRepository
+                        .findByReplayedAtIsNull(PageRequest.of(0, REPLAY_CHUNK_SIZE, Sort.by("id")))
+                        .getContent();
+                replayed += replayAll(chunk);
+            } while (chunk.size() == REPLAY_CHUNK_SIZE);
+        }
+        log.info("Đã đưa lại {} email từ dead-letter vào hàng đợi", replayed);
+        return replayed;
+    }
+
+    private int replayAll(List<DeadLetterEmail> deadLetters) {
+        for (DeadLetterEmail deadLetter : deadLetters) {
+            deadLetter.setReplayedAt(LocalDateTime.now());
+            deadLetterEmailRepository.save(deadLetter);
+            emailQueueService.requeue(deadLetter.getOutboundEmailId());
+        }
+        return deadLetters.size();
+    }
+}
@@ -0,0 +1,51 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+import vn.hub.mailservice.service.ActiveSessionRegistry;
+import vn.hub.mailservice.service.LoginEventWriter;
+import vn.hub.mailservice.service.WorkingMinutesCounter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi trực tiếp: mỗi login/logout là một giao dịch DB, trả về sau khi commit
+ */
+@Component("loginEventWriter")
+@ConditionalOnProperty(prefix = "app.login-events", name = "write-behind", havingValue = "false",
+        matchIfMissing = true)
+@RequiredArgsConstructor
+public class DirectLoginEventWriter implements LoginEventWriter {
+
+    private final LoginHistoryRepository loginHistoryRepository;
+    private final WorkingMinutesCounter workingMinutesCounter;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public LoginHistory recordLogin(User user, long id, LocalDateTime loginTime) {
+        loginHistoryRepository.insertSession(id, user.getId(), loginTime);
+        LoginHistory loginHistory = new LoginHistory(user, loginTime);
+        loginHistory.setId(id);
+        return loginHistory;
+    }
+
+    @Override
+    public boolean recordLogout(ActiveSessionRegistry.Session session, LocalDateTime logoutTime,
+            int workingMinutes) {
+        // Đóng phiên và cộng vào tổng phút của ngày trong cùng một giao dịch
+        Boolean closed = transactionTemplate.execute(status -> {
+            if (loginHistoryRepository.closeSession(session.id(), session.loginTime(), logoutTime,
+                    workingMinutes) == 0) {
+                return false;
+            }
+            workingMinutesCounter.recordLogout(session.userId(), session.loginTime().toLocalDate(), workingMinutes);
+            return true;
+        });
+        return Boolean.TRUE.equals(closed);
+    }
+}
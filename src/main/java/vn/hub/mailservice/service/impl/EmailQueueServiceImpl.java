@@ -0,0 +1,397 @@
+package vn.hub.mailservice.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.EmailQueueProperties;
+import vn.hub.mailservice.config.EmailRetryProperties;
+import vn.hub.mailservice.dto.BatchSendResult;
+import vn.hub.mailservice.dto.RecipientChunkResult;
+import vn.hub.mailservice.dto.RecipientFanOutResult;
+import vn.hub.mailservice.entity.DeadLetterEmail;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.exception.EmailQueueFullException;
+import vn.hub.mailservice.mail.DomainDeliveryScheduler;
+import vn.hub.mailservice.mail.SendFailureType;
+import vn.hub.mailservice.mail.SmtpErrors;
+import vn.hub.mailservice.repository.DeadLetterEmailRepository;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.service.EmailQueueService;
+import vn.hub.mailservice.service.EmailService;
+import vn.hub.mailservice.util.TemplateUtil;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hàng đợi gửi email bất đồng bộ.
+ * Email được lưu vào bảng outbound_email rồi giao cho {@link DomainDeliveryScheduler} theo domain người nhận,
+ * số email đang chờ bị giới hạn bởi capacity để tránh tràn bộ nhớ.
+ * Email lỗi tạm thời được hẹn gửi lại với thời gian chờ tăng dần, hết số lần thì chuyển vào dead-letter.
+ * Lỗi tạm thời cũng làm domain bị tạm dừng, nhưng email gửi lại không chờ thêm thời gian tạm dừng đó
+ * ({@link DomainDeliveryScheduler#submitRetry}), nên thời gian chờ giữa hai lần gửi chỉ là app.mail.queue.retry.
+ */
+@Service
+@Slf4j
+public class EmailQueueServiceImpl implements EmailQueueService {
+
+    /**
+     * Thời gian chờ trước khi thử đưa lại email vào pool gửi khi hàng đợi đang đầy
+     */
+    private static final long DISPATCH_RETRY_DELAY_MILLIS = 1000;
+
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final DeadLetterEmailRepository deadLetterEmailRepository;
+    private final EmailService emailService;
+    private final TemplateUtil templateUtil;
+    private final EmailRetryProperties retryProperties;
+    private final Semaphore permits;
+    private final DomainDeliveryScheduler deliveryScheduler;
+    private final ScheduledExecutorService scheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    public EmailQueueServiceImpl(OutboundEmailRepository outboundEmailRepository,
+            DeadLetterEmailRepository deadLetterEmailRepository,
+            EmailService emailService,
+            TemplateUtil templateUtil,
+            EmailQueueProperties properties,
+            EmailRetryProperties retryProperties,
+            DomainDeliveryScheduler deliveryScheduler,
+            TransactionTemplate transactionTemplate) {
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.deadLetterEmailRepository = deadLetterEmailRepository;
+        this.emailService = emailService;
+        this.templateUtil = templateUtil;
+        this.retryProperties = retryProperties;
+        this.permits = new Semaphore(properties.getCapacity());
+        this.deliveryScheduler = deliveryScheduler;
+        this.transactionTemplate = transactionTemplate;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("mail-retry-scheduler").daemon().factory());
+    }
+
+    @Override
+    public OutboundEmail enqueue(OutboundEmail email) {
+        if (!permits.tryAcquire()) {
+            throw new EmailQueueFullException("Hàng đợi gửi email đã đầy, vui lòng thử lại sau");
+        }
+        return submit(email);
+    }
+
+    @Override
+    public OutboundEmail enqueue(OutboundEmail email, Duration maxWait) throws InterruptedException {
+        if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new EmailQueueFullException("Hàng đợi gửi email vẫn đầy sau " + maxWait);
+        }
+        return submit(email);
+    }
+
+    @Override
+    public List<OutboundEmail> enqueueAll(List<OutboundEmail> emails) {
+        if (emails.isEmpty()) {
+            return List.of();
+        }
+        if (!permits.tryAcquire(emails.size())) {
+            throw new EmailQueueFullException("Hàng đợi gửi email không còn đủ chỗ cho " + emails.size() + " email");
+        }
+        List<OutboundEmail> saved;
+        try {
+            emails.forEach(email -> email.setStatus(EmailStatus.QUEUED));
+            saved = transactionTemplate.execute(status -> outboundEmailRepository.saveAll(emails));
+        } catch (RuntimeException e) {
+            permits.release(emails.size());
+            throw e;
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            try {
+                dispatchAfterCommit(saved.get(i).getId(), saved.get(i).getTo());
+            } catch (RejectedExecutionException e) {
+                // Bộ điều phối đã dừng: trả lại chỗ của các email chưa giao, email đã lưu được nạp lại khi khởi động
+                permits.release(saved.size() - i - 1);
+                throw e;
+            }
+        }
+        return saved;
+    }
+
+    private OutboundEmail submit(OutboundEmail email) {
+        try {
+            email.setStatus(EmailStatus.QUEUED);
+            OutboundEmail saved = outboundEmailRepository.save(email);
+            dispatchAfterCommit(saved.getId(), saved.getTo());
+            return saved;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Nếu đang trong giao dịch thì chỉ giao email cho pool gửi sau khi giao dịch commit,
+     * tránh worker đọc email chưa được commit; giao dịch rollback thì trả lại chỗ trong hàng đợi
+     */
+    private void dispatchAfterCommit(Long id, String to) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(id, to);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    dispatch(id, to);
+                } else {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    private void dispatch(Long id, String to) {
+        try {
+            deliveryScheduler.submit(DomainDeliveryScheduler.domainOf(to), () -> process(id));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<OutboundEmail> findById(Long id) {
+        return outboundEmailRepository.findById(id);
+    }
+
+    @Override
+    public void requeue(Long id) {
+        OutboundEmail email = outboundEmailRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy email " + id));
+        email.setStatus(EmailStatus.QUEUED);
+        email.setAttempts(0);
+        email.setNextAttemptAt(null);
+        outboundEmailRepository.save(email);
+        schedule(id, email.getTo(), 0, false);
+    }
+
+    /**
+     * Nạp lại các email chưa gửi xong (kể cả email đang chờ gửi lại) trước lần khởi động trước
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPendingEmails() {
+        List<Object[]> pending = outboundEmailRepository.findPendingByStatusIn(
+                EnumSet.of(EmailStatus.QUEUED, EmailStatus.SENDING));
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Nạp lại {} email chưa gửi vào hàng đợi", pending.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : pending) {
+            LocalDateTime nextAttemptAt = (LocalDateTime) row[1];
+            long delay = nextAttemptAt != null ? Math.max(0, Duration.between(now, nextAttemptAt).toMillis()) : 0;
+            schedule((Long) row[0], (String) row[2], delay, nextAttemptAt != null);
+        }
+    }
+
+    /**
+     * Hẹn giờ đưa email vào pool gửi; nếu hàng đợi đang đầy thì hẹn lại sau
+     *
+     * @param retry email đang chờ gửi lại, đã chờ đủ thời gian nên không chờ thêm khi domain đang tạm dừng
+     */
+    private void schedule(Long id, String to, long delayMillis, boolean retry) {
+        scheduler.schedule(() -> {
+            if (!permits.tryAcquire()) {
+                schedule(id, to, DISPATCH_RETRY_DELAY_MILLIS, retry);
+                return;
+            }
+            try {
+                String domain = DomainDeliveryScheduler.domainOf(to);
+                if (retry) {
+                    deliveryScheduler.submitRetry(domain, () -> process(id));
+                } else {
+                    deliveryScheduler.submit(domain, () -> process(id));
+                }
+            } catch (RejectedExecutionException e) {
+                permits.release();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gửi một email trong hàng đợi
+     *
+     * @return loại lỗi của lần gửi này để bộ điều phối tạm dừng domain khi lỗi tạm thời, null nếu không lỗi
+     */
+    private SendFailureType process(Long id) {
+        Duration retryDelay = null;
+        SendFailureType failureType = null;
+        String to = null;
+        try {
+            OutboundEmail email = outboundEmailRepository.findById(id).orElse(null);
+            if (email == null || email.getStatus() == EmailStatus.SENT || email.getStatus() == EmailStatus.FAILED) {
+                return null;
+            }
+            to = email.getTo();
+
+            email.setStatus(EmailStatus.SENDING);
+            email.setAttempts(email.getAttempts() + 1);
+            email.setNextAttemptAt(null);
+            outboundEmailRepository.save(email);
+
+            try {
+                String partialFailure = deliver(email);
+                email.setStatus(EmailStatus.SENT);
+                email.setSentAt(LocalDateTime.now());
+                email.setLastError(partialFailure);
+                outboundEmailRepository.save(email);
+            } catch (Exception e) {
+                failureType = SmtpErrors.classify(e);
+                retryDelay = handleFailure(email, e, failureType);
+            }
+        } catch (Exception e) {
+            log.error("Lỗi khi xử lý email {} trong hàng đợi: {}", id, e.getMessage());
+        } finally {
+            permits.release();
+        }
+
+        if (retryDelay != null) {
+            schedule(id, to, retryDelay.toMillis(), true);
+        }
+        return failureType;
+    }
+
+    /**
+     * Xử lý email gửi lỗi: lỗi tạm thời/lỗi kết nối thì hẹn gửi lại, lỗi vĩnh viễn hoặc hết số lần thì chuyển
+     * vào dead-letter. Không lưu được kết quả (DB lỗi) thì email vẫn ở SENDING trong DB và được hẹn xử lý lại,
+     * không bị kẹt tới lần khởi động sau
+     *
+     * @return thời gian chờ trước lần xử lý lại, null nếu không xử lý lại
+     */
+    private Duration handleFailure(OutboundEmail email, Exception error, SendFailureType failureType) {
+        int smtpCode = SmtpErrors.returnCode(error);
+        email.setLastError(SmtpErrors.reply(error));
+        Duration delay = backoff(email.getAttempts());
+
+        try {
+            if (failureType.isRetryable() && email.getAttempts() < retryProperties.getMaxAttempts()) {
+                email.setStatus(EmailStatus.QUEUED);
+                email.setNextAttemptAt(LocalDateTime.now().plus(delay));
+                outboundEmailRepository.save(email);
+                log.warn("Gửi email {} thất bại lần {} ({}), gửi lại sau {}s: {}", email.getId(),
+                        email.getAttempts(), failureType, delay.toSeconds(), email.getLastError());
+                return delay;
+            }
+
+            // Trạng thái FAILED và bản ghi dead-letter lưu cùng một giao dịch, lỗi thì không mất dead-letter
+            transactionTemplate.executeWithoutResult(status -> {
+                email.setStatus(EmailStatus.FAILED);
+                outboundEmailRepository.save(email);
+                deadLetterEmailRepository.save(new DeadLetterEmail(email, failureType,
+                        smtpCode > 0 ? smtpCode : null));
+            });
+            log.error("Gửi email {} thất bại sau {} lần ({}), chuyển vào dead-letter: {}", email.getId(),
+                    email.getAttempts(), failureType, email.getLastError());
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Không lưu được kết quả gửi lỗi của email {} ({}), xử lý lại sau {}s: {}", email.getId(),
+                    email.getLastError(), delay.toSeconds(), e.getMessage());
+            return delay;
+        }
+    }
+
+    /**
+     * Thời gian chờ tăng theo cấp số nhân kèm độ lệch ngẫu nhiên
+     */
+    private Duration backoff(int attempts) {
+        double base = retryProperties.getInitialBackoff().toMillis()
+                * Math.pow(retryProperties.getMultiplier(), attempts - 1);
+        double capped = Math.min(base, retryProperties.getMaxBackoff().toMillis());
+        double jitter = retryProperties.getJitter();
+        double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+        return Duration.ofMillis(Math.max(0, Math.round(capped * factor)));
+    }
+
+    /**
+     * Gửi email theo loại
+     *
+     * @return mô tả các phần CC/BCC bị từ chối khi chỉ gửi được một phần, null nếu gửi hết
+     */
+    private String deliver(OutboundEmail email) throws Exception {
+        if (email.getType() == EmailType.HTML && email.getTemplatePath() != null) {
+            // Render thẳng vào nội dung email, không giữ bản HTML trung gian
+            emailService.sendTemplateEmail(email.getTo(), email.getSubject(), email.getTemplatePath(),
+                    email.getTemplateVariables());
+            return null;
+        }
+
+        String htmlContent = email.getTemplatePath() != null
+                ? templateUtil.processTemplate(email.getTemplatePath(), email.getTemplateVariables())
+                : email.getHtmlContent();
+        switch (email.getType()) {
+            case HTML -> emailService.sendHtmlEmail(email.getTo(), email.getSubject(), htmlContent);
+            case CC -> {
+                return partialFailure(emailService.sendHtmlEmailWithCC(email.getTo(), email.getCcList(),
+                        email.getSubject(), htmlContent));
+            }
+            case BCC -> {
+                return partialFailure(emailService.sendHtmlEmailWithBCC(email.getTo(), email.getBccList(),
+                        email.getSubject(), htmlContent));
+            }
+            case QRCODE -> emailService.sendEmailWithQRCode(email.getTo(), email.getSubject(),
+                    htmlContent, email.getQrCodeContent());
+            case PREPARED -> emailService.sendPreparedEmail(email.getRawMessage());
+            case PDF -> {
+                if (email.getAttachmentId() != null) {
+                    emailService.sendEmailWithStoredAttachment(email.getTo(), email.getSubject(), htmlContent,
+                            email.getAttachmentId(), email.getAttachmentName());
+                } else {
+                    emailService.sendEmailWithPdfAttachment(email.getTo(), email.getSubject(), htmlContent,
+                            email.getAttachmentName(), email.getAttachment());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Các phần bị từ chối không được gửi lại vì các phần khác đã tới người nhận, chỉ ghi lại để tra cứu
+     */
+    private static String partialFailure(RecipientFanOutResult result) {
+        if (result.getRejectedChunks() == 0 && result.getInvalidRecipients().isEmpty()) {
+            return null;
+        }
+        StringBuilder summary = new StringBuilder();
+        for (RecipientChunkResult chunk : result.getChunks()) {
+            if (chunk.getStatus() == BatchSendResult.Status.REJECTED) {
+                summary.append("Phần ").append(chunk.getIndex()).append(" (").append(chunk.getRecipients().size())
+                        .append(" người nhận) bị từ chối: ").append(chunk.getSmtpReply()).append('\n');
+            }
+        }
+        if (!result.getInvalidRecipients().isEmpty()) {
+            summary.append("Địa chỉ không hợp lệ: ").append(String.join(", ", result.getInvalidRecipients()));
+        }
+        return summary.toString().strip();
+    }
+
+    /**
+     * Luồng gửi thuộc {@link DomainDeliveryScheduler}, được dừng cùng bean đó sau khi dừng hẹn giờ gửi lại
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
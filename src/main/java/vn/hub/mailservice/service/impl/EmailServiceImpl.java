@@ -1,28 +1,48 @@
 package vn.hub.mailservice.service.impl;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
 import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.config.RecipientChunkProperties;
+import vn.hub.mailservice.dto.BatchSendResult;
+import vn.hub.mailservice.dto.RecipientChunkResult;
+import vn.hub.mailservice.dto.RecipientFanOutResult;
+import vn.hub.mailservice.mail.AttachmentStore;
+import vn.hub.mailservice.mail.MultipartFileDataSource;
+import vn.hub.mailservice.mail.PooledJavaMailSender;
+import vn.hub.mailservice.mail.PreparedMessage;
+import vn.hub.mailservice.mail.SmtpErrors;
+import vn.hub.mailservice.mail.TemplateDataHandler;
 import vn.hub.mailservice.service.EmailService;
+import vn.hub.mailservice.util.CompiledTemplate;
+import vn.hub.mailservice.util.QrCodeGenerator;
+import vn.hub.mailservice.util.TemplateUtil;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -30,6 +50,10 @@ import java.util.List;
 public class EmailServiceImpl implements EmailService {
 
     private final JavaMailSender mailSender;
+    private final TemplateUtil templateUtil;
+    private final QrCodeGenerator qrCodeGenerator;
+    private final AttachmentStore attachmentStore;
+    private final RecipientChunkProperties recipientChunkProperties;
 
     @Override
     public void sendHtmlEmail(String to, String subject, String htmlContent) {
@@ -50,41 +74,41 @@ public class EmailServiceImpl implements EmailService {
     }
 
     @Override
-    public void sendHtmlEmailWithCC(String to, List<String> cc, String subject, String htmlContent) {
+    public void sendTemplateEmail(String to, String subject, String templatePath, Map<String, String> variables) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
             helper.setTo(to);
-            helper.setCc(cc.toArray(new String[0]));
             helper.setSubject(subject);
-            helper.setText(htmlContent, true);
+
+            // Nội dung HTML được render khi ghi email ra kết nối SMTP
+            CompiledTemplate template = templateUtil.getTemplate(templatePath);
+            helper.getMimeMultipart().addBodyPart(TemplateDataHandler.createBodyPart(template, variables));
 
             mailSender.send(message);
-            log.info("Email HTML với CC đã được gửi thành công đến {} và CC: {}", to, cc);
+            log.info("Email từ template {} đã được gửi thành công đến {}", templatePath, to);
         } catch (Exception e) {
-            log.error("Lỗi khi gửi email HTML với CC: {}", e.getMessage());
-            throw new RuntimeException("Không thể gửi email với CC", e);
+            log.error("Lỗi khi gửi email từ template: {}", e.getMessage());
+            throw new RuntimeException("Không thể gửi email", e);
         }
     }
 
     @Override
-    public void sendHtmlEmailWithBCC(String to, List<String> bcc, String subject, String htmlContent) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(to);
-            helper.setBcc(bcc.toArray(new String[0]));
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
+    public RecipientFanOutResult sendHtmlEmailWithCC(String to, List<String> cc, String subject, String htmlContent) {
+        RecipientFanOutResult result = fanOut(to, cc, true, subject, htmlContent, "Không thể gửi email với CC");
+        log.info("Email HTML với CC đã được gửi đến {} và {} người nhận CC ({}/{} phần thành công)", to,
+                result.getRecipients() - 1, result.getAcceptedChunks(), result.getChunks().size());
+        return result;
+    }
 
-            mailSender.send(message);
-            log.info("Email HTML với BCC đã được gửi thành công đến {} và BCC: {}", to, bcc);
-        } catch (Exception e) {
-            log.error("Lỗi khi gửi email HTML với BCC: {}", e.getMessage());
-            throw new RuntimeException("Không thể gửi email với BCC", e);
-        }
+    @Override
+    public RecipientFanOutResult sendHtmlEmailWithBCC(String to, List<String> bcc, String subject,
+            String htmlContent) {
+        RecipientFanOutResult result = fanOut(to, bcc, false, subject, htmlContent, "Không thể gửi email với BCC");
+        log.info("Email HTML với BCC đã được gửi đến {} và {} người nhận BCC ({}/{} phần thành công)", to,
+                result.getRecipients() - 1, result.getAcceptedChunks(), result.getChunks().size());
+        return result;
     }
 
     @Override
@@ -98,8 +122,8 @@ public class EmailServiceImpl implements EmailService {
             helper.setSubject(subject);
             helper.setText(htmlContent, true);
 
-            // Tạo QR code
-            byte[] qrCodeImage = generateQRCodeImage(qrCodeContent, 250, 250);
+            // Lấy ảnh QR code (cache theo nội dung)
+            byte[] qrCodeImage = qrCodeGenerator.generatePng(qrCodeContent);
 
             // Đính kèm QR code vào email
             helper.addInline("qrcode", new ByteArrayResource(qrCodeImage), "image/png");
@@ -146,36 +170,228 @@ public class EmailServiceImpl implements EmailService {
             helper.setSubject(subject);
             helper.setText(htmlContent, true);
 
-            // Lưu file tạm thời
-            Path tempFile = Files.createTempFile("attachment", ".pdf");
-            pdfFile.transferTo(tempFile.toFile());
+            // Đính kèm file PDF, nội dung được đọc thẳng từ file upload khi gửi
+            String fileName = pdfFile.getOriginalFilename() != null ? pdfFile.getOriginalFilename() : "attachment.pdf";
+            helper.getRootMimeMultipart().addBodyPart(
+                    MultipartFileDataSource.createAttachment(pdfFile, fileName, "application/pdf"));
+
+            mailSender.send(message);
+            log.info("Email với file PDF upload đã được gửi thành công đến {}", to);
+        } catch (Exception e) {
+            log.error("Lỗi khi gửi email với file PDF upload: {}", e.getMessage());
+            throw new RuntimeException("Không thể gửi email với file PDF upload", e);
+        }
+    }
+
+    @Override
+    public void sendEmailWithPdfAttachment(String to, String subject, String htmlContent, String attachmentName,
+            byte[] pdfContent) throws MessagingException {
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+            helper.setTo(to);
+            helper.setSubject(subject);
+            helper.setText(htmlContent, true);
 
             // Đính kèm file PDF
-            FileSystemResource file = new FileSystemResource(tempFile.toFile());
-            helper.addAttachment(pdfFile.getOriginalFilename(), file);
+            helper.addAttachment(attachmentName, new ByteArrayResource(pdfContent), "application/pdf");
 
             mailSender.send(message);
+            log.info("Email với file PDF đính kèm đã được gửi thành công đến {}", to);
+        } catch (Exception e) {
+            log.error("Lỗi khi gửi email với file PDF đính kèm: {}", e.getMessage());
+            throw new RuntimeException("Không thể gửi email với file PDF đính kèm", e);
+        }
+    }
 
-            // Xóa file tạm
-            Files.deleteIfExists(tempFile);
+    @Override
+    public void sendEmailWithStoredAttachment(String to, String subject, String htmlContent, String attachmentId,
+            String attachmentName) throws MessagingException {
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-            log.info("Email với file PDF upload đã được gửi thành công đến {}", to);
+            helper.setTo(to);
+            helper.setSubject(subject);
+            helper.setText(htmlContent, true);
+
+            // Nội dung base64 đã mã hóa sẵn trong kho được chép nguyên vào email
+            helper.getRootMimeMultipart().addBodyPart(attachmentStore.createBodyPart(attachmentId, attachmentName));
+
+            mailSender.send(message);
+            log.info("Email với file đính kèm {} đã được gửi thành công đến {}", attachmentId, to);
         } catch (Exception e) {
-            log.error("Lỗi khi gửi email với file PDF upload: {}", e.getMessage());
-            throw new RuntimeException("Không thể gửi email với file PDF upload", e);
+            log.error("Lỗi khi gửi email với file đính kèm đã lưu: {}", e.getMessage());
+            throw new RuntimeException("Không thể gửi email với file đính kèm", e);
+        }
+    }
+
+    @Override
+    public void sendPreparedEmail(byte[] rawMessage) {
+        try {
+            MimeMessage message = mailSender.createMimeMessage(new ByteArrayInputStream(rawMessage));
+
+            mailSender.send(message);
+            log.info("Email dựng sẵn đã được gửi thành công đến {}", Arrays.toString(message.getAllRecipients()));
+        } catch (Exception e) {
+            log.error("Lỗi khi gửi email dựng sẵn: {}", e.getMessage());
+            throw new RuntimeException("Không thể gửi email", e);
         }
     }
 
     /**
-     * Phương thức tạo QR code
+     * Gửi cùng một email cho người nhận chính và danh sách CC/BCC, chia thành nhiều email theo số người nhận
+     * tối đa của SMTP server. Địa chỉ trùng (không phân biệt hoa thường) được bỏ, nội dung email được dựng một lần.
+     * Người nhận chính nằm trong phần đầu; các phần sau vẫn hiển thị To là người nhận chính nhưng không gửi lại
+     * cho người đó. Các phần được gửi đồng thời trên các kết nối lấy từ pool SMTP, tối đa bằng số kết nối còn
+     * trống của pool; nếu luồng hiện tại đang giữ một kết nối (worker của hàng đợi gửi trong
+     * {@link PooledJavaMailSender#withConnection}) thì các phần được gửi lần lượt trên chính kết nối đó.
+     *
+     * @param visibleCc true nếu danh sách là CC (hiển thị trong header Cc của phần chứa họ), false nếu là BCC
+     * @throws RuntimeException nếu mọi phần đều gửi lỗi
      */
-    private byte[] generateQRCodeImage(String text, int width, int height) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height);
+    private RecipientFanOutResult fanOut(String to, List<String> others, boolean visibleCc, String subject,
+            String htmlContent, String errorMessage) {
+        InternetAddress primary;
+        PreparedMessage prepared;
+        MimeMessage template = mailSender.createMimeMessage();
+        try {
+            primary = new InternetAddress(to, true);
+            MimeMessageHelper helper = new MimeMessageHelper(template, true, "UTF-8");
+            helper.setSubject(subject);
+            helper.setText(htmlContent, true);
+            prepared = PreparedMessage.prepare(template);
+        } catch (Exception e) {
+            log.error("{}: {}", errorMessage, e.getMessage());
+            throw new RuntimeException(errorMessage, e);
+        }
+
+        // Bỏ trùng theo địa chỉ, giữ thứ tự; người nhận chính luôn đứng đầu
+        Map<String, InternetAddress> unique = new LinkedHashMap<>();
+        unique.put(primary.getAddress().toLowerCase(Locale.ROOT), primary);
+        List<String> invalid = new ArrayList<>();
+        int duplicates = 0;
+        for (String address : others != null ? others : List.<String>of()) {
+            if (address == null) {
+                invalid.add(null);
+                continue;
+            }
+            try {
+                InternetAddress parsed = new InternetAddress(address.trim(), true);
+                if (unique.putIfAbsent(parsed.getAddress().toLowerCase(Locale.ROOT), parsed) != null) {
+                    duplicates++;
+                }
+            } catch (AddressException e) {
+                invalid.add(address);
+            }
+        }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
+        List<InternetAddress> recipients = new ArrayList<>(unique.values());
+        String host = mailSender instanceof JavaMailSenderImpl sender ? sender.getHost() : null;
+        int chunkSize = recipientChunkProperties.resolve(host);
+        List<List<InternetAddress>> chunks = new ArrayList<>();
+        for (int from = 0; from < recipients.size(); from += chunkSize) {
+            chunks.add(recipients.subList(from, Math.min(from + chunkSize, recipients.size())));
+        }
+
+        InternetAddress[] toHeader = {primary};
+        MimeMessage[] messages = new MimeMessage[chunks.size()];
+        RecipientChunkResult[] results = new RecipientChunkResult[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            InternetAddress[] envelope = chunks.get(i).toArray(new InternetAddress[0]);
+            InternetAddress[] cc = visibleCc
+                    ? chunks.get(i).stream().filter(a -> a != primary).toArray(InternetAddress[]::new)
+                    : null;
+            try {
+                messages[i] = prepared.forEnvelope(template.getSession(), toHeader, cc, envelope);
+            } catch (MessagingException e) {
+                results[i] = chunkResult(i, chunks.get(i), e);
+            }
+        }
+
+        // Chia các phần cho các luồng, mỗi luồng gửi liên tiếp trên một kết nối SMTP
+        int concurrency = Math.max(1, Math.min(recipientChunkProperties.getConcurrency(), chunks.size()));
+        if (mailSender instanceof PooledJavaMailSender pooled) {
+            // Luồng khác không dùng được kết nối đang giữ, mượn thêm kết nối sẽ phải chờ pool khi nhiều worker
+            // cùng fan-out
+            concurrency = pooled.isConnectionPinned() ? 1
+                    : Math.max(1, Math.min(concurrency, pooled.getPool().getAvailableCount()));
+        }
+        Exception firstError = null;
+        Map<Object, Exception> failed = new ConcurrentHashMap<>();
+        if (concurrency == 1) {
+            sendGroup(Arrays.stream(messages).filter(Objects::nonNull).toArray(MimeMessage[]::new), failed);
+        } else {
+            sendConcurrently(messages, concurrency, failed);
+        }
+
+        for (int i = 0; i < chunks.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Exception error = failed.get(messages[i]);
+            results[i] = error == null
+                    ? new RecipientChunkResult(i, addresses(chunks.get(i)), BatchSendResult.Status.ACCEPTED, null, null)
+                    : chunkResult(i, chunks.get(i), error);
+            if (error != null && firstError == null) {
+                firstError = error;
+            }
+        }
+
+        RecipientFanOutResult result = new RecipientFanOutResult(recipients.size(), duplicates, invalid,
+                Arrays.asList(results));
+        if (result.getAcceptedChunks() == 0) {
+            log.error("{}: {}", errorMessage, firstError != null ? firstError.getMessage() : "không có phần nào");
+            throw new RuntimeException(errorMessage, firstError);
+        }
+        if (result.getRejectedChunks() > 0) {
+            log.warn("Gửi email đến {}: {}/{} phần bị từ chối", to, result.getRejectedChunks(), chunks.size());
+        }
+        return result;
+    }
+
+    private void sendConcurrently(MimeMessage[] messages, int concurrency, Map<Object, Exception> failed) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < concurrency; t++) {
+                int thread = t;
+                MimeMessage[] group = IntStream.range(0, messages.length)
+                        .filter(i -> i % concurrency == thread && messages[i] != null)
+                        .mapToObj(i -> messages[i])
+                        .toArray(MimeMessage[]::new);
+                executor.execute(() -> sendGroup(group, failed));
+            }
+        }
+    }
+
+    private void sendGroup(MimeMessage[] group, Map<Object, Exception> failed) {
+        if (group.length == 0) {
+            return;
+        }
+        try {
+            mailSender.send(group);
+        } catch (MailSendException e) {
+            if (!e.getFailedMessages().isEmpty()) {
+                failed.putAll(e.getFailedMessages());
+                return;
+            }
+            for (MimeMessage message : group) {
+                failed.put(message, e);
+            }
+        } catch (MailException e) {
+            for (MimeMessage message : group) {
+                failed.put(message, e);
+            }
+        }
+    }
+
+    private static RecipientChunkResult chunkResult(int index, List<InternetAddress> chunk, Exception error) {
+        int code = SmtpErrors.returnCode(error);
+        return new RecipientChunkResult(index, addresses(chunk), BatchSendResult.Status.REJECTED,
+                code > 0 ? code : null, SmtpErrors.reply(error));
+    }
 
-        return outputStream.toByteArray();
+    private static List<String> addresses(List<InternetAddress> chunk) {
+        return chunk.stream().map(InternetAddress::getAddress).toList();
     }
-}
\ No newline at end of file
+}
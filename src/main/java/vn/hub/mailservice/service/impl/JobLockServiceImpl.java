@@ -0,0 +1,78 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.repository.ScheduledLockRepository;
+import vn.hub.mailservice.service.JobLockService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Khóa phân tán dựa trên bảng scheduled_lock, dùng cho các job @Scheduled khi chạy nhiều instance
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLockServiceImpl implements JobLockService {
+
+    private final ScheduledLockRepository scheduledLockRepository;
+    private final SchedulingProperties properties;
+
+    @Override
+    public boolean tryLock(String name, Duration lockAtMostFor) {
+        long lockMicros = lockAtMostFor.toNanos() / 1000;
+        String nodeId = properties.getNodeId();
+        return scheduledLockRepository.insertIfAbsent(name, lockMicros, nodeId) > 0
+                || scheduledLockRepository.acquireIfExpired(name, lockMicros, nodeId) > 0;
+    }
+
+    @Override
+    public void unlock(String name, Duration lockAtLeastFor) {
+        scheduledLockRepository.release(name, lockAtLeastFor.toNanos() / 1000, properties.getNodeId());
+    }
+
+    @Override
+    public int runPartitioned(String jobName, LocalDate runDate, IntConsumer task) {
+        int partitions = getPartitions();
+        // Phần chạy xong giữ khóa tới hết ngày chạy (nhưng không ít hơn lockAtLeastFor)
+        Duration untilEndOfRunDate = Duration.between(LocalDateTime.now(), runDate.plusDays(1).atStartOfDay());
+        Duration holdAfterSuccess = untilEndOfRunDate.compareTo(properties.getLockAtLeastFor()) > 0
+                ? untilEndOfRunDate : properties.getLockAtLeastFor();
+        // Mỗi instance bắt đầu từ một phần ngẫu nhiên để các instance chạy cùng lúc ít tranh nhau cùng một khóa
+        int offset = ThreadLocalRandom.current().nextInt(partitions);
+        int ran = 0;
+        for (int i = 0; i < partitions; i++) {
+            int partition = (offset + i) % partitions;
+            String lockName = jobName + ":" + runDate + ":" + partition + "/" + partitions;
+            if (!tryLock(lockName, properties.getLockAtMostFor())) {
+                continue;
+            }
+            boolean completed = false;
+            try {
+                task.accept(partition);
+                completed = true;
+                ran++;
+            } catch (RuntimeException e) {
+                log.error("Job {} ngày {} lỗi ở phần {}: {}", jobName, runDate, partition, e.getMessage());
+            } finally {
+                unlock(lockName, completed ? holdAfterSuccess : properties.getLockAtLeastFor());
+            }
+        }
+        // Khóa của các ngày trước đã hết hạn, không cần giữ lại
+        scheduledLockRepository.deleteExpired(jobName + ":");
+        log.info("Job {} ngày {}: instance {} đã chạy {}/{} phần", jobName, runDate, properties.getNodeId(), ran,
+                partitions);
+        return ran;
+    }
+
+    @Override
+    public int getPartitions() {
+        return Math.max(1, properties.getPartitions());
+    }
+}
@@ -0,0 +1,113 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.hub.mailservice.config.LoginHistoryArchiveProperties;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.service.JobLockService;
+import vn.hub.mailservice.service.LoginHistoryArchiveService;
+import vn.hub.mailservice.util.LoginHistoryPartitions;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Quản lý partition theo tháng của login_history: luôn có sẵn partition cho các tháng tới
+ * và chuyển các tháng cũ sang login_history_archive rồi DROP PARTITION,
+ * nhờ vậy kích thước bảng đang dùng không tăng mãi theo thời gian.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginHistoryArchiveServiceImpl implements LoginHistoryArchiveService {
+
+    private static final String LOCK_NAME = "login-history-partitions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLockService jobLockService;
+    private final LoginHistoryArchiveProperties properties;
+    private final SchedulingProperties schedulingProperties;
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.login-history.archive.cron:0 30 2 * * *}")
+    public void maintainPartitions() {
+        if (!jobLockService.tryLock(LOCK_NAME, schedulingProperties.getLockAtMostFor())) {
+            return;
+        }
+        try {
+            List<String> partitions = listPartitions();
+            if (partitions.isEmpty()) {
+                log.warn("Bảng {} chưa được chia partition, bỏ qua", LoginHistoryPartitions.TABLE);
+                return;
+            }
+            createUpcomingPartitions(partitions);
+            archiveExpiredPartitions(partitions);
+        } catch (DataAccessException e) {
+            log.error("Lỗi khi bảo trì partition của {}: {}", LoginHistoryPartitions.TABLE, e.getMessage());
+        } finally {
+            jobLockService.unlock(LOCK_NAME, Duration.ZERO);
+        }
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION", String.class, LoginHistoryPartitions.TABLE);
+    }
+
+    /**
+     * Tách p_future thành các partition tháng còn thiếu; p_future bình thường không có dữ liệu nên thao tác nhanh
+     */
+    private void createUpcomingPartitions(List<String> partitions) {
+        YearMonth last = partitions.stream()
+                .map(LoginHistoryPartitions::month)
+                .flatMap(Optional::stream)
+                .max(YearMonth::compareTo)
+                .orElse(YearMonth.now().minusMonths(1));
+        YearMonth target = YearMonth.now().plusMonths(properties.getPartitionsAhead());
+        if (!last.isBefore(target)) {
+            return;
+        }
+
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(target); month = month.plusMonths(1)) {
+            definitions.add(LoginHistoryPartitions.definition(month));
+        }
+        definitions.add(LoginHistoryPartitions.futureDefinition());
+        jdbcTemplate.execute("ALTER TABLE " + LoginHistoryPartitions.TABLE + " REORGANIZE PARTITION "
+                + LoginHistoryPartitions.FUTURE_PARTITION + " INTO (" + String.join(", ", definitions) + ")");
+        log.info("Đã tạo {} partition mới cho {} tới tháng {}", definitions.size() - 1,
+                LoginHistoryPartitions.TABLE, target);
+    }
+
+    /**
+     * Chép dữ liệu của partition quá hạn sang bảng lưu trữ rồi xóa partition.
+     * INSERT IGNORE theo id nên chạy lại sau khi bị ngắt giữa chừng cũng không tạo bản ghi trùng.
+     */
+    private void archiveExpiredPartitions(List<String> partitions) {
+        YearMonth cutoff = YearMonth.now().minusMonths(properties.getRetentionMonths());
+        for (String partition : partitions) {
+            Optional<YearMonth> month = LoginHistoryPartitions.month(partition);
+            if (month.isEmpty() || !month.get().isBefore(cutoff)) {
+                continue;
+            }
+            int archived = jdbcTemplate.update("INSERT IGNORE INTO login_history_archive " +
+                    "(id, user_id, login_time, logout_time, working_minutes, is_active, archived_at) " +
+                    "SELECT id, user_id, login_time, logout_time, working_minutes, is_active, NOW() " +
+                    "FROM " + LoginHistoryPartitions.TABLE + " PARTITION (" + partition + ")");
+            jdbcTemplate.execute("ALTER TABLE " + LoginHistoryPartitions.TABLE + " DROP PARTITION " + partition);
+            log.info("Đã lưu trữ {} phiên đăng nhập của tháng {} và xóa partition {}", archived, month.get(),
+                    partition);
+        }
+    }
+}
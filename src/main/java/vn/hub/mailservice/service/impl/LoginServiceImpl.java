@@ -2,24 +2,22 @@ package vn.hub.mailservice.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import vn.hub.mailservice.entity.LoginHistory;
 import vn.hub.mailservice.entity.User;
-import vn.hub.mailservice.repository.LoginHistoryRepository;
+import vn.hub.mailservice.repository.LoginHistoryIdGenerator;
+import vn.hub.mailservice.repository.OpenSessionRepository;
 import vn.hub.mailservice.repository.UserRepository;
-import vn.hub.mailservice.service.EmailService;
+import vn.hub.mailservice.service.ActiveSessionRegistry;
+import vn.hub.mailservice.service.LoginEventWriter;
 import vn.hub.mailservice.service.LoginService;
-import vn.hub.mailservice.util.TemplateUtil;
+import vn.hub.mailservice.service.WorkingMinutesCounter;
 
-import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -31,12 +29,13 @@ import java.util.Optional;
 public class LoginServiceImpl implements LoginService {
 
     private final UserRepository userRepository;
-    private final LoginHistoryRepository loginHistoryRepository;
-    private final EmailService emailService;
-    private final TemplateUtil templateUtil;
+    private final OpenSessionRepository openSessionRepository;
+    private final ActiveSessionRegistry sessionRegistry;
+    private final WorkingMinutesCounter workingMinutesCounter;
+    private final LoginEventWriter loginEventWriter;
+    private final LoginHistoryIdGenerator idGenerator;
 
     private static final LocalTime WORK_END_TIME = LocalTime.of(19, 30); // 7:30 PM
-    private static final int REQUIRED_MINUTES = 480; // 8 hours = 480 minutes
 
     /**
      * Xử lý đăng nhập cho user
@@ -61,21 +60,54 @@ public class LoginServiceImpl implements LoginService {
             throw new RuntimeException("Mật khẩu không đúng");
         }
 
-        // Kiểm tra trạng thái tài khoản
-        if (!user.isActive()) {
+        // Kiểm tra trạng thái tài khoản từ DB: user trong cache có thể chưa thấy việc khóa tài khoản trên instance khác
+        if (!userRepository.findActiveById(user.getId()).orElse(false)) {
             throw new RuntimeException("Tài khoản đã bị khóa");
         }
 
-        // Kiểm tra xem người dùng đã đăng nhập chưa
-        LoginHistory activeSession = loginHistoryRepository.findByUserAndLogoutTimeIsNull(user)
-                .orElse(null);
-        if (activeSession != null) {
+        // Kiểm tra xem người dùng đã đăng nhập chưa, đồng thời giữ chỗ để login song song không tạo hai phiên
+        if (!sessionRegistry.reserve(username) && !(evictClosedSession(user) && sessionRegistry.reserve(username))) {
             throw new RuntimeException("Người dùng đã đăng nhập");
         }
 
+        // Giữ chỗ trong DB để login trên instance khác cũng không mở được phiên thứ hai. ID phiên được cấp trước
+        // nên chỗ giữ ghi luôn ID phiên bằng một câu INSERT; login_time làm tròn tới giây cho khớp cột DATETIME
+        LocalDateTime loginTime = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        long sessionId;
+        try {
+            sessionId = idGenerator.next();
+            openSessionRepository.claim(user.getId(), sessionId, loginTime);
+        } catch (DataIntegrityViolationException e) {
+            sessionRegistry.cancel(username);
+            throw new RuntimeException("Người dùng đã đăng nhập");
+        } catch (RuntimeException e) {
+            sessionRegistry.cancel(username);
+            throw e;
+        }
+
         // Tạo phiên đăng nhập mới
-        LoginHistory loginHistory = new LoginHistory(user, LocalDateTime.now());
-        return loginHistoryRepository.save(loginHistory);
+        try {
+            LoginHistory loginHistory = loginEventWriter.recordLogin(user, sessionId, loginTime);
+            sessionRegistry.confirm(loginHistory);
+            return loginHistory;
+        } catch (RuntimeException e) {
+            openSessionRepository.release(user.getId(), loginTime);
+            sessionRegistry.cancel(username);
+            throw e;
+        }
+    }
+
+    /**
+     * Phiên trong bộ nhớ có thể đã được đóng qua instance khác; nếu DB không còn phiên đang mở thì bỏ phiên đó
+     *
+     * @return true nếu đã bỏ phiên cũ trong bộ nhớ
+     */
+    private boolean evictClosedSession(User user) {
+        Optional<ActiveSessionRegistry.Session> cached = sessionRegistry.find(user.getUsername());
+        if (cached.isEmpty() || openSessionRepository.existsById(user.getId())) {
+            return false;
+        }
+        return sessionRegistry.remove(user.getUsername()).isPresent();
     }
 
     /**
@@ -93,17 +125,60 @@ public class LoginServiceImpl implements LoginService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Người dùng không tồn tại"));
 
-        // Tìm phiên đăng nhập active
-        LoginHistory loginHistory = loginHistoryRepository.findByUserAndLogoutTimeIsNull(user)
+        // Lấy phiên đăng nhập active khỏi danh sách phiên đang mở. Phiên trong bộ nhớ có thể đã được đóng
+        // qua instance khác, phiên mở trên instance khác thì chỉ có trong DB; chỉ một request logout trên mọi
+        // instance bỏ được phiên khỏi open_session
+        Optional<ActiveSessionRegistry.Session> cached = sessionRegistry.remove(user.getUsername())
+                .filter(this::releaseOpenSession);
+        ActiveSessionRegistry.Session session = cached
+                .or(() -> findOpenSession(user).filter(this::releaseOpenSession))
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiên đăng nhập"));
 
         // Cập nhật thời gian đăng xuất và tính thời gian làm việc
         LocalDateTime now = LocalDateTime.now();
+        int workingMinutes = (int) ChronoUnit.MINUTES.between(session.loginTime(), now);
+        boolean closed;
+        try {
+            closed = loginEventWriter.recordLogout(session, now, workingMinutes);
+        } catch (RuntimeException e) {
+            restoreOpenSession(session);
+            if (cached.isPresent()) {
+                sessionRegistry.restore(session);
+            }
+            throw e;
+        }
+        if (!closed) {
+            throw new RuntimeException("Không tìm thấy phiên đăng nhập");
+        }
+
+        LoginHistory loginHistory = session.toLoginHistory();
+        loginHistory.setUser(user);
         loginHistory.setLogoutTime(now);
-        loginHistory.setWorkingMinutes((int) ChronoUnit.MINUTES.between(loginHistory.getLoginTime(), now));
+        loginHistory.setWorkingMinutes(workingMinutes);
         loginHistory.setActive(false);
+        return loginHistory;
+    }
+
+    /**
+     * Phiên đang mở của user trong DB, dùng khi phiên được mở trên instance khác
+     */
+    private Optional<ActiveSessionRegistry.Session> findOpenSession(User user) {
+        return openSessionRepository.findById(user.getId())
+                .filter(open -> open.getLoginHistoryId() != null)
+                .map(open -> new ActiveSessionRegistry.Session(open.getLoginHistoryId(), user.getId(),
+                        user.getUsername(), open.getLoginTime()));
+    }
 
-        return loginHistoryRepository.save(loginHistory);
+    private boolean releaseOpenSession(ActiveSessionRegistry.Session session) {
+        return openSessionRepository.release(session.userId(), session.loginTime()) > 0;
+    }
+
+    private void restoreOpenSession(ActiveSessionRegistry.Session session) {
+        try {
+            openSessionRepository.claim(session.userId(), session.id(), session.loginTime());
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Không trả lại được phiên đang mở của {}: {}", session.username(), e.getMessage());
+        }
     }
 
     /**
@@ -115,13 +190,25 @@ public class LoginServiceImpl implements LoginService {
      */
     @Override
     public LoginHistory isUserLoggedIn(String username) {
-        // Tìm user theo username
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Người dùng không tồn tại"));
+        return findCurrentSession(user).map(ActiveSessionRegistry.Session::toLoginHistory).orElse(null);
+    }
 
-        // Tìm phiên đăng nhập active
-        return loginHistoryRepository.findByUserAndLogoutTimeIsNull(user)
-                .orElse(null);
+    /**
+     * Phiên đang mở của user theo open_session. Phiên trong bộ nhớ có thể đã được đóng qua instance khác
+     * nên luôn được đối chiếu với open_session, phiên không còn mở thì bị bỏ khỏi bộ nhớ.
+     * Đọc bộ nhớ trước DB: phiên chỉ được ghi vào bộ nhớ sau khi đã giữ chỗ trong open_session,
+     * nên phiên vừa login trên instance này không bị bỏ nhầm
+     */
+    private Optional<ActiveSessionRegistry.Session> findCurrentSession(User user) {
+        Optional<ActiveSessionRegistry.Session> cached = sessionRegistry.find(user.getUsername());
+        Optional<ActiveSessionRegistry.Session> open = findOpenSession(user);
+        if (cached.isPresent() && !cached.get().id().equals(open.map(ActiveSessionRegistry.Session::id)
+                .orElse(null))) {
+            sessionRegistry.evict(cached.get());
+        }
+        return open;
     }
 
     /**
@@ -137,51 +224,13 @@ public class LoginServiceImpl implements LoginService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Người dùng không tồn tại"));
 
-        // Lấy thời gian đầu ngày và cuối ngày
-        LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-
-        // Tính tổng thời gian làm việc
-        return loginHistoryRepository.calculateTotalWorkingMinutes(
-                user.getId(), startOfDay, endOfDay);
-    }
-
-    @Override
-    @Scheduled(cron = "0 0 21 * * *") // Chạy lúc 9 giờ tối hàng ngày
-    public void calculateAndNotifyWorkingHours() {
-        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-
-        List<LoginHistory> todayLogins = loginHistoryRepository.findAllByLoginTimeBetween(startOfDay, endOfDay);
-
-        // Nhóm theo username và tính tổng thời gian
-        Map<String, Integer> userWorkingMinutes = new HashMap<>();
-        for (LoginHistory login : todayLogins) {
-            userWorkingMinutes.merge(
-                    login.getUsername(),
-                    login.getWorkingMinutes() != null ? login.getWorkingMinutes() : 0,
-                    Integer::sum);
+        // Tổng của các phiên đã đăng xuất (tra theo khóa) cộng với thời gian của phiên đang mở
+        LocalDate today = LocalDate.now();
+        int minutes = workingMinutesCounter.getMinutes(user.getId(), today);
+        Optional<ActiveSessionRegistry.Session> openSession = findCurrentSession(user);
+        if (openSession.isPresent() && openSession.get().loginTime().toLocalDate().equals(today)) {
+            minutes += (int) ChronoUnit.MINUTES.between(openSession.get().loginTime(), LocalDateTime.now());
         }
-
-        // Gửi thông báo cho những người không đủ 8 tiếng
-        userWorkingMinutes.forEach((username, minutes) -> {
-            if (minutes < REQUIRED_MINUTES) {
-                sendWorkingHoursNotification(username, minutes);
-            }
-        });
-    }
-
-    private void sendWorkingHoursNotification(String username, int actualMinutes) {
-        int missingMinutes = REQUIRED_MINUTES - actualMinutes;
-        Map<String, String> variables = new HashMap<>();
-        variables.put("name", username);
-        variables.put("actualHours", String.format("%.2f", actualMinutes / 60.0));
-        variables.put("missingMinutes", String.valueOf(missingMinutes));
-
-        String htmlContent = templateUtil.processTemplate("templates/working-hours-notification.html", variables);
-        emailService.sendHtmlEmail(
-                username,
-                "Thông báo giờ làm việc không đủ",
-                htmlContent);
+        return minutes;
     }
-}
\ No newline at end of file
+}
@@ -6,81 +6,115 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboxMessage;
+import vn.hub.mailservice.mail.AttachmentStore;
+import vn.hub.mailservice.mail.StoredAttachment;
 import vn.hub.mailservice.service.EmailService;
+import vn.hub.mailservice.service.OutboxService;
 import vn.hub.mailservice.util.TemplateUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Gửi thông báo nghiệp vụ.
+ * Các thông báo không kèm file được ghi vào outbox trong giao dịch của nơi gọi và gửi sau khi commit.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
 
+    static final String PAYMENT_SUBJECT = "Yêu cầu thanh toán";
+    static final String PAYMENT_TEMPLATE = "templates/payment-email.html";
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
     private final EmailService emailService;
+    private final OutboxService outboxService;
     private final TemplateUtil templateUtil;
+    private final AttachmentStore attachmentStore;
 
     /**
      * Gửi thông báo đơn giản cho một người
      */
+    @Transactional
     public void sendSimpleNotification(String email, String name, String message, String actionUrl) {
         Map<String, String> variables = new HashMap<>();
         variables.put("name", name);
         variables.put("message", message);
         variables.put("actionUrl", actionUrl);
 
-        String htmlContent = templateUtil.processTemplate("templates/notification-email.html", variables);
-        emailService.sendHtmlEmail(email, "Thông báo mới", htmlContent);
+        outboxService.add(new OutboxMessage(EmailType.HTML, email, "Thông báo mới",
+                "templates/notification-email.html", variables));
     }
 
     /**
      * Gửi thông báo cho nhiều người sử dụng CC
      */
+    @Transactional
     public void sendNotificationToMultipleRecipients(String mainEmail, List<String> ccEmails, String message) {
         Map<String, String> variables = new HashMap<>();
         variables.put("name", "Quý khách");
         variables.put("message", message);
         variables.put("actionUrl", "https://example.com");
 
-        String htmlContent = templateUtil.processTemplate("templates/notification-email.html", variables);
-        emailService.sendHtmlEmailWithCC(mainEmail, ccEmails, "Thông báo mới", htmlContent);
+        OutboxMessage notification = new OutboxMessage(EmailType.CC, mainEmail, "Thông báo mới",
+                "templates/notification-email.html", variables);
+        notification.setCcList(ccEmails);
+        outboxService.add(notification);
     }
 
     /**
      * Gửi thông báo bí mật cho nhiều người sử dụng BCC
      */
+    @Transactional
     public void sendConfidentialNotification(String mainEmail, List<String> bccEmails, String message) {
         Map<String, String> variables = new HashMap<>();
         variables.put("name", "Quý khách");
         variables.put("message", message);
         variables.put("actionUrl", "https://example.com/confidential");
 
-        String htmlContent = templateUtil.processTemplate("templates/notification-email.html", variables);
-        emailService.sendHtmlEmailWithBCC(mainEmail, bccEmails, "Thông báo bảo mật", htmlContent);
+        OutboxMessage notification = new OutboxMessage(EmailType.BCC, mainEmail, "Thông báo bảo mật",
+                "templates/notification-email.html", variables);
+        notification.setBccList(bccEmails);
+        outboxService.add(notification);
     }
 
     /**
      * Gửi yêu cầu thanh toán với mã QR
      */
+    @Transactional
     public void sendPaymentRequest(String email, String customerName, String orderId,
             String serviceName, double amount, LocalDate dueDate,
             String paymentUrl, String qrCodeContent) throws MessagingException {
 
+        OutboxMessage paymentRequest = new OutboxMessage(EmailType.QRCODE, email, PAYMENT_SUBJECT,
+                PAYMENT_TEMPLATE, paymentVariables(customerName, orderId, serviceName, amount, dueDate, paymentUrl));
+        paymentRequest.setQrCodeContent(qrCodeContent);
+        outboxService.add(paymentRequest);
+    }
+
+    /**
+     * Biến của template yêu cầu thanh toán, dùng chung với gửi hàng loạt
+     */
+    static Map<String, String> paymentVariables(String customerName, String orderId, String serviceName,
+            double amount, LocalDate dueDate, String paymentUrl) {
         Map<String, String> variables = new HashMap<>();
         variables.put("customerName", customerName);
         variables.put("orderId", orderId);
         variables.put("serviceName", serviceName);
         variables.put("amount", String.format("%,.0f", amount));
-        variables.put("dueDate", dueDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+        variables.put("dueDate", dueDate.format(DUE_DATE_FORMAT));
         variables.put("paymentUrl", paymentUrl);
-
-        String htmlContent = templateUtil.processTemplate("templates/payment-email.html", variables);
-        emailService.sendEmailWithQRCode(email, "Yêu cầu thanh toán", htmlContent, qrCodeContent);
+        return variables;
     }
 
     /**
@@ -94,7 +128,31 @@ public class NotificationService {
         variables.put("actionUrl", "https://example.com/documents");
 
         String htmlContent = templateUtil.processTemplate("templates/notification-email.html", variables);
-        emailService.sendEmailWithPdfAttachment(email, "Tài liệu " + documentName, htmlContent, pdfFile);
+        // File được mã hóa một lần trong kho file đính kèm, gửi lại cùng file cho người khác không mã hóa lại
+        StoredAttachment attachment;
+        try {
+            attachment = attachmentStore.store(pdfFile.toPath(), "application/pdf");
+        } catch (IOException e) {
+            throw new MessagingException("Không thể đọc file " + pdfFile, e);
+        }
+        emailService.sendEmailWithStoredAttachment(email, "Tài liệu " + documentName, htmlContent,
+                attachment.id(), attachment.fileName());
+    }
+
+    /**
+     * Gửi tài liệu đã upload vào kho file đính kèm, email được ghi vào outbox và gửi sau khi commit
+     */
+    @Transactional
+    public void sendStoredDocument(String email, String name, String documentName, String attachmentId) {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("name", name);
+        variables.put("message", "Chúng tôi gửi đến bạn tài liệu " + documentName + " như đã yêu cầu.");
+        variables.put("actionUrl", "https://example.com/documents");
+
+        OutboxMessage document = new OutboxMessage(EmailType.PDF, email, "Tài liệu " + documentName,
+                "templates/notification-email.html", variables);
+        document.setAttachmentId(attachmentId);
+        outboxService.add(document);
     }
 
     /**
@@ -0,0 +1,85 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.config.OutboxProperties;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.entity.OutboxMessage;
+import vn.hub.mailservice.entity.OutboxStatus;
+import vn.hub.mailservice.exception.EmailQueueFullException;
+import vn.hub.mailservice.repository.OutboxMessageRepository;
+import vn.hub.mailservice.service.EmailQueueService;
+import vn.hub.mailservice.service.OutboxService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Outbox cho email nghiệp vụ.
+ * Bản ghi được khóa theo lô bằng SELECT ... FOR UPDATE SKIP LOCKED, chuyển sang hàng đợi gửi
+ * và đánh dấu PUBLISHED trong cùng một giao dịch, nên mỗi bản ghi chỉ được một instance xử lý.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final EmailQueueService emailQueueService;
+    private final OutboxProperties properties;
+
+    @Override
+    @Transactional
+    public OutboxMessage add(OutboxMessage message) {
+        message.setStatus(OutboxStatus.PENDING);
+        return outboxMessageRepository.save(message);
+    }
+
+    @Override
+    @Transactional
+    public List<OutboxMessage> addAll(List<OutboxMessage> messages) {
+        messages.forEach(message -> message.setStatus(OutboxStatus.PENDING));
+        return outboxMessageRepository.saveAll(messages);
+    }
+
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval:1000}")
+    public int relayPending() {
+        List<OutboxMessage> claimed = outboxMessageRepository.claimPending(properties.getBatchSize());
+        int relayed = 0;
+        for (OutboxMessage message : claimed) {
+            try {
+                // Hàng đợi chỉ giao email cho worker sau khi giao dịch này commit
+                OutboundEmail email = emailQueueService.enqueue(toOutboundEmail(message));
+                message.setStatus(OutboxStatus.PUBLISHED);
+                message.setPublishedAt(LocalDateTime.now());
+                message.setOutboundEmailId(email.getId());
+                relayed++;
+            } catch (EmailQueueFullException e) {
+                // Các bản ghi còn lại giữ PENDING, lần poll sau sẽ xử lý tiếp
+                log.debug("Hàng đợi gửi đang đầy, tạm dừng chuyển outbox");
+                break;
+            }
+        }
+        if (relayed > 0) {
+            log.info("Đã chuyển {} email từ outbox sang hàng đợi gửi", relayed);
+        }
+        return relayed;
+    }
+
+    private static OutboundEmail toOutboundEmail(OutboxMessage message) {
+        OutboundEmail email = new OutboundEmail(message.getType(), message.getTo(), message.getSubject(), null);
+        email.setCcList(message.getCcList());
+        email.setBccList(message.getBccList());
+        email.setTemplatePath(message.getTemplatePath());
+        email.setTemplateVariables(message.getTemplateVariables());
+        email.setQrCodeContent(message.getQrCodeContent());
+        email.setAttachmentId(message.getAttachmentId());
+        email.setAttachmentName(message.getAttachmentName());
+        return email;
+    }
+}
@@ -0,0 +1,83 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.dto.TeamWorkingHoursReport;
+import vn.hub.mailservice.dto.UserWorkingHoursReport;
+import vn.hub.mailservice.entity.ReportPeriod;
+import vn.hub.mailservice.repository.WorkingMinutesRollupRepository;
+import vn.hub.mailservice.service.WorkingHoursReportService;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class WorkingHoursReportServiceImpl implements WorkingHoursReportService {
+
+    private static final String CSV_HEADER = "username,full_name,team,period,period_start,minutes,hours\r\n";
+
+    private final WorkingMinutesRollupRepository rollupRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<UserWorkingHoursReport> findUserReport(ReportPeriod period, LocalDate date, String team, int page,
+            int size) {
+        return rollupRepository.findUserReport(period, period.startOf(date), team, PageRequest.of(page, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<TeamWorkingHoursReport> findTeamReport(ReportPeriod period, LocalDate date, int page, int size) {
+        return rollupRepository.findTeamReport(period, period.startOf(date), PageRequest.of(page, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUserReportCsv(ReportPeriod period, LocalDate date, String team, Writer writer)
+            throws IOException {
+        LocalDate periodStart = period.startOf(date);
+        writer.write(CSV_HEADER);
+        try (Stream<UserWorkingHoursReport> rows = rollupRepository.streamUserReport(period, periodStart, team)) {
+            Iterator<UserWorkingHoursReport> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                UserWorkingHoursReport row = iterator.next();
+                writer.write(csv(row.getUsername()));
+                writer.write(',');
+                writer.write(csv(row.getFullName()));
+                writer.write(',');
+                writer.write(csv(row.getTeam()));
+                writer.write(',');
+                writer.write(period.name());
+                writer.write(',');
+                writer.write(periodStart.toString());
+                writer.write(',');
+                writer.write(String.valueOf(row.getMinutes()));
+                writer.write(',');
+                writer.write(String.valueOf(row.getHours()));
+                writer.write("\r\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Bao giá trị trong dấu nháy kép nếu có dấu phẩy, nháy kép hoặc xuống dòng (RFC 4180)
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,67 @@
+package vn.hub.mailservice.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.repository.WorkingMinutesRollupRepository;
+import vn.hub.mailservice.service.JobLockService;
+import vn.hub.mailservice.service.WorkingMinutesRollupService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Duy trì bảng tổng theo tuần/tháng từ daily_working_minutes.
+ * Mỗi lần chạy chỉ tính lại các kỳ có ngày thay đổi (updated_at) kể từ mốc của lần trước,
+ * lần đầu (chưa có mốc) tính lại toàn bộ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkingMinutesRollupServiceImpl implements WorkingMinutesRollupService {
+
+    private static final String LOCK_NAME = "working-minutes-rollup";
+    private static final String WATERMARK_NAME = "working_minutes_rollup";
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+    /**
+     * Lùi mốc một khoảng để không bỏ sót dòng có updated_at trước mốc nhưng commit sau lần chạy trước.
+     * Tính lại một kỳ nhiều lần vẫn cho cùng kết quả
+     */
+    private static final Duration OVERLAP = Duration.ofMinutes(5);
+
+    private final WorkingMinutesRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final SchedulingProperties schedulingProperties;
+
+    @Override
+    @Scheduled(cron = "${app.working-minutes.rollup-cron:0 */15 * * * *}")
+    public void compact() {
+        if (!jobLockService.tryLock(LOCK_NAME, schedulingProperties.getLockAtMostFor())) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = jdbcTemplate.queryForObject("SELECT NOW()", LocalDateTime.class);
+                List<LocalDateTime> watermark = jdbcTemplate.queryForList(
+                        "SELECT processed_until FROM rollup_watermark WHERE name = ?", LocalDateTime.class,
+                        WATERMARK_NAME);
+                LocalDateTime since = watermark.isEmpty() ? BEGINNING : watermark.get(0).minus(OVERLAP);
+
+                int weeks = rollupRepository.rollupWeeks(since);
+                int months = rollupRepository.rollupMonths(since);
+                jdbcTemplate.update("INSERT INTO rollup_watermark (name, processed_until) VALUES (?, ?) " +
+                        "ON DUPLICATE KEY UPDATE processed_until = VALUES(processed_until)", WATERMARK_NAME, now);
+                log.info("Đã tổng hợp thời gian làm việc từ {}: {} dòng tuần, {} dòng tháng", since, weeks, months);
+            });
+        } finally {
+            jobLockService.unlock(LOCK_NAME, Duration.ZERO);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package vn.hub.mailservice.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.LoginEventProperties;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.service.ActiveSessionRegistry;
+import vn.hub.mailservice.service.LoginEventWriter;
+import vn.hub.mailservice.service.WorkingMinutesCounter;
+import vn.hub.mailservice.util.LoginEventJournal;
+import vn.hub.mailservice.util.LoginEventJournal.Event;
+import vn.hub.mailservice.util.LoginEventJournal.EventType;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi sau (write-behind): login/logout chỉ chờ sự kiện được ghi vào journal trên đĩa,
+ * một luồng nền gom các sự kiện và ghi xuống DB theo lô JDBC trong một giao dịch.
+ * <p>
+ * ID phiên được cấp trước từ bộ sinh ID pooled (LoginServiceImpl) nên logout có thể tham chiếu phiên chưa ghi xuống DB;
+ * login và logout của cùng phiên nằm trong một lô được gộp thành một câu INSERT.
+ * Logout cũng được ghi bằng INSERT ... ON DUPLICATE KEY UPDATE chứ không phải UPDATE: khi login còn nằm trong journal
+ * của instance khác, logout tạo trước dòng đã đóng và login ghi sau không mở lại phiên (chỉ bổ sung giờ logout còn
+ * thiếu, is_active chỉ giữ TRUE khi cả hai cùng TRUE), nên logout không bị mất dù hai sự kiện xuống DB theo thứ tự nào.
+ * Các câu lệnh đều ghi lại được nhiều lần (tính lại tổng theo ngày thay vì cộng dồn), nên khi khởi động lại chỉ cần
+ * ghi lại toàn bộ journal.
+ * Các lỗi khác (vd chưa có partition cho login_time) làm cả lô thất bại, sự kiện vẫn nằm trong journal và được ghi lại.
+ * Dữ liệu trong DB (báo cáo, tổng phút) đi sau request vài trăm mili giây, trạng thái đăng nhập vẫn
+ * lấy từ {@link ActiveSessionRegistry} nên không bị ảnh hưởng.
+ */
+@Component("loginEventWriter")
+@ConditionalOnProperty(prefix = "app.login-events", name = "write-behind", havingValue = "true")
+@Slf4j
+public class WriteBehindLoginEventWriter implements LoginEventWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO login_history " +
+            "(id, user_id, login_time, logout_time, working_minutes, is_active) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE logout_time = COALESCE(logout_time, VALUES(logout_time)), " +
+            "working_minutes = COALESCE(working_minutes, VALUES(working_minutes)), " +
+            "is_active = is_active AND VALUES(is_active)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkingMinutesCounter workingMinutesCounter;
+    private final LoginEventProperties properties;
+
+    private final BlockingQueue<Pending> buffer;
+    // Các sự kiện đã ghi journal nhưng chưa ghi DB, chỉ luồng ghi truy cập
+    private final List<Event> unflushed = new ArrayList<>();
+    private volatile int unflushedCount;
+    private long oldestUnflushedAt;
+    private long retryAt;
+
+    private final Counter flushedEvents;
+    private final Timer flushTimer;
+
+    private LoginEventJournal journal;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public WriteBehindLoginEventWriter(JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, WorkingMinutesCounter workingMinutesCounter,
+            LoginEventProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.workingMinutesCounter = workingMinutesCounter;
+        this.properties = properties;
+        this.buffer = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        Gauge.builder("login.events.pending", this, writer -> writer.buffer.size() + writer.unflushedCount)
+                .description("Số sự kiện login/logout chưa ghi xuống DB")
+                .register(meterRegistry);
+        this.flushedEvents = Counter.builder("login.events.flushed")
+                .description("Số sự kiện login/logout đã ghi xuống DB")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("login.events.flush")
+                .description("Thời gian ghi một lô sự kiện login/logout xuống DB")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ghi nốt các sự kiện còn trong journal từ lần chạy trước rồi mới nhận sự kiện mới,
+     * để danh sách phiên đang mở nạp từ DB là đầy đủ
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        journal = LoginEventJournal.open(properties.getJournalDir());
+        List<Event> recovered = journal.recovered();
+        if (!recovered.isEmpty()) {
+            write(recovered);
+            journal.reset();
+            log.info("Đã ghi lại {} sự kiện đăng nhập còn trong {}", recovered.size(), journal.getFile());
+        }
+        running = true;
+        writerThread = Thread.ofPlatform().name("login-event-writer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        // Không ngắt luồng ghi: ngắt khi đang ghi FileChannel sẽ đóng luôn file journal
+        running = false;
+        writerThread.join();
+        // Sự kiện chưa kịp ghi journal thì báo lỗi cho request đang chờ
+        List<Pending> rejected = new ArrayList<>();
+        buffer.drainTo(rejected);
+        IllegalStateException stopped = new IllegalStateException("Đã dừng ghi sự kiện đăng nhập");
+        rejected.forEach(pending -> pending.journaled().completeExceptionally(stopped));
+        journal.close();
+    }
+
+    @Override
+    public LoginHistory recordLogin(User user, long id, LocalDateTime loginTime) {
+        LoginHistory loginHistory = new LoginHistory(user, loginTime);
+        loginHistory.setId(id);
+        append(Event.login(loginHistory.getId(), user.getId(), loginTime));
+        return loginHistory;
+    }
+
+    /**
+     * Luôn trả true: phiên được đóng khi lô chứa logout ghi xuống DB, kể cả khi login chưa được ghi
+     */
+    @Override
+    public boolean recordLogout(ActiveSessionRegistry.Session session, LocalDateTime logoutTime,
+            int workingMinutes) {
+        append(Event.logout(session.id(), session.userId(), session.loginTime(), logoutTime, workingMinutes));
+        return true;
+    }
+
+    /**
+     * Đưa sự kiện vào bộ đệm và chờ tới khi đã ghi xuống journal
+     */
+    private void append(Event event) {
+        if (!running) {
+            throw new IllegalStateException("Đã dừng ghi sự kiện đăng nhập");
+        }
+        Pending pending = new Pending(event, new CompletableFuture<>());
+        try {
+            buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bị ngắt khi chờ ghi sự kiện đăng nhập", e);
+        }
+        try {
+            pending.journaled().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Không ghi được sự kiện đăng nhập: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(properties.getBatchSize());
+        long flushIntervalMillis = properties.getFlushInterval().toMillis();
+        while (running || (!buffer.isEmpty() && unflushed.size() < properties.getCapacity())) {
+            try {
+                if (unflushed.size() >= properties.getCapacity()) {
+                    // DB lỗi lâu và đã đầy: ngừng nhận thêm, login/logout phải chờ ở bộ đệm
+                    Thread.sleep(Math.max(1, retryAt - System.currentTimeMillis()));
+                } else {
+                    Pending first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        buffer.drainTo(batch, Math.min(properties.getBatchSize(),
+                                properties.getCapacity() - unflushed.size()) - 1);
+                        appendToJournal(batch);
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Bị ngắt từ bên ngoài: ghi nốt phần đang có rồi dừng
+                running = false;
+            }
+            if (isFlushDue(flushIntervalMillis)) {
+                flushUnflushed();
+            }
+        }
+        if (!unflushed.isEmpty()) {
+            // Lần ghi cuối khi dừng, nếu lỗi thì sự kiện vẫn nằm trong journal cho lần khởi động sau
+            flushUnflushed();
+        }
+    }
+
+    private void appendToJournal(List<Pending> batch) {
+        List<Event> events = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            events.add(pending.event());
+        }
+        try {
+            journal.append(events);
+        } catch (IOException e) {
+            log.error("Không ghi được {} sự kiện đăng nhập vào journal: {}", events.size(), e.getMessage());
+            batch.forEach(pending -> pending.journaled().completeExceptionally(e));
+            return;
+        }
+        if (unflushed.isEmpty()) {
+            oldestUnflushedAt = System.currentTimeMillis();
+        }
+        unflushed.addAll(events);
+        unflushedCount = unflushed.size();
+        batch.forEach(pending -> pending.journaled().complete(null));
+    }
+
+    /**
+     * Ghi khi đủ lô, khi sự kiện cũ nhất đã chờ quá flushInterval, hoặc ngay khi bộ đệm rỗng (tải thấp)
+     */
+    private boolean isFlushDue(long flushIntervalMillis) {
+        if (unflushed.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < retryAt) {
+            return false;
+        }
+        return unflushed.size() >= properties.getBatchSize() || buffer.isEmpty() || !running
+                || now - oldestUnflushedAt >= flushIntervalMillis;
+    }
+
+    private void flushUnflushed() {
+        try {
+            flushTimer.record(() -> write(unflushed));
+        } catch (RuntimeException e) {
+            retryAt = System.currentTimeMillis() + properties.getRetryBackoff().toMillis();
+            log.error("Không ghi được {} sự kiện đăng nhập xuống DB, thử lại sau {}: {}", unflushed.size(),
+                    properties.getRetryBackoff(), e.getMessage());
+            return;
+        }
+        flushedEvents.increment(unflushed.size());
+        unflushed.clear();
+        unflushedCount = 0;
+        retryAt = 0;
+        try {
+            journal.reset();
+        } catch (IOException e) {
+            // Các sự kiện đã có trong DB, ghi lại khi khởi động cũng không làm sai dữ liệu
+            log.warn("Không xóa được journal {}: {}", journal.getFile(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi một lô sự kiện trong một giao dịch: INSERT ... ON DUPLICATE KEY UPDATE các phiên mới và các phiên được đóng,
+     * rồi tính lại tổng phút theo ngày của các user vừa logout
+     */
+    private void write(List<Event> events) {
+        Map<Long, Object[]> inserts = new LinkedHashMap<>();
+        Set<Long> loggedOutUsers = new HashSet<>();
+        LocalDate fromDate = null;
+        LocalDate toDate = null;
+
+        for (Event event : events) {
+            if (event.type() == EventType.LOGIN) {
+                // Không ghi đè logout của cùng phiên đã có trong lô
+                inserts.putIfAbsent(event.sessionId(), new Object[]{event.sessionId(), event.userId(),
+                        event.loginTime(), null, null, true});
+                continue;
+            }
+            // Ghi luôn trạng thái đã đóng, dù phiên đã có trong DB, trong lô này hay chưa ghi ở đâu cả
+            inserts.put(event.sessionId(), new Object[]{event.sessionId(), event.userId(), event.loginTime(),
+                    event.logoutTime(), event.workingMinutes(), false});
+            loggedOutUsers.add(event.userId());
+            LocalDate workDate = event.loginTime().toLocalDate();
+            fromDate = fromDate == null || workDate.isBefore(fromDate) ? workDate : fromDate;
+            toDate = toDate == null || workDate.isAfter(toDate) ? workDate : toDate;
+        }
+
+        LocalDate refreshFrom = fromDate;
+        LocalDate refreshTo = toDate;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, new ArrayList<>(inserts.values()));
+            }
+            if (!loggedOutUsers.isEmpty()) {
+                workingMinutesCounter.refresh(loggedOutUsers, refreshFrom, refreshTo.plusDays(1));
+            }
+        });
+    }
+
+    private record Pending(Event event, CompletableFuture<Void> journaled) {
+    }
+}
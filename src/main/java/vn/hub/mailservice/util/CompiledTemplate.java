@@ -0,0 +1,121 @@
+package vn.hub.mailservice.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template HTML đã được phân tích sẵn thành các đoạn văn bản cố định xen kẽ với các biến ${...}.
+ * Phân tích một lần khi nạp template, mỗi lần render chỉ còn ghép chuỗi.
+ */
+public final class CompiledTemplate {
+
+    /**
+     * Ước lượng độ dài trung bình của giá trị một biến khi cấp phát bộ đệm
+     */
+    private static final int ESTIMATED_VARIABLE_LENGTH = 16;
+
+    private final String source;
+    // literals.length == variables.length + 1: literal[0] var[0] literal[1] var[1] ... literal[n]
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledTemplate(String source, String[] literals, String[] variables) {
+        this.source = source;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Phân tích nội dung template, biến có dạng ${tenBien}
+     *
+     * @param source nội dung template
+     * @return template đã phân tích
+     */
+    public static CompiledTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+
+        int literalStart = 0;
+        int searchFrom = 0;
+        while (true) {
+            int open = source.indexOf("${", searchFrom);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf('}', open + 2);
+            if (close < 0) {
+                break;
+            }
+            if (close == open + 2) {
+                // "${}" không phải biến, giữ nguyên như văn bản
+                searchFrom = open + 1;
+                continue;
+            }
+            literals.add(source.substring(literalStart, open));
+            variables.add(source.substring(open + 2, close));
+            literalStart = close + 1;
+            searchFrom = literalStart;
+        }
+        literals.add(source.substring(literalStart));
+
+        return new CompiledTemplate(source, literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    /**
+     * Thay thế các biến bằng giá trị tương ứng, biến không có giá trị được thay bằng chuỗi rỗng
+     *
+     * @param values map chứa giá trị các biến
+     * @return nội dung đã render
+     */
+    public String render(Map<String, String> values) {
+        if (values == null || values.isEmpty()) {
+            return source;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + variables.length * ESTIMATED_VARIABLE_LENGTH);
+        for (int i = 0; i < variables.length; i++) {
+            builder.append(literals[i]);
+            String value = values.get(variables[i]);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+        builder.append(literals[variables.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Render trực tiếp ra Writer, không tạo chuỗi kết quả trung gian
+     *
+     * @param values map chứa giá trị các biến
+     * @param out    nơi ghi nội dung đã render
+     */
+    public void render(Map<String, String> values, Writer out) throws IOException {
+        if (values == null || values.isEmpty()) {
+            out.write(source);
+            return;
+        }
+
+        for (int i = 0; i < variables.length; i++) {
+            out.write(literals[i]);
+            String value = values.get(variables[i]);
+            if (value != null) {
+                out.write(value);
+            }
+        }
+        out.write(literals[variables.length]);
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
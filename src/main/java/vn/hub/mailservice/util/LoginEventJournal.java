@@ -0,0 +1,173 @@
+package vn.hub.mailservice.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * File journal chỉ ghi nối thêm cho các sự kiện login/logout chưa được ghi xuống DB.
+ * Mỗi sự kiện là một dòng kèm CRC32, append() chỉ trả về sau khi dữ liệu đã được force xuống đĩa.
+ * Khi mở lại sau khi tiến trình bị dừng đột ngột, dòng cuối ghi dở bị cắt bỏ và các dòng còn lại được trả về
+ * để ghi tiếp xuống DB.
+ */
+@Slf4j
+public class LoginEventJournal implements Closeable {
+
+    private static final String FILE_NAME = "login-events.journal";
+    private static final char SEPARATOR = ',';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<Event> recovered;
+
+    private LoginEventJournal(Path file, FileChannel channel, List<Event> recovered) {
+        this.file = file;
+        this.channel = channel;
+        this.recovered = recovered;
+    }
+
+    /**
+     * Mở (hoặc tạo) journal trong thư mục, đọc lại các sự kiện còn sót từ lần chạy trước
+     */
+    public static LoginEventJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            byte[] content = Files.readAllBytes(file);
+            int end = content.length;
+            while (end > 0 && content[end - 1] != '\n') {
+                end--;
+            }
+            if (end < content.length) {
+                log.warn("Cắt bỏ {} byte ghi dở ở cuối {}", content.length - end, file);
+                channel.truncate(end);
+            }
+            channel.position(end);
+            return new LoginEventJournal(file, channel, parse(new String(content, 0, end, StandardCharsets.UTF_8)));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Các sự kiện đọc được khi mở journal
+     */
+    public List<Event> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Ghi nối các sự kiện và force xuống đĩa
+     */
+    public void append(List<Event> events) throws IOException {
+        StringBuilder builder = new StringBuilder(events.size() * 64);
+        for (Event event : events) {
+            String line = format(event);
+            builder.append(line).append(SEPARATOR).append(Long.toHexString(checksum(line))).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Xóa toàn bộ journal sau khi mọi sự kiện đã ghi xuống DB
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static List<Event> parse(String content) {
+        List<Event> events = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int separator = line.lastIndexOf(SEPARATOR);
+            try {
+                String payload = line.substring(0, separator);
+                if (Long.parseLong(line.substring(separator + 1), 16) != checksum(payload)) {
+                    throw new IllegalArgumentException("Sai checksum");
+                }
+                events.add(parseEvent(payload));
+            } catch (RuntimeException e) {
+                log.warn("Bỏ qua dòng journal không hợp lệ: {}", line);
+            }
+        }
+        return events;
+    }
+
+    private static String format(Event event) {
+        if (event.type() == EventType.LOGIN) {
+            return "L," + event.sessionId() + SEPARATOR + event.userId() + SEPARATOR + event.loginTime();
+        }
+        return "O," + event.sessionId() + SEPARATOR + event.userId() + SEPARATOR + event.loginTime()
+                + SEPARATOR + event.logoutTime() + SEPARATOR + event.workingMinutes();
+    }
+
+    private static Event parseEvent(String payload) {
+        String[] fields = payload.split(String.valueOf(SEPARATOR));
+        long sessionId = Long.parseLong(fields[1]);
+        long userId = Long.parseLong(fields[2]);
+        LocalDateTime loginTime = LocalDateTime.parse(fields[3]);
+        return switch (fields[0]) {
+            case "L" -> Event.login(sessionId, userId, loginTime);
+            case "O" -> Event.logout(sessionId, userId, loginTime, LocalDateTime.parse(fields[4]),
+                    Integer.parseInt(fields[5]));
+            default -> throw new IllegalArgumentException("Loại sự kiện không hợp lệ: " + fields[0]);
+        };
+    }
+
+    private static long checksum(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    public enum EventType {
+        LOGIN, LOGOUT
+    }
+
+    /**
+     * Một lần login hoặc logout, logout mang theo login_time để tìm đúng partition của phiên
+     */
+    public record Event(EventType type, long sessionId, long userId, LocalDateTime loginTime,
+            LocalDateTime logoutTime, Integer workingMinutes) {
+
+        public static Event login(long sessionId, long userId, LocalDateTime loginTime) {
+            return new Event(EventType.LOGIN, sessionId, userId, loginTime, null, null);
+        }
+
+        public static Event logout(long sessionId, long userId, LocalDateTime loginTime, LocalDateTime logoutTime,
+                int workingMinutes) {
+            return new Event(EventType.LOGOUT, sessionId, userId, loginTime, logoutTime, workingMinutes);
+        }
+    }
+}
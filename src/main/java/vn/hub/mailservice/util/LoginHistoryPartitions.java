@@ -0,0 +1,49 @@
+package vn.hub.mailservice.util;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quy ước đặt tên và định nghĩa partition theo tháng của bảng login_history.
+ * Partition pYYYYMM chứa các phiên có login_time trong tháng đó, p_future chứa phần còn lại (MAXVALUE).
+ */
+public final class LoginHistoryPartitions {
+
+    public static final String TABLE = "login_history";
+    public static final String FUTURE_PARTITION = "p_future";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final Pattern NAME_PATTERN = Pattern.compile("p(\\d{4})(\\d{2})");
+
+    private LoginHistoryPartitions() {
+    }
+
+    public static String name(YearMonth month) {
+        return month.format(NAME_FORMAT);
+    }
+
+    /**
+     * Tháng của partition, rỗng nếu không phải partition theo tháng (ví dụ p_future)
+     */
+    public static Optional<YearMonth> month(String partitionName) {
+        Matcher matcher = NAME_PATTERN.matcher(partitionName);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+    }
+
+    /**
+     * Định nghĩa partition của một tháng dùng trong PARTITION BY RANGE COLUMNS (login_time)
+     */
+    public static String definition(YearMonth month) {
+        return "PARTITION " + name(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    public static String futureDefinition() {
+        return "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)";
+    }
+}
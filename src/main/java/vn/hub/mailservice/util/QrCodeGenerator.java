@@ -0,0 +1,74 @@
+package vn.hub.mailservice.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.QRCodeWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import vn.hub.mailservice.config.QrCodeProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Tạo ảnh PNG của QR code. Ảnh được cache theo SHA-256 của nội dung, nên cùng một link thanh toán
+ * gửi nhiều lần (nhắc lại, bản CC) chỉ render một lần. Cache giới hạn theo tổng số byte của ảnh.
+ */
+@Component
+public class QrCodeGenerator {
+
+    private final QrCodeProperties properties;
+    private final QRCodeWriter writer = new QRCodeWriter();
+    private final Map<EncodeHintType, Object> hints;
+    private final Cache<String, byte[]> cache;
+
+    public QrCodeGenerator(QrCodeProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hints = Map.of(
+                EncodeHintType.ERROR_CORRECTION, properties.getErrorCorrection(),
+                EncodeHintType.MARGIN, properties.getMargin());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getCacheMaxSize().toBytes())
+                .weigher((String key, byte[] png) -> key.length() + png.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "qrcode");
+    }
+
+    /**
+     * Ảnh PNG của QR code, mảng trả về được dùng chung giữa các lần gọi nên không được sửa
+     *
+     * @param content nội dung mã hóa trong QR code
+     */
+    public byte[] generatePng(String content) {
+        return cache.get(sha256(content), key -> render(content));
+    }
+
+    /**
+     * Render không qua cache
+     */
+    public byte[] render(String content) {
+        try {
+            return QrPngEncoder.encode(writer.encode(content, BarcodeFormat.QR_CODE, properties.getSize(),
+                    properties.getSize(), hints));
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Không thể tạo QR code: " + e.getMessage(), e);
+        }
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package vn.hub.mailservice.util;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Ghi BitMatrix thẳng ra PNG đen trắng 1 bit/pixel, không tạo BufferedImage và không qua ImageIO.
+ * Các dòng giống dòng phía trên (mỗi module QR lặp lại nhiều dòng pixel) được ghi bằng filter Up
+ * thành toàn byte 0 nên nén rất nhanh và rất nhỏ.
+ */
+public final class QrPngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte FILTER_NONE = 0;
+    private static final byte FILTER_UP = 2;
+    private static final byte BIT_DEPTH = 1;
+    private static final byte COLOR_TYPE_GRAYSCALE = 0;
+
+    private QrPngEncoder() {
+    }
+
+    /**
+     * @param matrix ma trận điểm, bit bật là điểm đen
+     * @return nội dung file PNG
+     */
+    public static byte[] encode(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+
+        // Dữ liệu ảnh chưa nén: mỗi dòng gồm 1 byte filter và các byte điểm ảnh
+        byte[] raw = new byte[height * (rowBytes + 1)];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        BitArray row = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            Arrays.fill(current, (byte) 0);
+            for (int x = 0; x < width; x++) {
+                if (!row.get(x)) {
+                    // PNG xám 1 bit: 1 là trắng
+                    current[x >>> 3] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+            int offset = y * (rowBytes + 1);
+            if (y > 0 && Arrays.equals(current, previous)) {
+                // filter Up: hiệu với dòng trên đều bằng 0, các byte trong raw đã là 0 sẵn
+                raw[offset] = FILTER_UP;
+            } else {
+                raw[offset] = FILTER_NONE;
+                System.arraycopy(current, 0, raw, offset + 1, rowBytes);
+            }
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128 + raw.length / 8);
+        out.writeBytes(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_GRAYSCALE;
+        // compression, filter, interlace đều là 0
+        writeChunk(out, "IHDR", header, header.length);
+        byte[] compressed = deflate(raw);
+        writeChunk(out, "IDAT", compressed, compressed.length);
+        writeChunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        out.write(header, 0, 8);
+        out.write(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(trailer, 0, 4);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,163 @@
+package vn.hub.mailservice.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc lần lượt từng dòng danh sách người nhận (CSV hoặc NDJSON) thành map biến cho template.
+ * Chỉ giữ một dòng trong bộ nhớ tại một thời điểm.
+ */
+public abstract class RecipientRowReader implements Closeable {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    protected final BufferedReader reader;
+
+    protected RecipientRowReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    public static RecipientRowReader open(BufferedReader reader, Format format, ObjectMapper objectMapper)
+            throws IOException {
+        return format == Format.NDJSON ? new NdjsonReader(reader, objectMapper) : new CsvReader(reader);
+    }
+
+    /**
+     * Xác định định dạng theo tên file, mặc định là CSV
+     */
+    public static Format detectFormat(String fileName) {
+        if (fileName != null) {
+            String lower = fileName.toLowerCase();
+            if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+                return Format.NDJSON;
+            }
+        }
+        return Format.CSV;
+    }
+
+    /**
+     * Đọc dòng tiếp theo
+     *
+     * @return map tên cột - giá trị, null nếu đã hết dữ liệu
+     */
+    public abstract Map<String, String> next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * CSV có dòng tiêu đề, hỗ trợ giá trị trong dấu ngoặc kép (không hỗ trợ xuống dòng trong giá trị)
+     */
+    private static class CsvReader extends RecipientRowReader {
+
+        private final List<String> headers;
+
+        CsvReader(BufferedReader reader) throws IOException {
+            super(reader);
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("File CSV không có dòng tiêu đề");
+            }
+            // Bỏ BOM nếu file được lưu từ Excel
+            if (headerLine.startsWith("\uFEFF")) {
+                headerLine = headerLine.substring(1);
+            }
+            this.headers = parseLine(headerLine).stream().map(String::trim).toList();
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            List<String> values = parseLine(line);
+            Map<String, String> row = new HashMap<>(headers.size() * 2);
+            for (int i = 0; i < headers.size() && i < values.size(); i++) {
+                row.put(headers.get(i), values.get(i));
+            }
+            return row;
+        }
+
+        private static List<String> parseLine(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+    }
+
+    /**
+     * Mỗi dòng là một JSON object, giá trị không phải chuỗi được chuyển thành chuỗi
+     */
+    private static class NdjsonReader extends RecipientRowReader {
+
+        private final ObjectMapper objectMapper;
+
+        NdjsonReader(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            JsonNode node = objectMapper.readTree(line);
+            Map<String, String> row = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                row.put(field.getKey(), field.getValue().isValueNode()
+                        ? field.getValue().asText()
+                        : field.getValue().toString());
+            }
+            return row;
+        }
+    }
+}
@@ -1,18 +1,27 @@
 package vn.hub.mailservice.util;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
+import vn.hub.mailservice.config.TemplateProperties;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
+@Slf4j
 public class TemplateUtil {
 
+    private final TemplateProperties properties;
+    private final Map<String, CachedTemplate> cache = new ConcurrentHashMap<>();
+
+    public TemplateUtil(TemplateProperties properties) {
+        this.properties = properties;
+    }
+
     /**
      * Đọc và xử lý file template HTML
      *
@@ -21,40 +30,70 @@ public class TemplateUtil {
      * @return nội dung HTML đã được xử lý
      */
     public String processTemplate(String templatePath, Map<String, String> variables) {
-        try {
-            ClassPathResource resource = new ClassPathResource(templatePath);
-            byte[] fileBytes = Files.readAllBytes(resource.getFile().toPath());
-            String templateContent = new String(fileBytes, StandardCharsets.UTF_8);
+        return getTemplate(templatePath).render(variables);
+    }
 
-            return replaceVariables(templateContent, variables);
-        } catch (IOException e) {
-            throw new RuntimeException("Không thể đọc file template: " + templatePath, e);
+    /**
+     * Lấy template đã phân tích từ cache, nạp lại nếu file template đã thay đổi
+     *
+     * @param templatePath đường dẫn tới file template trong classpath
+     * @return template đã phân tích
+     */
+    public CompiledTemplate getTemplate(String templatePath) {
+        CachedTemplate cached = cache.get(templatePath);
+        if (cached != null && !isStale(templatePath, cached)) {
+            return cached.template();
         }
+        return cache.compute(templatePath, (path, current) ->
+                current != null && current != cached ? current : load(path)).template();
     }
 
     /**
-     * Thay thế các biến trong nội dung template
-     *
-     * @param content   nội dung template
-     * @param variables map chứa các biến cần thay thế
-     * @return nội dung đã thay thế các biến
+     * Xóa toàn bộ template trong cache
      */
-    private String replaceVariables(String content, Map<String, String> variables) {
-        if (variables == null || variables.isEmpty()) {
-            return content;
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private boolean isStale(String templatePath, CachedTemplate cached) {
+        long checkInterval = properties.getCheckInterval().toMillis();
+        if (checkInterval <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - cached.checkedAt() < checkInterval) {
+            return false;
         }
+        long lastModified = lastModified(new ClassPathResource(templatePath));
+        if (lastModified != cached.lastModified()) {
+            log.info("Template {} đã thay đổi, nạp lại", templatePath);
+            return true;
+        }
+        // Chưa thay đổi, ghi lại thời điểm kiểm tra để không kiểm tra lại ngay
+        cache.replace(templatePath, cached, new CachedTemplate(cached.template(), lastModified, now));
+        return false;
+    }
 
-        Pattern pattern = Pattern.compile("\\$\\{([^}]+)\\}");
-        Matcher matcher = pattern.matcher(content);
+    private CachedTemplate load(String templatePath) {
+        ClassPathResource resource = new ClassPathResource(templatePath);
+        // Đọc qua InputStream để chạy được cả khi template nằm trong file jar
+        try (InputStream inputStream = resource.getInputStream()) {
+            String templateContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            return new CachedTemplate(CompiledTemplate.compile(templateContent), lastModified(resource),
+                    System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new RuntimeException("Không thể đọc file template: " + templatePath, e);
+        }
+    }
 
-        StringBuffer buffer = new StringBuffer();
-        while (matcher.find()) {
-            String variableName = matcher.group(1);
-            String variableValue = variables.getOrDefault(variableName, "");
-            matcher.appendReplacement(buffer, variableValue.replace("$", "\\$"));
+    private static long lastModified(ClassPathResource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
         }
+    }
 
-        matcher.appendTail(buffer);
-        return buffer.toString();
+    private record CachedTemplate(CompiledTemplate template, long lastModified, long checkedAt) {
     }
-}
\ No newline at end of file
+}
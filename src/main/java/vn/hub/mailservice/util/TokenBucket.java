@@ -0,0 +1,79 @@
+package vn.hub.mailservice.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bộ giới hạn tốc độ kiểu token bucket.
+ * Token được nạp đều theo rate, cho phép dồn tối đa burst token; khi hết token thì người gọi phải chờ
+ * thay vì bị từ chối, nhờ vậy các đợt gửi dồn dập được dàn đều theo thời gian.
+ */
+public class TokenBucket {
+
+    private final double burst;
+    private double ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("rate và burst phải lớn hơn 0");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Lấy token, chờ nếu chưa đủ
+     *
+     * @param permits số token cần lấy
+     * @return thời gian đã phải chờ (nano giây)
+     */
+    public long acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Đặt trước token và trả về thời gian cần chờ; token có thể bị âm, người gọi sau sẽ chờ lâu hơn
+     */
+    private synchronized long reserve(int permits) {
+        refill();
+        tokens -= permits;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * Đổi tốc độ nạp token, dùng khi điều chỉnh tốc độ theo phản hồi của server
+     */
+    public synchronized void setRatePerSecond(double ratePerSecond) {
+        refill();
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    /**
+     * Số token hiện có (âm nếu đang có người chờ)
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(burst, tokens + elapsedSeconds * ratePerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,4 @@
+-- Kiểm tra file đính kèm còn được email chờ gửi tham chiếu không trước khi xóa khỏi kho (job dọn file đính kèm)
+CREATE INDEX idx_outbound_email_attachment ON outbound_email (attachment_id, status);
+
+CREATE INDEX idx_outbox_attachment ON outbox (attachment_id, status);
@@ -0,0 +1,3 @@
+-- Login giờ ghi ID phiên ngay khi giữ chỗ trong open_session. Chỗ giữ chưa gắn phiên (login_history_id NULL)
+-- chỉ còn là của các lần login bị dừng giữa chừng trước khi nâng cấp, bỏ đi để user đăng nhập lại được.
+DELETE FROM open_session WHERE login_history_id IS NULL;
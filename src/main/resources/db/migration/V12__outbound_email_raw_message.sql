@@ -0,0 +1,2 @@
+-- Email đã dựng sẵn dạng MIME (yêu cầu thanh toán hàng loạt) được lưu nguyên văn trong hàng đợi gửi
+ALTER TABLE outbound_email ADD COLUMN raw_message LONGBLOB NULL AFTER attachment_id;
@@ -0,0 +1,90 @@
+-- Lược đồ ban đầu, tương ứng với schema.sql trước khi chuyển sang Flyway.
+-- Các DB đã tạo bằng schema.sql được baseline ở phiên bản này (spring.flyway.baseline-on-migrate).
+
+-- Tạo bảng users
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255),
+    is_active BOOLEAN DEFAULT TRUE
+);
+
+-- Tạo bảng login_history
+CREATE TABLE IF NOT EXISTS login_history (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    login_time DATETIME NOT NULL,
+    logout_time DATETIME,
+    working_minutes INT,
+    is_active BOOLEAN DEFAULT TRUE,
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+-- Tạo bảng hàng đợi email
+CREATE TABLE IF NOT EXISTS outbound_email (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    cc_list TEXT,
+    bcc_list TEXT,
+    subject VARCHAR(255) NOT NULL,
+    html_content LONGTEXT,
+    template_path VARCHAR(255),
+    template_variables TEXT,
+    qr_code_content TEXT,
+    attachment_name VARCHAR(255),
+    attachment LONGBLOB,
+    campaign_id VARCHAR(36),
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    next_attempt_at DATETIME,
+    created_at DATETIME NOT NULL,
+    sent_at DATETIME,
+    INDEX idx_outbound_email_status (status),
+    INDEX idx_outbound_email_campaign (campaign_id, status)
+);
+
+-- Tạo bảng dead-letter cho email gửi thất bại hết số lần
+CREATE TABLE IF NOT EXISTS dead_letter_email (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    outbound_email_id BIGINT NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    failure_type VARCHAR(20) NOT NULL,
+    smtp_code INT,
+    last_error TEXT,
+    attempts INT NOT NULL,
+    failed_at DATETIME NOT NULL,
+    replayed_at DATETIME,
+    INDEX idx_dead_letter_replayed (replayed_at, failed_at),
+    FOREIGN KEY (outbound_email_id) REFERENCES outbound_email(id)
+);
+
+-- Tạo bảng outbox cho email phát sinh từ nghiệp vụ, ghi cùng giao dịch với nghiệp vụ
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    cc_list TEXT,
+    bcc_list TEXT,
+    subject VARCHAR(255) NOT NULL,
+    template_path VARCHAR(255) NOT NULL,
+    template_variables TEXT,
+    qr_code_content TEXT,
+    outbound_email_id BIGINT,
+    created_at DATETIME NOT NULL,
+    published_at DATETIME,
+    INDEX idx_outbox_status (status, id)
+);
+
+-- Tạo bảng khóa cho các job định kỳ khi chạy nhiều instance
+CREATE TABLE IF NOT EXISTS scheduled_lock (
+    name VARCHAR(128) PRIMARY KEY,
+    lock_until DATETIME(3) NOT NULL,
+    locked_at DATETIME(3) NOT NULL,
+    locked_by VARCHAR(255) NOT NULL
+);
@@ -0,0 +1,8 @@
+-- Phiên đang mở của một user (findByUserAndLogoutTimeIsNull)
+CREATE INDEX idx_login_history_user_open ON login_history (user_id, logout_time);
+
+-- Tổng phút làm việc của một user trong khoảng thời gian (calculateTotalWorkingMinutes), đọc thẳng từ index
+CREATE INDEX idx_login_history_user_time ON login_history (user_id, login_time, working_minutes);
+
+-- Phiên trong khoảng thời gian của mọi user (findAllByLoginTimeBetween, job tổng hợp hằng đêm)
+CREATE INDEX idx_login_history_time_user ON login_history (login_time, user_id, working_minutes);
@@ -0,0 +1,11 @@
+-- Bảng lưu trữ các phiên đăng nhập cũ được chuyển ra khỏi login_history theo từng tháng
+CREATE TABLE IF NOT EXISTS login_history_archive (
+    id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    login_time DATETIME NOT NULL,
+    logout_time DATETIME,
+    working_minutes INT,
+    is_active BOOLEAN,
+    archived_at DATETIME NOT NULL,
+    INDEX idx_login_history_archive_user_time (user_id, login_time)
+);
@@ -0,0 +1,16 @@
+-- Tổng số phút làm việc theo ngày (ngày đăng nhập) của từng user, cộng dồn khi logout
+CREATE TABLE IF NOT EXISTS daily_working_minutes (
+    user_id BIGINT NOT NULL,
+    work_date DATE NOT NULL,
+    minutes INT NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL,
+    PRIMARY KEY (user_id, work_date),
+    INDEX idx_daily_working_minutes_date (work_date)
+);
+
+-- Dựng dữ liệu ban đầu từ các phiên đã đăng xuất
+INSERT INTO daily_working_minutes (user_id, work_date, minutes, updated_at)
+SELECT user_id, DATE(login_time), SUM(working_minutes), NOW()
+FROM login_history
+WHERE working_minutes IS NOT NULL
+GROUP BY user_id, DATE(login_time);
@@ -0,0 +1,12 @@
+-- Bộ sinh ID pooled cho login_history thay cho AUTO_INCREMENT, để Hibernate gom được các câu INSERT thành lô.
+-- MySQL không có sequence nên Hibernate dùng bảng một dòng next_val, mỗi lần lấy cấp một khối 50 ID.
+CREATE TABLE IF NOT EXISTS login_history_seq (
+    next_val BIGINT
+);
+
+-- Bắt đầu sau ID lớn nhất đã dùng, kể cả các phiên đã chuyển sang bảng lưu trữ
+INSERT INTO login_history_seq (next_val)
+SELECT GREATEST(COALESCE((SELECT MAX(id) FROM login_history), 0),
+                COALESCE((SELECT MAX(id) FROM login_history_archive), 0)) + 50
+FROM DUAL
+WHERE NOT EXISTS (SELECT 1 FROM login_history_seq);
@@ -0,0 +1,22 @@
+-- Nhóm (team) của user để báo cáo theo nhóm
+ALTER TABLE users ADD COLUMN team VARCHAR(100) NULL;
+CREATE INDEX idx_users_team_username ON users (team, username);
+
+-- Job tổng hợp chỉ đọc các dòng tổng theo ngày thay đổi kể từ lần chạy trước
+CREATE INDEX idx_daily_working_minutes_updated ON daily_working_minutes (updated_at);
+
+-- Tổng phút làm việc theo tuần (bắt đầu thứ Hai) và theo tháng, tổng hợp từ daily_working_minutes
+CREATE TABLE IF NOT EXISTS working_minutes_rollup (
+    period VARCHAR(10) NOT NULL,
+    period_start DATE NOT NULL,
+    user_id BIGINT NOT NULL,
+    minutes INT NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL,
+    PRIMARY KEY (period, period_start, user_id)
+);
+
+-- Mốc updated_at của daily_working_minutes đã được tổng hợp
+CREATE TABLE IF NOT EXISTS rollup_watermark (
+    name VARCHAR(64) PRIMARY KEY,
+    processed_until DATETIME NOT NULL
+);
@@ -0,0 +1,5 @@
+-- Email tham chiếu file đính kèm đã upload một lần (kho file đính kèm theo SHA-256) thay vì lưu nội dung file
+ALTER TABLE outbound_email ADD COLUMN attachment_id CHAR(64) NULL AFTER attachment;
+
+ALTER TABLE outbox ADD COLUMN attachment_id CHAR(64) NULL AFTER qr_code_content;
+ALTER TABLE outbox ADD COLUMN attachment_name VARCHAR(255) NULL AFTER attachment_id;
@@ -0,0 +1,17 @@
+-- Phiên đăng nhập đang mở, mỗi user tối đa một dòng (khóa chính user_id) để login trên nhiều instance
+-- không mở được hai phiên. login_history có partition nên unique index trên đó phải chứa login_time.
+CREATE TABLE IF NOT EXISTS open_session (
+    user_id BIGINT PRIMARY KEY,
+    login_history_id BIGINT,
+    login_time DATETIME NOT NULL
+);
+
+-- Nạp các phiên chưa đăng xuất, user có nhiều phiên mở (dữ liệu cũ) thì giữ phiên mới nhất
+INSERT INTO open_session (user_id, login_history_id, login_time)
+SELECT lh.user_id, lh.id, lh.login_time
+FROM login_history lh
+WHERE lh.logout_time IS NULL
+  AND NOT EXISTS (SELECT 1 FROM login_history newer
+                  WHERE newer.user_id = lh.user_id AND newer.logout_time IS NULL
+                    AND (newer.login_time > lh.login_time
+                         OR (newer.login_time = lh.login_time AND newer.id > lh.id)));
@@ -0,0 +1,101 @@
+package vn.hub.mailservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import vn.hub.mailservice.MailServiceApplication;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.UserRepository;
+import vn.hub.mailservice.service.LoginService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test login/logout: so sánh số cặp login + logout mỗi giây giữa ghi trực tiếp (mỗi sự kiện một giao dịch)
+ * và ghi sau theo lô (app.login-events.write-behind), nhiều luồng đồng thời như lúc đổi ca.
+ * Cần MySQL đã chạy migration (docker-compose up -d mysql), chạy:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LoginThroughputBenchmark
+ * Dùng DB khác: -Dbenchmark="LoginThroughputBenchmark -jvmArgs -Dloadtest.url=jdbc:mysql://..."
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(LoginThroughputBenchmark.THREADS)
+@State(Scope.Benchmark)
+public class LoginThroughputBenchmark {
+
+    static final int THREADS = 32;
+
+    private static final String USER_PREFIX = "loadtest-";
+    private static final String PASSWORD = "loadtest";
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3307/maildb?useSSL=false&serverTimezone=UTC"
+            + "&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private LoginService loginService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(MailServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + System.getProperty("loadtest.url", DEFAULT_URL),
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "app.login-events.write-behind=" + writeBehind,
+                        "app.login-events.journal-dir=" + Files.createTempDirectory("login-events"))
+                .run();
+        loginService = context.getBean(LoginService.class);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        for (int i = 0; i < THREADS; i++) {
+            String username = USER_PREFIX + i;
+            if (userRepository.findByUsername(username).isEmpty()) {
+                User user = new User();
+                user.setUsername(username);
+                user.setPassword(PASSWORD);
+                user.setEmail(username + "@example.com");
+                userRepository.save(user);
+            }
+            // Phiên còn mở từ lần chạy trước
+            if (loginService.isUserLoggedIn(username) != null) {
+                loginService.logout(username);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Mỗi luồng dùng một user riêng, lặp login rồi logout
+     */
+    @State(Scope.Thread)
+    public static class UserState {
+
+        private String username;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            username = USER_PREFIX + threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public LoginHistory loginThenLogout(UserState user) {
+        loginService.login(user.username, PASSWORD);
+        return loginService.logout(user.username);
+    }
+}
@@ -0,0 +1,150 @@
+package vn.hub.mailservice.benchmark;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.web.multipart.MultipartFile;
+import vn.hub.mailservice.mail.MultipartFileDataSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh gửi email kèm file PDF upload: chép file upload ra file tạm rồi đính kèm (cách cũ),
+ * với đọc thẳng file upload khi ghi email. File upload nằm trên đĩa như khi vượt file-size-threshold,
+ * 8 luồng gửi đồng thời. tempFileBytes là số byte ghi thêm ra file tạm mỗi giây.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PdfUploadAttachmentBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PdfUploadAttachmentBenchmark {
+
+    @Param({"10"})
+    private int sizeMb;
+
+    private Path upload;
+    private MultipartFile pdfFile;
+    private JavaMailSenderImpl mailSender;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] content = new byte[sizeMb * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        upload = Files.createTempFile("upload", ".pdf");
+        Files.write(upload, content);
+        pdfFile = new DiskMultipartFile(upload);
+        mailSender = new JavaMailSenderImpl();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(upload);
+    }
+
+    @Benchmark
+    public MimeMessage copyToTempFile(DiskCounters counters) throws MessagingException, IOException {
+        MimeMessageHelper helper = newMessage();
+        MimeMessage message = helper.getMimeMessage();
+        Path tempFile = Files.createTempFile("attachment", ".pdf");
+        try {
+            pdfFile.transferTo(tempFile.toFile());
+            counters.tempFileBytes += pdfFile.getSize();
+            FileSystemResource file = new FileSystemResource(tempFile.toFile());
+            helper.addAttachment(pdfFile.getOriginalFilename(), file);
+            message.writeTo(OutputStream.nullOutputStream());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage streamFromUpload(DiskCounters counters) throws MessagingException, IOException {
+        MimeMessageHelper helper = newMessage();
+        MimeMessage message = helper.getMimeMessage();
+        helper.getRootMimeMultipart().addBodyPart(
+                MultipartFileDataSource.createAttachment(pdfFile, pdfFile.getOriginalFilename(), "application/pdf"));
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    private MimeMessageHelper newMessage() throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo("user@example.com");
+        helper.setSubject("Tài liệu");
+        helper.setText("<p>Tài liệu đính kèm</p>", true);
+        return helper;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DiskCounters {
+        public long tempFileBytes;
+    }
+
+    /**
+     * File upload đã được container ghi ra đĩa
+     */
+    private record DiskMultipartFile(Path path) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "pdfFile";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "tai-lieu.pdf";
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/pdf";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package vn.hub.mailservice.benchmark;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import vn.hub.mailservice.mail.PreparedMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh gửi cùng một email HTML cho 10.000 người nhận: dựng MimeMessage cho từng người (như sendHtmlEmail),
+ * với dựng một lần rồi tạo bản sao chỉ khác To/Message-ID. Email được ghi ra luồng rỗng thay cho kết nối SMTP,
+ * điểm là số email mỗi giây.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PreparedMessageBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreparedMessageBenchmark {
+
+    private static final int RECIPIENTS = 10_000;
+
+    private JavaMailSenderImpl mailSender;
+    private String html;
+    private String[] recipients;
+
+    @Setup
+    public void setUp() throws IOException {
+        mailSender = new JavaMailSenderImpl();
+        try (InputStream inputStream = new ClassPathResource("templates/notification-email.html").getInputStream()) {
+            html = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8)
+                    .replace("${name}", "Quý khách")
+                    .replace("${message}", "Hệ thống sẽ bảo trì từ 22h đến 23h tối nay.")
+                    .replace("${actionUrl}", "https://example.com/maintenance");
+        }
+        recipients = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            recipients[i] = "user" + i + "@example.com";
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public void buildPerRecipient() throws MessagingException, IOException {
+        for (String to : recipients) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setTo(to);
+            helper.setSubject("Thông báo bảo trì");
+            helper.setText(html, true);
+            message.saveChanges();
+            message.writeTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public void prepareOnceClonePerRecipient() throws MessagingException, IOException {
+        MimeMessage template = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(template, true, "UTF-8");
+        helper.setSubject("Thông báo bảo trì");
+        helper.setText(html, true);
+        PreparedMessage prepared = PreparedMessage.prepare(template);
+
+        for (String to : recipients) {
+            MimeMessage message = prepared.forRecipient(template.getSession(), to);
+            message.saveChanges();
+            message.writeTo(OutputStream.nullOutputStream());
+        }
+    }
+}
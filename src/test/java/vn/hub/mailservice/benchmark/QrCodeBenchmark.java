@@ -0,0 +1,63 @@
+package vn.hub.mailservice.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import vn.hub.mailservice.config.QrCodeProperties;
+import vn.hub.mailservice.util.QrCodeGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh tạo ảnh QR code: cách cũ (QRCodeWriter mới + MatrixToImageWriter qua BufferedImage/ImageIO),
+ * ghi BitMatrix thẳng ra PNG, và lấy từ cache theo nội dung.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=QrCodeBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QrCodeBenchmark {
+
+    private static final String CONTENT = "https://example.com/pay/ORD-2024-0001?amount=1500000&currency=VND";
+
+    @Param({"250", "500"})
+    private int size;
+
+    private QrCodeGenerator generator;
+
+    @Setup
+    public void setUp() {
+        QrCodeProperties properties = new QrCodeProperties();
+        properties.setSize(size);
+        generator = new QrCodeGenerator(properties, new SimpleMeterRegistry());
+        generator.generatePng(CONTENT);
+    }
+
+    @Benchmark
+    public byte[] matrixToImageWriter() throws WriterException, IOException {
+        QRCodeWriter qrCodeWriter = new QRCodeWriter();
+        BitMatrix bitMatrix = qrCodeWriter.encode(CONTENT, BarcodeFormat.QR_CODE, size, size);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] directPngEncoder() {
+        return generator.render(CONTENT);
+    }
+
+    @Benchmark
+    public byte[] cached() {
+        return generator.generatePng(CONTENT);
+    }
+}
@@ -0,0 +1,90 @@
+package vn.hub.mailservice.benchmark;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.util.unit.DataSize;
+import vn.hub.mailservice.config.AttachmentStoreProperties;
+import vn.hub.mailservice.mail.AttachmentStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * So sánh gửi cùng một file PDF cho nhiều người nhận: đính kèm file gốc (đọc và mã hóa base64 cho từng email),
+ * với dùng nội dung base64 đã lưu sẵn trong AttachmentStore. Email được ghi ra luồng rỗng thay cho SMTP.
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=StoredAttachmentBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoredAttachmentBenchmark {
+
+    @Param({"1", "5"})
+    private int sizeMb;
+
+    private Path directory;
+    private Path pdf;
+    private String attachmentId;
+    private AttachmentStore store;
+    private JavaMailSenderImpl mailSender;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("attachments");
+        byte[] content = new byte[sizeMb * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        pdf = Files.write(directory.resolve("bang-gia.pdf"), content);
+
+        AttachmentStoreProperties properties = new AttachmentStoreProperties();
+        properties.setDirectory(directory.resolve("store").toString());
+        properties.setMaxSize(DataSize.ofMegabytes(50));
+        store = new AttachmentStore(properties);
+        attachmentId = store.store(pdf, "application/pdf").id();
+        mailSender = new JavaMailSenderImpl();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public MimeMessage encodeFilePerMessage() throws MessagingException, IOException {
+        MimeMessageHelper helper = newMessage();
+        helper.addAttachment("bang-gia.pdf", new FileSystemResource(pdf));
+        helper.getMimeMessage().writeTo(OutputStream.nullOutputStream());
+        return helper.getMimeMessage();
+    }
+
+    @Benchmark
+    public MimeMessage reuseStoredEncoding() throws MessagingException, IOException {
+        MimeMessageHelper helper = newMessage();
+        helper.getRootMimeMultipart().addBodyPart(store.createBodyPart(attachmentId, null));
+        helper.getMimeMessage().writeTo(OutputStream.nullOutputStream());
+        return helper.getMimeMessage();
+    }
+
+    private MimeMessageHelper newMessage() throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo("user@example.com");
+        helper.setSubject("Bảng giá mới");
+        helper.setText("<p>Gửi bạn bảng giá mới</p>", true);
+        return helper;
+    }
+}
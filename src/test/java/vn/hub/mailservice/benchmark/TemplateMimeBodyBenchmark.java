@@ -0,0 +1,77 @@
+package vn.hub.mailservice.benchmark;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import vn.hub.mailservice.mail.TemplateDataHandler;
+import vn.hub.mailservice.util.CompiledTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh tạo email từ template: render ra String rồi setText, với render thẳng vào phần MIME khi ghi.
+ * Đo bộ nhớ cấp phát mỗi email bằng profiler gc:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark="TemplateMimeBodyBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateMimeBodyBenchmark {
+
+    /**
+     * Số lần lặp nội dung template để giả lập bản tin HTML lớn
+     */
+    @Param({"1", "100"})
+    private int bodyRepeat;
+
+    private JavaMailSenderImpl mailSender;
+    private CompiledTemplate template;
+    private Map<String, String> variables;
+
+    @Setup
+    public void setUp() throws IOException {
+        mailSender = new JavaMailSenderImpl();
+        try (InputStream inputStream = new ClassPathResource("templates/notification-email.html").getInputStream()) {
+            String source = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            template = CompiledTemplate.compile(source.repeat(bodyRepeat));
+        }
+        variables = new HashMap<>();
+        variables.put("name", "Nguyễn Văn A");
+        variables.put("message", "Bạn có một thông báo mới từ hệ thống.");
+        variables.put("actionUrl", "https://example.com/notifications/1");
+    }
+
+    @Benchmark
+    public MimeMessage renderToStringThenSetText() throws MessagingException, IOException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo("user@example.com");
+        helper.setSubject("Thông báo mới");
+        helper.setText(template.render(variables), true);
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage streamTemplateIntoBodyPart() throws MessagingException, IOException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo("user@example.com");
+        helper.setSubject("Thông báo mới");
+        helper.getMimeMultipart().addBodyPart(TemplateDataHandler.createBodyPart(template, variables));
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+}
@@ -0,0 +1,67 @@
+package vn.hub.mailservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import vn.hub.mailservice.config.TemplateProperties;
+import vn.hub.mailservice.util.TemplateUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * So sánh render template giữa cách cũ (đọc file + regex mỗi lần) và template đã phân tích sẵn trong cache.
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TemplateRenderBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateRenderBenchmark {
+
+    private static final String TEMPLATE_PATH = "templates/payment-email.html";
+
+    private TemplateUtil templateUtil;
+    private Map<String, String> variables;
+
+    @Setup
+    public void setUp() {
+        templateUtil = new TemplateUtil(new TemplateProperties());
+        variables = new HashMap<>();
+        variables.put("customerName", "Nguyễn Văn A");
+        variables.put("orderId", "ORD-2024-0001");
+        variables.put("serviceName", "Gói dịch vụ Premium");
+        variables.put("amount", "1,500,000");
+        variables.put("dueDate", "31/12/2024");
+        variables.put("paymentUrl", "https://example.com/pay/ORD-2024-0001");
+    }
+
+    @Benchmark
+    public String legacyFileReadAndRegex() throws IOException {
+        ClassPathResource resource = new ClassPathResource(TEMPLATE_PATH);
+        byte[] fileBytes = Files.readAllBytes(resource.getFile().toPath());
+        String content = new String(fileBytes, StandardCharsets.UTF_8);
+
+        Pattern pattern = Pattern.compile("\\$\\{([^}]+)\\}");
+        Matcher matcher = pattern.matcher(content);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String value = variables.getOrDefault(matcher.group(1), "");
+            matcher.appendReplacement(buffer, value.replace("$", "\\$"));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String compiledCachedTemplate() {
+        return templateUtil.processTemplate(TEMPLATE_PATH, variables);
+    }
+}
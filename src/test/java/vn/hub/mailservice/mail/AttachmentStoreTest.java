@@ -0,0 +1,121 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.BodyPart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.internet.MimeUtility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.util.unit.DataSize;
+import vn.hub.mailservice.config.AttachmentStoreProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttachmentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesSameContentOnceAndSendsItUnchanged() throws Exception {
+        AttachmentStore store = new AttachmentStore(properties(DataSize.ofMegabytes(1)));
+        byte[] pdf = new byte[100_000];
+        new Random(7).nextBytes(pdf);
+
+        StoredAttachment first = store.store(new ByteArrayInputStream(pdf), "bảng-giá.pdf", "application/pdf");
+        StoredAttachment second = store.store(new ByteArrayInputStream(pdf), "khac.pdf", "application/pdf");
+
+        assertEquals(first.id(), second.id());
+        assertEquals("bảng-giá.pdf", second.fileName());
+        assertEquals(pdf.length, first.size());
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+
+        Session session = Session.getInstance(new Properties());
+        for (int i = 0; i < 2; i++) {
+            MimeMessage message = new MimeMessage(session);
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setTo("user" + i + "@example.com");
+            helper.setSubject("Tài liệu");
+            helper.setText("<p>Tài liệu</p>", true);
+            helper.getRootMimeMultipart().addBodyPart(store.createBodyPart(first.id(), null));
+            message.saveChanges();
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            message.writeTo(raw);
+
+            MimeMessage parsed = new MimeMessage(session, new ByteArrayInputStream(raw.toByteArray()));
+            BodyPart attachment = ((MimeMultipart) parsed.getContent()).getBodyPart(1);
+            assertEquals("bảng-giá.pdf", MimeUtility.decodeText(attachment.getFileName()));
+            try (InputStream content = attachment.getInputStream()) {
+                assertArrayEquals(pdf, content.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void reusesIdOfUnchangedFileAndRejectsOversizedContent() throws Exception {
+        AttachmentStore store = new AttachmentStore(properties(DataSize.ofKilobytes(1)));
+        Path file = Files.writeString(directory.resolve("policy.pdf"), "%PDF-1.4 chính sách");
+
+        StoredAttachment stored = store.store(file, "application/pdf");
+
+        assertEquals(stored.id(), store.store(file, "application/pdf").id());
+        assertEquals("policy.pdf", store.get(stored.id()).orElseThrow().fileName());
+        assertTrue(store.get("../" + stored.id()).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.store(new ByteArrayInputStream(new byte[2048]), "lon.pdf", "application/pdf"));
+    }
+
+    @Test
+    void deletesExpiredUnreferencedFilesOnly() throws Exception {
+        AttachmentStore store = new AttachmentStore(properties(DataSize.ofKilobytes(1)));
+        StoredAttachment unused = store.store(new ByteArrayInputStream("hóa đơn cũ".getBytes()), "cu.pdf",
+                "application/pdf");
+        StoredAttachment queued = store.store(new ByteArrayInputStream("hóa đơn chờ gửi".getBytes()), "cho.pdf",
+                "application/pdf");
+        StoredAttachment reuploaded = store.store(new ByteArrayInputStream("bảng giá".getBytes()), "gia.pdf",
+                "application/pdf");
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(10)));
+        for (StoredAttachment stored : List.of(unused, queued, reuploaded)) {
+            Files.setLastModifiedTime(directory.resolve(stored.id() + ".b64"), old);
+        }
+        Path leftover = Files.createFile(directory.resolve("upload123.tmp"));
+        Files.setLastModifiedTime(leftover, old);
+        // Upload lại cùng nội dung thì tính lại thời gian giữ file
+        store.store(new ByteArrayInputStream("bảng giá".getBytes()), "gia.pdf", "application/pdf");
+
+        assertEquals(1, store.deleteUnreferenced(Duration.ofDays(7), id -> id.equals(queued.id())));
+
+        assertTrue(store.get(unused.id()).isEmpty());
+        assertFalse(Files.exists(directory.resolve(unused.id() + ".properties")));
+        assertFalse(Files.exists(leftover));
+        assertTrue(store.get(queued.id()).isPresent());
+        assertTrue(store.get(reuploaded.id()).isPresent());
+    }
+
+    private AttachmentStoreProperties properties(DataSize maxSize) {
+        AttachmentStoreProperties properties = new AttachmentStoreProperties();
+        properties.setDirectory(directory.toString());
+        properties.setMaxSize(maxSize);
+        return properties;
+    }
+}
@@ -0,0 +1,179 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import vn.hub.mailservice.config.DomainDeliveryProperties;
+import vn.hub.mailservice.config.SmtpPoolProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainDeliverySchedulerTest {
+
+    private FakeSmtpServer server;
+    private PooledJavaMailSender mailSender;
+    private DomainDeliveryScheduler scheduler;
+    private final Map<String, AtomicLong> firstDone = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> lastDone = new ConcurrentHashMap<>();
+    private final AtomicInteger slowInFlight = new AtomicInteger();
+    private final AtomicInteger maxSlowInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSmtpServer();
+        server.slow("slow.example", Duration.ofMillis(300));
+        server.fail("down.example", "451 4.4.1 Try again later");
+        server.slow("slow-a.example", Duration.ofMillis(500));
+        server.slow("slow-b.example", Duration.ofMillis(500));
+
+        mailSender = new PooledJavaMailSender(new SmtpPoolProperties(), new SimpleMeterRegistry());
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.getPort());
+
+        DomainDeliveryProperties properties = new DomainDeliveryProperties();
+        properties.getDefaults().setBatchSize(5);
+        properties.getDefaults().setInitialBackoff(Duration.ofMillis(200));
+        properties.getDefaults().setMaxBackoff(Duration.ofSeconds(1));
+        DomainDeliveryProperties.Domain slow = new DomainDeliveryProperties.Domain();
+        slow.setConcurrency(1);
+        properties.getDomains().put("slow.example", slow);
+        DomainDeliveryProperties.Domain paused = new DomainDeliveryProperties.Domain();
+        paused.setInitialBackoff(Duration.ofSeconds(10));
+        properties.getDomains().put("paused.example", paused);
+        scheduler = new DomainDeliveryScheduler(properties, 4, mailSender::withConnection, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        scheduler.close();
+        mailSender.destroy();
+        server.close();
+    }
+
+    @Test
+    void slowAndFailingDomainsDoNotHoldBackOtherDomains() throws Exception {
+        CountDownLatch done = new CountDownLatch(17);
+        for (int i = 0; i < 4; i++) {
+            submit("user" + i + "@slow.example", done);
+        }
+        for (int i = 0; i < 3; i++) {
+            submit("user" + i + "@down.example", done);
+        }
+        for (int i = 0; i < 10; i++) {
+            submit("user" + i + "@fast.example", done);
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+
+        // Email tới domain nhanh gửi xong trong khi domain chậm vẫn đang gửi
+        assertEquals(10, server.rcpts("fast.example").size());
+        assertTrue(lastDone.get("fast.example").get() < lastDone.get("slow.example").get());
+
+        // Domain chậm chỉ dùng một luồng, cả lô gửi liên tiếp trên một kết nối
+        List<FakeSmtpServer.Rcpt> slow = server.rcpts("slow.example");
+        assertEquals(4, slow.size());
+        assertEquals(1, slow.stream().map(FakeSmtpServer.Rcpt::connection).distinct().count());
+
+        // Domain lỗi bị tạm dừng sau mỗi lần lỗi, thời gian tạm dừng tăng dần
+        // (hai email đầu có thể đã được hai luồng gửi cùng lúc trước khi domain bị tạm dừng)
+        List<FakeSmtpServer.Rcpt> down = server.rcpts("down.example");
+        assertEquals(3, down.size());
+        assertFalse(down.stream().anyMatch(FakeSmtpServer.Rcpt::accepted));
+        assertTrue(down.get(2).nanoTime() - down.get(1).nanoTime() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(down.get(2).nanoTime() - down.get(0).nanoTime() >= TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    @Test
+    void twoSlowDomainsLeaveAWorkerForOtherDomains() throws Exception {
+        // 4 luồng, mỗi domain chậm được 2 luồng: không chừa luồng thì hai domain chậm giữ cả 4 luồng
+        CountDownLatch done = new CountDownLatch(22);
+        for (int i = 0; i < 6; i++) {
+            submit("user" + i + "@slow-a.example", done);
+            submit("user" + i + "@slow-b.example", done);
+        }
+        for (int i = 0; i < 10; i++) {
+            submit("user" + i + "@fast.example", done);
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+
+        // Domain nhanh gửi xong trước khi domain chậm gửi xong email đầu tiên
+        assertEquals(10, server.rcpts("fast.example").size());
+        assertTrue(lastDone.get("fast.example").get() < firstDone.get("slow-a.example").get());
+        assertTrue(lastDone.get("fast.example").get() < firstDone.get("slow-b.example").get());
+
+        // Hai domain chậm chỉ giữ tối đa 3 luồng cùng lúc
+        assertEquals(3, maxSlowInFlight.get());
+    }
+
+    @Test
+    void retriesDoNotWaitForTheDomainPause() throws Exception {
+        scheduler.submit("paused.example", () -> SendFailureType.TRANSIENT);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!scheduler.isPaused("paused.example") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(scheduler.isPaused("paused.example"));
+
+        // Email chưa gửi lần nào chờ hết thời gian tạm dừng
+        CountDownLatch fresh = new CountDownLatch(1);
+        scheduler.submit("paused.example", () -> {
+            fresh.countDown();
+            return null;
+        });
+        assertFalse(fresh.await(300, TimeUnit.MILLISECONDS));
+
+        // Email gửi lại đã chờ theo lịch gửi lại riêng nên được gửi ngay, gửi thành công thì domain hết tạm dừng
+        CountDownLatch retried = new CountDownLatch(1);
+        scheduler.submitRetry("paused.example", () -> {
+            retried.countDown();
+            return null;
+        });
+        assertTrue(retried.await(2, TimeUnit.SECONDS));
+        assertTrue(fresh.await(2, TimeUnit.SECONDS));
+        assertFalse(scheduler.isPaused("paused.example"));
+    }
+
+    private void submit(String to, CountDownLatch done) {
+        String domain = DomainDeliveryScheduler.domainOf(to);
+        boolean slow = domain.startsWith("slow-");
+        scheduler.submit(domain, () -> {
+            if (slow) {
+                maxSlowInFlight.accumulateAndGet(slowInFlight.incrementAndGet(), Math::max);
+            }
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+                helper.setFrom("noreply@hub.vn");
+                helper.setTo(to);
+                helper.setSubject("Thông báo");
+                helper.setText("<p>Nội dung</p>", true);
+                mailSender.send(message);
+                return null;
+            } catch (MailException | MessagingException e) {
+                return SmtpErrors.classify(e);
+            } finally {
+                if (slow) {
+                    slowInFlight.decrementAndGet();
+                }
+                firstDone.computeIfAbsent(domain, d -> new AtomicLong(System.nanoTime()));
+                lastDone.computeIfAbsent(domain, d -> new AtomicLong()).set(System.nanoTime());
+                done.countDown();
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package vn.hub.mailservice.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMTP server giả lập chạy trên localhost cho test: nhận mọi email, có thể làm chậm hoặc từ chối
+ * RCPT TO theo domain người nhận để giả lập domain chậm/đang lỗi
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    /**
+     * Một lệnh RCPT TO server đã nhận
+     *
+     * @param connection số thứ tự kết nối SMTP
+     * @param recipient  địa chỉ người nhận
+     * @param accepted   true nếu server trả 250
+     * @param nanoTime   thời điểm server trả lời
+     */
+    record Rcpt(int connection, String recipient, boolean accepted, long nanoTime) {
+
+        String domain() {
+            return DomainDeliveryScheduler.domainOf(recipient);
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<String, Duration> slowDomains = new ConcurrentHashMap<>();
+    private final Map<String, String> failingDomains = new ConcurrentHashMap<>();
+    private final List<Rcpt> rcpts = new CopyOnWriteArrayList<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    FakeSmtpServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("fake-smtp").start(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Mỗi RCPT TO tới domain phải chờ thêm delay
+     */
+    void slow(String domain, Duration delay) {
+        slowDomains.put(domain, delay);
+    }
+
+    /**
+     * Từ chối mọi RCPT TO tới domain bằng phản hồi reply, vd "451 4.4.1 Try again later"
+     */
+    void fail(String domain, String reply) {
+        failingDomains.put(domain, reply);
+    }
+
+    /**
+     * Đóng mọi kết nối đang mở từ phía server, giả lập server đóng kết nối rảnh
+     */
+    void dropConnections() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    List<Rcpt> rcpts(String domain) {
+        return rcpts.stream().filter(r -> r.domain().equals(domain)).toList();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                int connection = connections.incrementAndGet();
+                sockets.add(socket);
+                Thread.ofVirtual().start(() -> handle(socket, connection));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket, int connection) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.ISO_8859_1));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 fake-smtp ESMTP");
+            List<Rcpt> accepted = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-fake-smtp\r\n250 8BITMIME");
+                } else if (command.startsWith("HELO") || command.startsWith("NOOP")) {
+                    reply(out, "250 OK");
+                } else if (command.startsWith("MAIL FROM") || command.startsWith("RSET")) {
+                    accepted.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    String recipient = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                    String domain = DomainDeliveryScheduler.domainOf(recipient);
+                    Duration delay = slowDomains.get(domain);
+                    if (delay != null) {
+                        Thread.sleep(delay);
+                    }
+                    String failure = failingDomains.get(domain);
+                    rcpts.add(new Rcpt(connection, recipient, failure == null, System.nanoTime()));
+                    reply(out, failure != null ? failure : "250 OK");
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // Bỏ qua nội dung email
+                    }
+                    reply(out, "250 OK queued");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client đóng kết nối
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,64 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import vn.hub.mailservice.config.SmtpPoolProperties;
+import vn.hub.mailservice.config.SmtpRateLimitProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PooledJavaMailSenderTest {
+
+    private FakeSmtpServer server;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSmtpServer();
+        mailSender = new PooledJavaMailSender(new SmtpPoolProperties(), new SimpleMeterRegistry());
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mailSender.destroy();
+        server.close();
+    }
+
+    @Test
+    void waitsForRateLimitBeforeBorrowingAConnection() throws Exception {
+        SmtpRateLimitProperties.Limit limit = new SmtpRateLimitProperties.Limit();
+        limit.setRatePerMinute(60);
+        limit.setBurst(1);
+        mailSender.setRateLimiter(new SmtpRateLimiter("fake-smtp", limit, new SimpleMeterRegistry()));
+        mailSender.send(message("user1@example.com"));
+
+        // Hết lượt gửi: luồng gửi thứ hai chờ giới hạn tốc độ mà không giữ kết nối nào của pool
+        Thread second = Thread.ofPlatform().start(() -> mailSender.send(message("user2@example.com")));
+        Thread.sleep(300);
+        assertEquals(0, mailSender.getPool().getActiveCount());
+        assertEquals(1, mailSender.getPool().getIdleCount());
+
+        second.join(5000);
+        assertEquals(2, server.rcpts("example.com").size());
+    }
+
+    private MimeMessage message(String to) {
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+            helper.setFrom("noreply@hub.vn");
+            helper.setTo(to);
+            helper.setSubject("Thông báo");
+            helper.setText("<p>Nội dung</p>", true);
+            return message;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.Address;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PreparedMessageTest {
+
+    private final Session session = Session.getInstance(new Properties());
+
+    @Test
+    void copiesShareBodyAndDifferOnlyInRecipientAndMessageId() throws Exception {
+        MimeMessage template = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(template, true, "UTF-8");
+        helper.setFrom("noreply@hub.vn");
+        helper.setSubject("Thông báo bảo trì");
+        helper.setText("<p>Hệ thống bảo trì lúc 22h</p>", true);
+        PreparedMessage prepared = PreparedMessage.prepare(template);
+
+        MimeMessage first = prepared.forRecipient(session, "a@example.com");
+        MimeMessage second = prepared.forRecipient(session, "b@example.com");
+        // Như JavaMailSender trước khi gửi
+        first.saveChanges();
+
+        assertArrayEquals(new Address[]{new InternetAddress("a@example.com")}, first.getAllRecipients());
+        assertArrayEquals(new Address[]{new InternetAddress("noreply@hub.vn")}, first.getFrom());
+
+        MimeMessage parsedFirst = parse(first);
+        MimeMessage parsedSecond = parse(second);
+        assertEquals("a@example.com", parsedFirst.getHeader("To", ","));
+        assertEquals("b@example.com", parsedSecond.getHeader("To", ","));
+        assertNotEquals(parsedFirst.getMessageID(), parsedSecond.getMessageID());
+        assertEquals(1, parsedFirst.getHeader("Message-ID").length);
+        assertNull(parsedFirst.getHeader("Bcc"));
+        assertEquals("Thông báo bảo trì", parsedFirst.getSubject());
+        assertEquals("noreply@hub.vn", parsedFirst.getHeader("From", ","));
+
+        MimeMultipart body = (MimeMultipart) ((MimeMultipart) parsedFirst.getContent()).getBodyPart(0).getContent();
+        assertEquals("<p>Hệ thống bảo trì lúc 22h</p>", body.getBodyPart(0).getContent());
+    }
+
+    private MimeMessage parse(MimeMessage message) throws Exception {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        message.writeTo(raw);
+        return new MimeMessage(session, new ByteArrayInputStream(raw.toByteArray()));
+    }
+}
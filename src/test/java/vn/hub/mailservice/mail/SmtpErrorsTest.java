@@ -0,0 +1,56 @@
+package vn.hub.mailservice.mail;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.eclipse.angus.mail.util.SocketConnectException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmtpErrorsTest {
+
+    @Test
+    void classifiesSmtpRepliesByReturnCode() throws Exception {
+        MessagingException busy = new SMTPSendFailedException("DATA", 451, "451 4.3.0 Try again later\n",
+                null, null, null, null);
+        MessagingException rejected = new SMTPAddressFailedException(new InternetAddress("x@example.com"),
+                "RCPT TO:<x@example.com>", 550, "550 5.1.1 User unknown");
+
+        assertEquals(SendFailureType.TRANSIENT, SmtpErrors.classify(busy));
+        assertEquals(451, SmtpErrors.returnCode(busy));
+        assertEquals("451 4.3.0 Try again later", SmtpErrors.reply(busy));
+        assertEquals(SendFailureType.PERMANENT, SmtpErrors.classify(rejected));
+        assertEquals(550, SmtpErrors.returnCode(rejected));
+
+        // Phản hồi nằm trong lỗi của từng email của MailSendException và trong nextException
+        MessagingException wrapped = new MessagingException("Send failed", rejected);
+        assertEquals(SendFailureType.PERMANENT,
+                SmtpErrors.classify(new MailSendException(Map.of(new Object(), wrapped))));
+        assertEquals(SendFailureType.TRANSIENT,
+                SmtpErrors.classify(new MailSendException("Failed messages", busy)));
+    }
+
+    @Test
+    void classifiesConnectionAndOtherErrors() {
+        MessagingException refused = new MailConnectException(new SocketConnectException("Connection refused",
+                new ConnectException("Connection refused"), "smtp.example.com", 25, 5000));
+        MessagingException timeout = new MessagingException("Exception reading response",
+                new SocketTimeoutException("Read timed out"));
+
+        assertEquals(SendFailureType.CONNECTION, SmtpErrors.classify(refused));
+        assertEquals(SendFailureType.CONNECTION, SmtpErrors.classify(timeout));
+        assertEquals(-1, SmtpErrors.returnCode(timeout));
+        assertEquals("Read timed out", SmtpErrors.reply(timeout));
+        assertEquals(SendFailureType.TRANSIENT,
+                SmtpErrors.classify(new MessagingException("Could not get a pooled SMTP connection")));
+        assertEquals(SendFailureType.PERMANENT, SmtpErrors.classify(new IllegalStateException("bug")));
+    }
+}
@@ -0,0 +1,42 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import vn.hub.mailservice.config.SmtpRateLimitProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmtpRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void backsOffOnTemporaryFailureAndRecoversOnSuccess() {
+        SmtpRateLimitProperties.Limit limit = new SmtpRateLimitProperties.Limit();
+        limit.setRatePerMinute(60);
+        limit.setMinRatePerMinute(20);
+        limit.setBackoffFactor(0.5);
+        limit.setRecoveryPerSuccess(10);
+        SmtpRateLimiter limiter = new SmtpRateLimiter("smtp.test", limit, meterRegistry);
+
+        limiter.onResult(421);
+        assertEquals(30, currentRate(), 0.001);
+
+        limiter.onResult(454);
+        assertEquals(20, currentRate(), 0.001);
+
+        // Lỗi vĩnh viễn 5xx không ảnh hưởng tốc độ
+        limiter.onResult(550);
+        assertEquals(20, currentRate(), 0.001);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.onResult(0);
+        }
+        assertEquals(60, currentRate(), 0.001);
+        assertEquals(2, meterRegistry.get("mail.smtp.rate.backoffs").counter().count(), 0.001);
+    }
+
+    private double currentRate() {
+        return meterRegistry.get("mail.smtp.rate").gauge().value();
+    }
+}
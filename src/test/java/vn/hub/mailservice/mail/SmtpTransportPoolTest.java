@@ -0,0 +1,133 @@
+package vn.hub.mailservice.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import vn.hub.mailservice.config.SmtpPoolProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmtpTransportPoolTest {
+
+    private final SmtpPoolProperties properties = new SmtpPoolProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FakeSmtpServer server;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSmtpServer();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (mailSender != null) {
+            mailSender.destroy();
+        }
+        server.close();
+    }
+
+    @Test
+    void reusesConnectionUntilMaxMessagesPerConnection() {
+        properties.setMaxMessagesPerConnection(3);
+        start();
+
+        for (int i = 0; i < 7; i++) {
+            mailSender.send(message("user" + i + "@example.com"));
+        }
+
+        // Mỗi kết nối gửi đúng 3 email rồi được đóng và thay bằng kết nối mới
+        assertEquals(List.of(1, 1, 1, 2, 2, 2, 3), connections());
+        assertEquals(3, count("mail.smtp.pool.created"));
+        assertEquals(2, count("mail.smtp.pool.destroyed"));
+        assertEquals(0, count("mail.smtp.pool.reconnects"));
+        assertEquals(1, mailSender.getPool().getIdleCount());
+    }
+
+    @Test
+    void keepsAtMostMaxIdleConnections() throws Exception {
+        properties.setMaxIdle(1);
+        properties.setIdleTimeout(Duration.ofMillis(200));
+        start();
+        SmtpTransportPool pool = mailSender.getPool();
+
+        SmtpTransportPool.PooledTransport first = pool.borrow();
+        SmtpTransportPool.PooledTransport second = pool.borrow();
+        SmtpTransportPool.PooledTransport third = pool.borrow();
+        assertEquals(3, pool.getActiveCount());
+        pool.release(first, false);
+        pool.release(second, false);
+        pool.release(third, false);
+
+        // Chỉ giữ lại một kết nối rảnh, email tiếp theo gửi trên chính kết nối đó
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(3, count("mail.smtp.pool.created"));
+        assertEquals(2, count("mail.smtp.pool.destroyed"));
+        mailSender.send(message("user@example.com"));
+        assertEquals(List.of(1), connections());
+        assertEquals(3, count("mail.smtp.pool.created"));
+
+        // Kết nối rảnh quá idleTimeout bị đóng khi dọn pool
+        Thread.sleep(300);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(3, count("mail.smtp.pool.destroyed"));
+    }
+
+    @Test
+    void validatesIdleConnectionWithNoopAndReconnects() throws Exception {
+        properties.setValidationInterval(Duration.ZERO);
+        start();
+
+        // Kết nối còn sống: NOOP thành công, dùng lại kết nối
+        mailSender.send(message("user1@example.com"));
+        Thread.sleep(50);
+        mailSender.send(message("user2@example.com"));
+        assertEquals(List.of(1, 1), connections());
+        assertEquals(0, count("mail.smtp.pool.reconnects"));
+
+        // Server đã đóng kết nối rảnh: NOOP lỗi, pool bỏ kết nối cũ và mở kết nối mới
+        server.dropConnections();
+        Thread.sleep(50);
+        mailSender.send(message("user3@example.com"));
+        assertEquals(List.of(1, 1, 2), connections());
+        assertEquals(1, count("mail.smtp.pool.reconnects"));
+        assertEquals(2, count("mail.smtp.pool.created"));
+        assertEquals(1, count("mail.smtp.pool.destroyed"));
+    }
+
+    private void start() {
+        mailSender = new PooledJavaMailSender(properties, meterRegistry);
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.getPort());
+    }
+
+    private List<Integer> connections() {
+        return server.rcpts("example.com").stream().map(FakeSmtpServer.Rcpt::connection).toList();
+    }
+
+    private int count(String counter) {
+        return (int) meterRegistry.counter(counter).count();
+    }
+
+    private MimeMessage message(String to) {
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+            helper.setFrom("noreply@hub.vn");
+            helper.setTo(to);
+            helper.setSubject("Thông báo");
+            helper.setText("<p>Nội dung</p>", true);
+            return message;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package vn.hub.mailservice.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vn.hub.mailservice.entity.User;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:users;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserRepositoryCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void cachedLookupDoesNotHitTheDatabaseUntilTheUserIsSaved() {
+        User user = new User();
+        user.setUsername("carol");
+        user.setPassword("secret");
+        user.setEmail("carol@example.com");
+        userRepository.saveAndFlush(user);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User cached = userRepository.findByUsername("carol").orElseThrow();
+        statistics.clear();
+
+        assertTrue(userRepository.findByUsername("carol").orElseThrow().isActive());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Khóa tài khoản bằng bản sao tách rời (không sửa bản trong cache) phải xóa cache
+        // để lần tra cứu sau đọc lại từ DB và thấy trạng thái mới
+        userRepository.save(new User(cached.getId(), cached.getUsername(), cached.getPassword(), cached.getEmail(),
+                cached.getFullName(), cached.getTeam(), false));
+        statistics.clear();
+        assertFalse(userRepository.findByUsername("carol").orElseThrow().isActive());
+        assertTrue(statistics.getPrepareStatementCount() > 0);
+        assertTrue(cached.isActive());
+    }
+
+    @Test
+    void activeCheckSeesDeactivationFromAnotherInstance() {
+        User user = new User();
+        user.setUsername("dan");
+        user.setPassword("secret");
+        user.setEmail("dan@example.com");
+        user = userRepository.saveAndFlush(user);
+        assertTrue(userRepository.findByUsername("dan").orElseThrow().isActive());
+
+        // Instance khác khóa tài khoản: cache của instance này không bị xóa
+        jdbcTemplate.update("UPDATE users SET is_active = FALSE WHERE id = ?", user.getId());
+
+        assertTrue(userRepository.findByUsername("dan").orElseThrow().isActive());
+        assertFalse(userRepository.findActiveById(user.getId()).orElseThrow());
+    }
+}
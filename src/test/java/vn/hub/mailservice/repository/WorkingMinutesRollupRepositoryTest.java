@@ -0,0 +1,107 @@
+package vn.hub.mailservice.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import vn.hub.mailservice.dto.TeamWorkingHoursReport;
+import vn.hub.mailservice.dto.UserWorkingHoursReport;
+import vn.hub.mailservice.entity.ReportPeriod;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.entity.WorkingMinutesRollup;
+import vn.hub.mailservice.entity.WorkingMinutesRollupId;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class WorkingMinutesRollupRepositoryTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2024, 3, 4);
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private WorkingMinutesRollupRepository rollupRepository;
+
+    @BeforeEach
+    void seed() {
+        // Team A: an 600 phút, binh 300 phút; team B: chi không làm ngày nào; dung chưa có team; user bị khóa bị bỏ qua
+        rollup(persist("an", "A", true), ReportPeriod.WEEK, WEEK, 600);
+        rollup(persist("binh", "A", true), ReportPeriod.WEEK, WEEK, 300);
+        persist("chi", "B", true);
+        User dung = persist("dung", null, true);
+        rollup(dung, ReportPeriod.WEEK, WEEK, 120);
+        rollup(dung, ReportPeriod.WEEK, WEEK.minusWeeks(1), 999);
+        rollup(dung, ReportPeriod.MONTH, LocalDate.of(2024, 3, 1), 999);
+        rollup(persist("locked", "A", false), ReportPeriod.WEEK, WEEK, 999);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void userReportIncludesActiveUsersWithoutMinutesAndPaginates() {
+        Page<UserWorkingHoursReport> first = rollupRepository.findUserReport(ReportPeriod.WEEK, WEEK, null,
+                PageRequest.of(0, 3));
+        Page<UserWorkingHoursReport> second = rollupRepository.findUserReport(ReportPeriod.WEEK, WEEK, null,
+                PageRequest.of(1, 3));
+
+        assertEquals(4, first.getTotalElements());
+        assertEquals(List.of("an", "binh", "chi"), first.map(UserWorkingHoursReport::getUsername).getContent());
+        assertEquals(List.of(600, 300, 0), first.map(UserWorkingHoursReport::getMinutes).getContent());
+        assertEquals(List.of(120), second.map(UserWorkingHoursReport::getMinutes).getContent());
+    }
+
+    @Test
+    void userReportFiltersByTeam() {
+        Page<UserWorkingHoursReport> report = rollupRepository.findUserReport(ReportPeriod.WEEK, WEEK, "A",
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of("an", "binh"), report.map(UserWorkingHoursReport::getUsername).getContent());
+    }
+
+    @Test
+    void teamReportSumsMembers() {
+        Page<TeamWorkingHoursReport> report = rollupRepository.findTeamReport(ReportPeriod.WEEK, WEEK,
+                PageRequest.of(0, 10));
+
+        assertEquals(3, report.getTotalElements());
+        TeamWorkingHoursReport teamA = report.getContent().stream()
+                .filter(row -> "A".equals(row.getTeam())).findFirst().orElseThrow();
+        assertEquals(2, teamA.getMembers());
+        assertEquals(900, teamA.getTotalMinutes());
+        assertEquals(7.5, teamA.getAverageHours());
+    }
+
+    private User persist(String username, String team, boolean active) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        user.setTeam(team);
+        user.setActive(active);
+        return entityManager.persist(user);
+    }
+
+    private void rollup(User user, ReportPeriod period, LocalDate periodStart, int minutes) {
+        entityManager.persist(new WorkingMinutesRollup(new WorkingMinutesRollupId(period, periodStart, user.getId()),
+                minutes, LocalDateTime.now()));
+    }
+}
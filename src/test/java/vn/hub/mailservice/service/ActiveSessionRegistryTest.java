@@ -0,0 +1,81 @@
+package vn.hub.mailservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActiveSessionRegistryTest {
+
+    private final LoginHistoryRepository loginHistoryRepository = mock(LoginHistoryRepository.class);
+    private final ActiveSessionRegistry registry =
+            new ActiveSessionRegistry(loginHistoryRepository, new SimpleMeterRegistry());
+
+    @Test
+    void onlyOneConcurrentLoginReservesTheUser() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Boolean>> logins = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            logins.add(() -> {
+                start.await();
+                return registry.reserve("alice");
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Callable<Boolean> login : logins) {
+                results.add(executor.submit(login));
+            }
+            start.countDown();
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                reserved += result.get() ? 1 : 0;
+            }
+            assertEquals(1, reserved);
+        } finally {
+            executor.shutdownNow();
+        }
+        // Đang giữ chỗ nhưng chưa có phiên
+        assertTrue(registry.find("alice").isEmpty());
+    }
+
+    @Test
+    void warmUpLoadsOpenSessionsAndLogoutRemovesThemOnce() {
+        when(loginHistoryRepository.findAllOpenSessions()).thenReturn(List.of(session(1L, "bob")));
+        registry.warmUp();
+
+        assertTrue(registry.find("bob").isPresent());
+        assertFalse(registry.reserve("bob"));
+        assertTrue(registry.remove("bob").isPresent());
+        assertTrue(registry.remove("bob").isEmpty());
+        assertTrue(registry.reserve("bob"));
+    }
+
+    private static LoginHistory session(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        LoginHistory loginHistory = new LoginHistory(user, LocalDateTime.now());
+        loginHistory.setId(id);
+        return loginHistory;
+    }
+}
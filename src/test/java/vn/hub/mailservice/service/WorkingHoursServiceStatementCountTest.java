@@ -0,0 +1,164 @@
+package vn.hub.mailservice.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Đếm số câu lệnh SQL bằng Hibernate statistics để bảo đảm báo cáo hằng đêm không bị N+1
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statements;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class WorkingHoursServiceStatementCountTest {
+
+    private static final int SESSIONS_PER_USER = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private LoginHistoryRepository loginHistoryRepository;
+
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final JobLockService jobLockService = mock(JobLockService.class);
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 50})
+    void nightlyJobUsesOneQueryRegardlessOfSessionCount(int users) {
+        seed(users);
+        when(jobLockService.getPartitions()).thenReturn(1);
+        when(jobLockService.runPartitioned(eq(JobLockService.WORKING_HOURS_JOB), any(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<IntConsumer>getArgument(2).accept(0);
+                    return 1;
+                });
+        WorkingHoursService workingHoursService = new WorkingHoursService(loginHistoryRepository, outboxService,
+                jobLockService, new SchedulingProperties(), new TransactionTemplate(transactionManager));
+
+        Statistics statistics = statistics();
+        workingHoursService.calculateAndNotifyWorkingHours();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // Mỗi user làm 3 tiếng, cộng thêm user không có phiên nào cũng phải nhận thông báo
+        verify(outboxService).addAll(argThat(messages -> messages.size() == users + 1));
+    }
+
+    @Test
+    void nightlyJobWritesNotificationsInChunks() {
+        seed(50);
+        when(jobLockService.getPartitions()).thenReturn(1);
+        when(jobLockService.runPartitioned(eq(JobLockService.WORKING_HOURS_JOB), any(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<IntConsumer>getArgument(2).accept(0);
+                    return 1;
+                });
+        SchedulingProperties schedulingProperties = new SchedulingProperties();
+        schedulingProperties.setChunkSize(10);
+        WorkingHoursService workingHoursService = new WorkingHoursService(loginHistoryRepository, outboxService,
+                jobLockService, schedulingProperties, new TransactionTemplate(transactionManager));
+
+        // Danh sách lô được dùng lại sau mỗi lần ghi, nên ghi lại kích thước lúc gọi
+        List<Integer> chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<?> chunk = invocation.getArgument(0);
+            chunkSizes.add(chunk.size());
+            return List.copyOf(chunk);
+        }).when(outboxService).addAll(any());
+
+        workingHoursService.calculateAndNotifyWorkingHours();
+
+        // 51 thông báo được ghi thành 5 lô 10 và một lô 1, không gom hết vào một danh sách
+        assertEquals(List.of(10, 10, 10, 10, 10, 1), chunkSizes);
+    }
+
+    @Test
+    void sessionsInRangeAreLoadedWithTheirUsers() {
+        seed(20);
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+
+        Statistics statistics = statistics();
+        List<LoginHistory> sessions = loginHistoryRepository.findAllByLoginTimeBetween(startOfDay,
+                startOfDay.plusDays(1));
+        sessions.forEach(LoginHistory::getUsername);
+
+        assertEquals(20 * SESSIONS_PER_USER, sessions.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tạo {@code users} user mỗi người 3 phiên 60 phút, thêm một user không có phiên nào và một user đã bị khóa
+     */
+    private void seed(int users) {
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        for (int i = 0; i < users; i++) {
+            User user = entityManager.persist(newUser("user" + i, true));
+            for (int s = 0; s < SESSIONS_PER_USER; s++) {
+                LoginHistory session = new LoginHistory(user, startOfDay.plusHours(8 + s * 2L));
+                session.setLogoutTime(session.getLoginTime().plusMinutes(60));
+                session.setWorkingMinutes(60);
+                session.setActive(false);
+                entityManager.persist(session);
+            }
+        }
+        entityManager.persist(newUser("absent", true));
+        entityManager.persist(newUser("locked", false));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static User newUser(String username, boolean active) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        user.setActive(active);
+        return user;
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,161 @@
+package vn.hub.mailservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSender;
+import vn.hub.mailservice.config.BulkPaymentProperties;
+import vn.hub.mailservice.config.QrCodeProperties;
+import vn.hub.mailservice.config.TemplateProperties;
+import vn.hub.mailservice.dto.BulkPaymentProgressResponse;
+import vn.hub.mailservice.dto.PaymentInvoiceRequest;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.exception.EmailQueueFullException;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.service.EmailQueueService;
+import vn.hub.mailservice.util.QrCodeGenerator;
+import vn.hub.mailservice.util.TemplateUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkPaymentServiceImplTest {
+
+    private final EmailQueueService emailQueueService = mock(EmailQueueService.class);
+    private final OutboundEmailRepository outboundEmailRepository = mock(OutboundEmailRepository.class);
+
+    @Test
+    void handsEveryPreparedInvoiceToTheSendQueueAndReportsFailures() throws Exception {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        Session session = Session.getInstance(new Properties());
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        Map<String, OutboundEmail> queued = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            OutboundEmail email = invocation.getArgument(0);
+            if (email.getTo().startsWith("loi")) {
+                throw new EmailQueueFullException("Hàng đợi gửi email vẫn đầy");
+            }
+            queued.put(email.getTo(), email);
+            return email;
+        }).when(emailQueueService).enqueue(any(OutboundEmail.class), any(Duration.class));
+        // Trạng thái gửi của từng hóa đơn được đọc từ hàng đợi gửi
+        when(outboundEmailRepository.countByStatusForCampaign(anyString())).thenReturn(List.of(
+                new Object[]{EmailStatus.SENT, 47L}, new Object[]{EmailStatus.FAILED, 2L}));
+
+        BulkPaymentProperties properties = new BulkPaymentProperties();
+        properties.setCpuWorkers(2);
+        properties.setEnqueueConcurrency(3);
+        properties.setQueueCapacity(4);
+        BulkPaymentServiceImpl service = service(mailSender, properties);
+
+        List<PaymentInvoiceRequest> invoices = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String email = (i == 7 ? "loi" : "kh") + i + "@example.com";
+            invoices.add(new PaymentInvoiceRequest(email, "Khách " + i, "DH" + i, "Gói cước", 100000 + i,
+                    LocalDate.of(2026, 1, 31), "https://pay.example.com/" + i, "PAY-" + (i % 5)));
+        }
+
+        String id = service.start(invoices).getId();
+        BulkPaymentProgressResponse progress = service.getProgress(id).orElseThrow();
+        for (int i = 0; i < 200 && progress.getStatus() == BulkPaymentProgressResponse.Status.RUNNING; i++) {
+            Thread.sleep(50);
+            progress = service.getProgress(id).orElseThrow();
+        }
+
+        assertEquals(BulkPaymentProgressResponse.Status.COMPLETED, progress.getStatus());
+        assertEquals(50, progress.getPrepared());
+        assertEquals(49, progress.getQueued());
+        assertEquals(47, progress.getSent());
+        assertEquals(3, progress.getFailed());
+        assertEquals(49, queued.size());
+        assertEquals(List.of("DH7: Hàng đợi gửi email vẫn đầy"), progress.getFailures());
+        assertEquals(50, progress.getStages().get("enqueue").count());
+        assertTrue(progress.getStages().get("qrcode").averageMillis() >= 0);
+
+        // Email vào hàng đợi đã dựng sẵn kèm QR, gắn với đợt gửi để tra cứu trạng thái từng hóa đơn
+        OutboundEmail email = queued.get("kh3@example.com");
+        assertEquals(EmailType.PREPARED, email.getType());
+        assertEquals(id, email.getCampaignId());
+        MimeMessage message = new MimeMessage(session, new ByteArrayInputStream(email.getRawMessage()));
+        assertEquals("kh3@example.com", message.getAllRecipients()[0].toString());
+        assertTrue(new String(email.getRawMessage(), StandardCharsets.US_ASCII).contains("Content-ID: <qrcode>"));
+    }
+
+    @Test
+    void limitsConcurrentRunsAndEvictsFinishedRuns() throws Exception {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        Session session = Session.getInstance(new Properties());
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        }).when(emailQueueService).enqueue(any(OutboundEmail.class), any(Duration.class));
+
+        BulkPaymentProperties properties = new BulkPaymentProperties();
+        properties.setMaxConcurrentRuns(1);
+        properties.setProgressRetention(Duration.ZERO);
+        BulkPaymentServiceImpl service = service(mailSender, properties);
+        List<PaymentInvoiceRequest> invoices = List.of(new PaymentInvoiceRequest("kh@example.com", "Khách",
+                "DH1", "Gói cước", 100000, LocalDate.of(2026, 1, 31), "https://pay.example.com/1", "PAY-1"));
+
+        try {
+            // Đợt đầu đang chuyển vào hàng đợi gửi thì đợt thứ hai bị từ chối
+            String id = service.start(invoices).getId();
+            assertThrows(EmailQueueFullException.class, () -> service.start(invoices));
+
+            release.countDown();
+            BulkPaymentProgressResponse progress = service.getProgress(id).orElseThrow();
+            for (int i = 0; i < 200 && progress.getStatus() == BulkPaymentProgressResponse.Status.RUNNING; i++) {
+                Thread.sleep(50);
+                progress = service.getProgress(id).orElseThrow();
+            }
+            assertEquals(BulkPaymentProgressResponse.Status.COMPLETED, progress.getStatus());
+
+            // Đợt đã xong thì nhận đợt mới, tiến độ đợt cũ bị xóa sau progressRetention
+            Thread.sleep(10);
+            service.evictFinishedRuns();
+            assertTrue(service.getProgress(id).isEmpty());
+            assertTrue(service.getProgress(service.start(invoices).getId()).isPresent());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedRuns() {
+        BulkPaymentProperties properties = new BulkPaymentProperties();
+        properties.setMaxInvoices(1);
+        BulkPaymentServiceImpl service = service(mock(JavaMailSender.class), properties);
+
+        assertThrows(IllegalArgumentException.class, () -> service.start(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> service.start(
+                List.of(new PaymentInvoiceRequest(), new PaymentInvoiceRequest())));
+    }
+
+    private BulkPaymentServiceImpl service(JavaMailSender mailSender, BulkPaymentProperties properties) {
+        return new BulkPaymentServiceImpl(mailSender, new TemplateUtil(new TemplateProperties()),
+                new QrCodeGenerator(new QrCodeProperties(), new SimpleMeterRegistry()), emailQueueService,
+                outboundEmailRepository, properties, new SimpleMeterRegistry());
+    }
+}
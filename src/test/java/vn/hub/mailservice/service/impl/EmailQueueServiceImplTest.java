@@ -0,0 +1,133 @@
+package vn.hub.mailservice.service.impl;
+
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mail.MailSendException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.EmailQueueProperties;
+import vn.hub.mailservice.config.EmailRetryProperties;
+import vn.hub.mailservice.entity.EmailStatus;
+import vn.hub.mailservice.entity.EmailType;
+import vn.hub.mailservice.entity.OutboundEmail;
+import vn.hub.mailservice.exception.EmailQueueFullException;
+import vn.hub.mailservice.mail.DomainDeliveryScheduler;
+import vn.hub.mailservice.mail.SendFailureType;
+import vn.hub.mailservice.repository.DeadLetterEmailRepository;
+import vn.hub.mailservice.repository.OutboundEmailRepository;
+import vn.hub.mailservice.service.EmailService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailQueueServiceImplTest {
+
+    private final OutboundEmailRepository outboundEmailRepository = mock(OutboundEmailRepository.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final DomainDeliveryScheduler deliveryScheduler = mock(DomainDeliveryScheduler.class);
+    private EmailQueueServiceImpl service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void reschedulesEmailWhenFailureCannotBeSaved() throws Exception {
+        EmailRetryProperties retryProperties = new EmailRetryProperties();
+        retryProperties.setInitialBackoff(Duration.ofMillis(10));
+        retryProperties.setJitter(0);
+        service = new EmailQueueServiceImpl(outboundEmailRepository, mock(DeadLetterEmailRepository.class),
+                emailService, null, new EmailQueueProperties(), retryProperties, deliveryScheduler,
+                mock(TransactionTemplate.class));
+
+        OutboundEmail email = new OutboundEmail();
+        email.setId(1L);
+        email.setType(EmailType.HTML);
+        email.setTo("user@example.com");
+        email.setSubject("Thông báo");
+        email.setHtmlContent("<p>Nội dung</p>");
+        when(outboundEmailRepository.save(any(OutboundEmail.class))).thenAnswer(invocation -> {
+            OutboundEmail saved = invocation.getArgument(0);
+            if (saved.getStatus() == EmailStatus.QUEUED && saved.getAttempts() > 0) {
+                throw new DataAccessResourceFailureException("Communications link failure");
+            }
+            return saved;
+        });
+        when(outboundEmailRepository.findById(1L)).thenReturn(Optional.of(email));
+        doThrow(new MailSendException("Mail server connection failed",
+                new MessagingException("Could not get a pooled SMTP connection")))
+                .when(emailService).sendHtmlEmail(anyString(), anyString(), anyString());
+        // submitRetry là synchronized: verify(timeout) giữ khóa của mock trong lúc chờ nên chờ qua latch
+        CountDownLatch retried = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            retried.countDown();
+            return null;
+        }).when(deliveryScheduler).submitRetry(anyString(), any());
+
+        service.enqueue(email);
+        ArgumentCaptor<DomainDeliveryScheduler.Delivery> delivery =
+                ArgumentCaptor.forClass(DomainDeliveryScheduler.Delivery.class);
+        verify(deliveryScheduler).submit(eq("example.com"), delivery.capture());
+
+        // Không lưu được trạng thái chờ gửi lại: email vẫn được hẹn xử lý lại thay vì kẹt ở SENDING
+        assertEquals(SendFailureType.TRANSIENT, delivery.getValue().deliver());
+        assertEquals(EmailStatus.QUEUED, email.getStatus());
+        assertTrue(retried.await(2, TimeUnit.SECONDS));
+        verify(deliveryScheduler).submitRetry(eq("example.com"), any());
+    }
+
+    @Test
+    void enqueuesWholeBatchOrNothing() {
+        EmailQueueProperties queueProperties = new EmailQueueProperties();
+        queueProperties.setCapacity(2);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        service = new EmailQueueServiceImpl(outboundEmailRepository, mock(DeadLetterEmailRepository.class),
+                emailService, null, queueProperties, new EmailRetryProperties(), deliveryScheduler,
+                transactionTemplate);
+        AtomicLong ids = new AtomicLong();
+        when(outboundEmailRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<OutboundEmail> emails = invocation.getArgument(0);
+            emails.forEach(email -> email.setId(ids.incrementAndGet()));
+            return emails;
+        });
+
+        // Hàng đợi không đủ chỗ cho cả lô: không email nào được lưu
+        assertThrows(EmailQueueFullException.class,
+                () -> service.enqueueAll(List.of(html("a@example.com"), html("b@example.com"), html("c@x.vn"))));
+        verify(outboundEmailRepository, never()).saveAll(anyList());
+
+        List<OutboundEmail> queued = service.enqueueAll(List.of(html("a@example.com"), html("b@x.vn")));
+        assertEquals(List.of(1L, 2L), queued.stream().map(OutboundEmail::getId).toList());
+        assertEquals(EmailStatus.QUEUED, queued.get(0).getStatus());
+        verify(deliveryScheduler).submit(eq("example.com"), any());
+        verify(deliveryScheduler).submit(eq("x.vn"), any());
+    }
+
+    private static OutboundEmail html(String to) {
+        return new OutboundEmail(EmailType.HTML, to, "Thông báo", "<p>Nội dung</p>");
+    }
+}
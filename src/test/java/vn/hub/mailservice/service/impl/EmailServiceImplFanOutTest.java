@@ -0,0 +1,145 @@
+package vn.hub.mailservice.service.impl;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import vn.hub.mailservice.config.RecipientChunkProperties;
+import vn.hub.mailservice.dto.BatchSendResult;
+import vn.hub.mailservice.dto.RecipientChunkResult;
+import vn.hub.mailservice.dto.RecipientFanOutResult;
+import vn.hub.mailservice.mail.PooledJavaMailSender;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailServiceImplFanOutTest {
+
+    private final Session session = Session.getInstance(new Properties());
+    private final JavaMailSenderImpl mailSender = mock(JavaMailSenderImpl.class);
+    private final Set<String> delivered = ConcurrentHashMap.newKeySet();
+    private final List<String> rawMessages = new ArrayList<>();
+
+    private EmailServiceImpl service() {
+        when(mailSender.getHost()).thenReturn("smtp.example.com");
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        RecipientChunkProperties chunkProperties = new RecipientChunkProperties();
+        chunkProperties.getProviders().put("smtp.example.com", 100);
+        chunkProperties.setConcurrency(3);
+        return new EmailServiceImpl(mailSender, null, null, null, chunkProperties);
+    }
+
+    @Test
+    void splitsDeduplicatedBccListIntoChunksAndReportsRejectedChunk() throws Exception {
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new ConcurrentHashMap<>();
+            for (Object argument : invocation.getArguments()) {
+                MimeMessage message = (MimeMessage) argument;
+                List<String> envelope = Arrays.stream(message.getAllRecipients()).map(Address::toString).toList();
+                if (envelope.contains("user150@example.com")) {
+                    failed.put(message, new MessagingException("552 too many recipients"));
+                    continue;
+                }
+                delivered.addAll(envelope);
+                ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                message.writeTo(raw);
+                synchronized (rawMessages) {
+                    rawMessages.add(raw.toString());
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        List<String> bcc = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            bcc.add("user" + i + "@example.com");
+        }
+        bcc.add("USER1@example.com");
+        bcc.add("boss@example.com");
+        bcc.add("khong hop le");
+        bcc.add(null);
+
+        RecipientFanOutResult result = service().sendHtmlEmailWithBCC("boss@example.com", bcc, "Thông báo",
+                "<p>Nội dung</p>");
+
+        assertEquals(251, result.getRecipients());
+        assertEquals(2, result.getDuplicatesRemoved());
+        assertEquals(Arrays.asList("khong hop le", null), result.getInvalidRecipients());
+        assertEquals(3, result.getChunks().size());
+        assertEquals(List.of(100, 100, 51),
+                result.getChunks().stream().map(c -> c.getRecipients().size()).toList());
+        RecipientChunkResult rejected = result.getChunks().get(1);
+        assertEquals(BatchSendResult.Status.REJECTED, rejected.getStatus());
+        assertEquals(2, result.getAcceptedChunks());
+        assertEquals(151, delivered.size());
+        assertTrue(delivered.contains("boss@example.com"));
+        // BCC không lộ ra trong nội dung email, mọi phần đều hiển thị người nhận chính
+        for (String raw : rawMessages) {
+            assertTrue(raw.contains("To: boss@example.com"));
+            assertFalse(raw.contains("user1@example.com"));
+        }
+    }
+
+    @Test
+    void failsWhenEveryChunkIsRejected() {
+        doAnswer(invocation -> {
+            throw new MailSendException("421 service not available");
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        EmailServiceImpl service = service();
+        assertThrows(RuntimeException.class, () -> service.sendHtmlEmailWithCC("boss@example.com",
+                List.of("a@example.com", "b@example.com"), "Thông báo", "<p>Nội dung</p>"));
+    }
+
+    @Test
+    void sendsChunksSequentiallyOnPinnedConnection() {
+        PooledJavaMailSender pooledSender = mock(PooledJavaMailSender.class);
+        when(pooledSender.getHost()).thenReturn("smtp.example.com");
+        when(pooledSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        when(pooledSender.isConnectionPinned()).thenReturn(true);
+        Set<Thread> senders = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            senders.add(Thread.currentThread());
+            return null;
+        }).when(pooledSender).send(any(MimeMessage[].class));
+        RecipientChunkProperties chunkProperties = new RecipientChunkProperties();
+        chunkProperties.getProviders().put("smtp.example.com", 100);
+        chunkProperties.setConcurrency(4);
+        EmailServiceImpl service = new EmailServiceImpl(pooledSender, null, null, null, chunkProperties);
+
+        List<String> bcc = new ArrayList<>();
+        for (int i = 0; i < 350; i++) {
+            bcc.add("user" + i + "@example.com");
+        }
+        RecipientFanOutResult result = service.sendHtmlEmailWithBCC("boss@example.com", bcc, "Thông báo",
+                "<p>Nội dung</p>");
+
+        // Worker của hàng đợi đang giữ kết nối: mọi phần được gửi trên chính luồng đó, không mượn thêm kết nối
+        assertEquals(4, result.getAcceptedChunks());
+        assertEquals(Set.of(Thread.currentThread()), senders);
+        verify(pooledSender, never()).getPool();
+    }
+}
@@ -0,0 +1,152 @@
+package vn.hub.mailservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.LoginHistoryIdGenerator;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+import vn.hub.mailservice.repository.OpenSessionRepository;
+import vn.hub.mailservice.repository.UserRepository;
+import vn.hub.mailservice.service.ActiveSessionRegistry;
+import vn.hub.mailservice.service.WorkingMinutesCounter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hai LoginServiceImpl với danh sách phiên trong bộ nhớ riêng, dùng chung một DB như hai instance
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sessions;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoginServiceImplMultiNodeTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LoginHistoryRepository loginHistoryRepository;
+    @Autowired
+    private OpenSessionRepository openSessionRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private LoginHistoryIdGenerator idGenerator;
+
+    @BeforeEach
+    void setUp() {
+        idGenerator = new LoginHistoryIdGenerator(entityManagerFactory);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        openSessionRepository.deleteAll();
+        loginHistoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void sessionOpenedOnOneNodeIsSeenAndClosedByTheOther() {
+        User user = new User();
+        user.setUsername("dave");
+        user.setPassword("secret");
+        user.setEmail("dave@example.com");
+        userRepository.save(user);
+        LoginServiceImpl nodeA = node();
+        LoginServiceImpl nodeB = node();
+
+        LoginHistory opened = nodeA.login("dave", "secret");
+
+        // Instance B không có phiên trong bộ nhớ nhưng vẫn không cho mở phiên thứ hai
+        RuntimeException duplicate = assertThrows(RuntimeException.class, () -> nodeB.login("dave", "secret"));
+        assertEquals("Người dùng đã đăng nhập", duplicate.getMessage());
+        assertNotNull(nodeB.isUserLoggedIn("dave"));
+
+        // Logout trên instance B đóng phiên mở trên A
+        LoginHistory closed = nodeB.logout("dave");
+        assertEquals(opened.getId(), closed.getId());
+        assertTrue(loginHistoryRepository.findAllOpenSessions().isEmpty());
+        assertNull(nodeB.isUserLoggedIn("dave"));
+
+        // Phiên cũ trong bộ nhớ của A đã bị đóng qua B: login lại trên A được, logout lần hai trên B thì không
+        nodeA.login("dave", "secret");
+        nodeA.logout("dave");
+        assertThrows(RuntimeException.class, () -> nodeB.logout("dave"));
+        assertEquals(2, loginHistoryRepository.count());
+    }
+
+    @Test
+    void nodeThatDidNotLogOutStopsReportingTheClosedSession() {
+        User user = new User();
+        user.setUsername("erin");
+        user.setPassword("secret");
+        user.setEmail("erin@example.com");
+        userRepository.save(user);
+        // Phiên mở từ đầu ngày (hoặc 2 tiếng trước), instance A nạp phiên vào bộ nhớ khi khởi động
+        LocalDateTime loginTime = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.SECONDS);
+        if (!loginTime.toLocalDate().equals(LocalDate.now())) {
+            loginTime = LocalDate.now().atStartOfDay();
+        }
+        LoginHistory opened = loginHistoryRepository.save(new LoginHistory(user, loginTime));
+        openSessionRepository.claim(user.getId(), opened.getId(), loginTime);
+        ActiveSessionRegistry registryA = registry();
+        registryA.warmUp();
+        LoginServiceImpl nodeA = node(registryA);
+        LoginServiceImpl nodeB = node(registry());
+        assertEquals(opened.getId(), nodeA.isUserLoggedIn("erin").getId());
+
+        nodeB.logout("erin");
+
+        // A không còn trả phiên đã đóng và không cộng thời gian của phiên đó vào tổng trong ngày
+        ActiveSessionRegistry.Session stale = registryA.find("erin").orElseThrow();
+        assertNull(nodeA.isUserLoggedIn("erin"));
+        assertTrue(registryA.find("erin").isEmpty());
+        registryA.restore(stale);
+        assertEquals(0, nodeA.getTotalWorkingMinutesForToday("erin"));
+        assertTrue(registryA.find("erin").isEmpty());
+    }
+
+    private LoginServiceImpl node() {
+        return node(registry());
+    }
+
+    private ActiveSessionRegistry registry() {
+        return new ActiveSessionRegistry(loginHistoryRepository, new SimpleMeterRegistry());
+    }
+
+    private LoginServiceImpl node(ActiveSessionRegistry registry) {
+        WorkingMinutesCounter workingMinutesCounter = mock(WorkingMinutesCounter.class);
+        DirectLoginEventWriter writer = new DirectLoginEventWriter(loginHistoryRepository, workingMinutesCounter,
+                new TransactionTemplate(transactionManager));
+        return new LoginServiceImpl(userRepository, openSessionRepository, registry, workingMinutesCounter, writer,
+                idGenerator);
+    }
+}
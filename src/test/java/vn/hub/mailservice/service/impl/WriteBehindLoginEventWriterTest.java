@@ -0,0 +1,130 @@
+package vn.hub.mailservice.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.hub.mailservice.config.LoginEventProperties;
+import vn.hub.mailservice.config.SchedulingProperties;
+import vn.hub.mailservice.config.WorkingMinutesProperties;
+import vn.hub.mailservice.entity.LoginHistory;
+import vn.hub.mailservice.entity.User;
+import vn.hub.mailservice.repository.DailyWorkingMinutesRepository;
+import vn.hub.mailservice.repository.LoginHistoryRepository;
+import vn.hub.mailservice.repository.UserRepository;
+import vn.hub.mailservice.service.ActiveSessionRegistry;
+import vn.hub.mailservice.service.JobLockService;
+import vn.hub.mailservice.service.WorkingMinutesCounter;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hai WriteBehindLoginEventWriter với journal riêng, dùng chung một DB như hai instance
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WriteBehindLoginEventWriterTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LoginHistoryRepository loginHistoryRepository;
+    @Autowired
+    private DailyWorkingMinutesRepository dailyWorkingMinutesRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @TempDir
+    private Path journalDir;
+
+    private final List<WriteBehindLoginEventWriter> writers = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        for (WriteBehindLoginEventWriter writer : writers) {
+            writer.stop();
+        }
+        dailyWorkingMinutesRepository.deleteAll();
+        loginHistoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void logoutFlushedBeforeLoginFromAnotherNodeKeepsSessionClosed() throws Exception {
+        User user = new User();
+        user.setUsername("frank");
+        user.setPassword("secret");
+        user.setEmail("frank@example.com");
+        user = userRepository.save(user);
+        LocalDateTime loginTime = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusHours(8);
+        long sessionId = 4242L;
+
+        // Login còn nằm trong journal của node A, logout trên node B được ghi xuống DB trước
+        SimpleMeterRegistry registryB = new SimpleMeterRegistry();
+        WriteBehindLoginEventWriter nodeB = writer("b", registryB);
+        assertTrue(nodeB.recordLogout(new ActiveSessionRegistry.Session(sessionId, user.getId(), "frank", loginTime),
+                loginTime.plusMinutes(45), 45));
+        awaitFlushed(registryB);
+
+        SimpleMeterRegistry registryA = new SimpleMeterRegistry();
+        WriteBehindLoginEventWriter nodeA = writer("a", registryA);
+        nodeA.recordLogin(user, sessionId, loginTime);
+        awaitFlushed(registryA);
+
+        LoginHistory session = loginHistoryRepository.findById(sessionId).orElseThrow();
+        assertEquals(loginTime.plusMinutes(45), session.getLogoutTime());
+        assertEquals(45, session.getWorkingMinutes());
+        assertFalse(session.isActive());
+        assertEquals(45, dailyWorkingMinutesRepository.findMinutes(user.getId(), loginTime.toLocalDate())
+                .orElseThrow());
+    }
+
+    private WriteBehindLoginEventWriter writer(String node, SimpleMeterRegistry meterRegistry) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        WorkingMinutesCounter counter = new WorkingMinutesCounter(dailyWorkingMinutesRepository,
+                mock(JobLockService.class), new SchedulingProperties(), new WorkingMinutesProperties(),
+                transactionTemplate);
+        LoginEventProperties properties = new LoginEventProperties();
+        properties.setJournalDir(journalDir.resolve(node));
+        WriteBehindLoginEventWriter writer = new WriteBehindLoginEventWriter(jdbcTemplate, transactionTemplate,
+                counter, properties, meterRegistry);
+        writer.start();
+        writers.add(writer);
+        return writer;
+    }
+
+    private static void awaitFlushed(SimpleMeterRegistry meterRegistry) throws InterruptedException {
+        for (int i = 0; i < 100 && meterRegistry.counter("login.events.flushed").count() < 1; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, meterRegistry.counter("login.events.flushed").count());
+    }
+}
@@ -0,0 +1,33 @@
+package vn.hub.mailservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledTemplateTest {
+
+    @Test
+    void replacesVariablesAndBlanksMissingOnes() {
+        CompiledTemplate template = CompiledTemplate.compile("Xin chào ${name}, bạn thiếu ${missingMinutes} phút${end}");
+
+        String html = template.render(Map.of("name", "admin", "missingMinutes", "$30"));
+
+        assertEquals("Xin chào admin, bạn thiếu $30 phút", html);
+    }
+
+    @Test
+    void keepsEmptyAndUnclosedPlaceholdersAsText() {
+        CompiledTemplate template = CompiledTemplate.compile("${} và ${name} và ${chua-dong");
+
+        assertEquals("${} và A và ${chua-dong", template.render(Map.of("name", "A")));
+    }
+
+    @Test
+    void returnsSourceWhenNoVariablesGiven() {
+        CompiledTemplate template = CompiledTemplate.compile("<p>${name}</p>");
+
+        assertEquals("<p>${name}</p>", template.render(Map.of()));
+    }
+}
@@ -0,0 +1,85 @@
+package vn.hub.mailservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.hub.mailservice.util.LoginEventJournal.Event;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginEventJournalTest {
+
+    private static final LocalDateTime LOGIN = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversAppendedEventsAfterReopen() throws IOException {
+        List<Event> events = List.of(
+                Event.login(1, 10, LOGIN),
+                Event.logout(1, 10, LOGIN, LOGIN.plusHours(8), 480));
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            journal.append(events);
+        }
+
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            assertEquals(events, journal.recovered());
+        }
+    }
+
+    @Test
+    void dropsTornTailAndKeepsAppendingAfterIt() throws IOException {
+        Path file;
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            journal.append(List.of(Event.login(1, 10, LOGIN)));
+            file = journal.getFile();
+        }
+        // Tiến trình dừng giữa lúc ghi dòng thứ hai
+        Files.writeString(file, "O,1,10,2024-03-01T08:00,2024-03-01T16:00,4", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            assertEquals(List.of(Event.login(1, 10, LOGIN)), journal.recovered());
+            journal.append(List.of(Event.login(2, 11, LOGIN)));
+        }
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            assertEquals(List.of(Event.login(1, 10, LOGIN), Event.login(2, 11, LOGIN)), journal.recovered());
+        }
+    }
+
+    @Test
+    void skipsLinesWithWrongChecksum() throws IOException {
+        Path file;
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            journal.append(List.of(Event.logout(1, 10, LOGIN, LOGIN.plusHours(8), 480)));
+            file = journal.getFile();
+        }
+        Files.writeString(file, Files.readString(file).replace(",480,", ",48,"));
+
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            assertTrue(journal.recovered().isEmpty());
+        }
+    }
+
+    @Test
+    void resetEmptiesTheJournal() throws IOException {
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            journal.append(List.of(Event.login(1, 10, LOGIN)));
+            journal.reset();
+            journal.append(List.of(Event.login(2, 10, LOGIN)));
+        }
+
+        try (LoginEventJournal journal = LoginEventJournal.open(directory)) {
+            assertEquals(List.of(Event.login(2, 10, LOGIN)), journal.recovered());
+        }
+    }
+}
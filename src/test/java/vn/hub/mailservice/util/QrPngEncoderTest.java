@@ -0,0 +1,35 @@
+package vn.hub.mailservice.util;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QrPngEncoderTest {
+
+    @Test
+    void decodedImageMatchesMatrix() throws WriterException, IOException {
+        // 250 không chia hết cho 8 nên dòng cuối có bit đệm
+        BitMatrix matrix = new QRCodeWriter().encode("https://example.com/pay/ORD-2024-0001",
+                BarcodeFormat.QR_CODE, 250, 250);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(QrPngEncoder.encode(matrix)));
+
+        assertEquals(250, image.getWidth());
+        assertEquals(250, image.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int expected = matrix.get(x, y) ? 0x000000 : 0xFFFFFF;
+                assertEquals(expected, image.getRGB(x, y) & 0xFFFFFF, "pixel " + x + "," + y);
+            }
+        }
+    }
+}